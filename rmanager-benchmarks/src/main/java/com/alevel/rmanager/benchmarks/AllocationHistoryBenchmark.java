@@ -0,0 +1,104 @@
+package com.alevel.rmanager.benchmarks;
+
+import com.alevel.rmanager.data.exception.RManagerDataAccessException;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.service.jpa.JPAResourceAllocationRequestService;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class AllocationHistoryBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"10", "100"})
+        public int resourceCount;
+
+        @Param({"100", "10000"})
+        public int historySize;
+
+        BenchmarkDatabase database;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkParams params) throws RManagerDataAccessException {
+            database = BenchmarkDatabase.create(params.getThreads(), resourceCount, historySize);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            database.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        Session session;
+
+        JPAResourceAllocationRequestService service;
+
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setUp(Database database) {
+            session = database.database.sessionFactory.openSession();
+            service = new JPAResourceAllocationRequestService(() -> session);
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            session.close();
+        }
+
+        long nextResource(Database database) {
+            long[] ids = database.database.resourceIds;
+            return ids[random.nextInt(ids.length)];
+        }
+    }
+
+    @Benchmark
+    public List<AllocationRequestRecord> getByResourceId(Database database, Client client) throws RManagerDataAccessException {
+        return client.service.getByResourceId(client.nextResource(database));
+    }
+
+    @Benchmark
+    public List<AllocationRequestRecord> getFirstPageByResourceId(Database database, Client client) throws RManagerDataAccessException {
+        return client.service.getByResourceId(client.nextResource(database), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void streamByResourceId(Database database, Client client, Blackhole blackhole) throws RManagerDataAccessException {
+        try (Stream<AllocationRequestRecord> history = client.service.streamByResourceId(client.nextResource(database))) {
+            history.forEach(blackhole::consume);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.alevel.rmanager.benchmarks;
+
+import com.alevel.rmanager.data.exception.RManagerDataAccessException;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.jpa.JPAManagedResourceService;
+import com.alevel.rmanager.data.service.metrics.LatencyHistogram;
+import com.alevel.rmanager.data.service.metrics.LatencySnapshot;
+import org.hibernate.Session;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Soak test of {@link JPAManagedResourceService} under concurrent load. Every thread has its own session and runs
+ * a mix of allocations, releases and reads against resources picked by Zipf-distributed popularity, so a few
+ * resources are contended while most are not. Prints throughput and latency percentiles per operation, then checks
+ * that the capacity of every resource equals its total capacity less the units of its accepted requests.
+ * Exits with status 1 if the invariant does not hold or an operation failed.
+ * <p>
+ * Run with {@code java -cp benchmarks.jar com.alevel.rmanager.benchmarks.AllocationSoak}. System properties:
+ * <ul>
+ *     <li>{@code rmanager.soak.threads} - number of client threads, {@code 8} by default</li>
+ *     <li>{@code rmanager.soak.duration} - ISO-8601 duration of the run, {@code PT30S} by default</li>
+ *     <li>{@code rmanager.soak.resources} - number of resources, {@code 100} by default</li>
+ *     <li>{@code rmanager.soak.capacity} - total capacity of every resource, {@code 1000} by default</li>
+ *     <li>{@code rmanager.soak.zipf} - Zipf exponent of resource popularity, {@code 1.1} by default; {@code 0} is uniform</li>
+ *     <li>{@code rmanager.soak.mix} - percentages of allocations, releases and reads, {@code 50,30,20} by default</li>
+ *     <li>{@code rmanager.soak.maxUnits} - units per allocation or release are uniform from 1, {@code 10} by default</li>
+ *     <li>{@code rmanager.soak.mode} - {@link JPAManagedResourceService.AllocationMode}, {@code CONDITIONAL_UPDATE} by default;
+ *     {@code READ_MODIFY_WRITE} loses updates under contention and is expected to break the invariant</li>
+ * </ul>
+ */
+public final class AllocationSoak {
+
+    private enum Operation {
+        ALLOCATE, RELEASE, READ
+    }
+
+    private record Settings(
+            int threads,
+            Duration duration,
+            int resources,
+            int capacity,
+            double zipfExponent,
+            int[] mix,
+            int maxUnits,
+            JPAManagedResourceService.AllocationMode mode
+    ) {
+
+        static Settings fromSystemProperties() {
+            String[] mix = System.getProperty("rmanager.soak.mix", "50,30,20").split(",");
+            if (mix.length != 3) {
+                throw new IllegalArgumentException("rmanager.soak.mix should list allocation, release and read percentages");
+            }
+            var settings = new Settings(
+                    Integer.getInteger("rmanager.soak.threads", 8),
+                    Duration.parse(System.getProperty("rmanager.soak.duration", "PT30S")),
+                    Integer.getInteger("rmanager.soak.resources", 100),
+                    Integer.getInteger("rmanager.soak.capacity", 1000),
+                    Double.parseDouble(System.getProperty("rmanager.soak.zipf", "1.1")),
+                    new int[]{Integer.parseInt(mix[0].trim()), Integer.parseInt(mix[1].trim()), Integer.parseInt(mix[2].trim())},
+                    Integer.getInteger("rmanager.soak.maxUnits", 10),
+                    JPAManagedResourceService.AllocationMode.valueOf(System.getProperty("rmanager.soak.mode", "CONDITIONAL_UPDATE")));
+            if (settings.mix[0] + settings.mix[1] + settings.mix[2] != 100) {
+                throw new IllegalArgumentException("rmanager.soak.mix percentages should add up to 100");
+            }
+            return settings;
+        }
+
+        Operation pick(SplittableRandom random) {
+            int roll = random.nextInt(100);
+            if (roll < mix[0]) {
+                return Operation.ALLOCATE;
+            }
+            return roll < mix[0] + mix[1] ? Operation.RELEASE : Operation.READ;
+        }
+    }
+
+    private static final class OperationStats {
+
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        final LongAdder accepted = new LongAdder();
+
+        final LongAdder rejected = new LongAdder();
+
+        final LongAdder failed = new LongAdder();
+    }
+
+    private AllocationSoak() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        System.out.printf("Soak: %d threads for %s, %d resources of capacity %d, zipf %.2f, mix %d/%d/%d, %s%n",
+                settings.threads(), settings.duration(), settings.resources(), settings.capacity(), settings.zipfExponent(),
+                settings.mix()[0], settings.mix()[1], settings.mix()[2], settings.mode());
+
+        boolean passed;
+        try (BenchmarkDatabase database = BenchmarkDatabase.create(settings.threads() + 1, settings.resources(), 0, settings.capacity())) {
+            var stats = new OperationStats[Operation.values().length];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new OperationStats();
+            }
+
+            long elapsed = run(settings, database, stats);
+            long failures = report(stats, elapsed);
+            passed = checkInvariant(database) && failures == 0;
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static long run(Settings settings, BenchmarkDatabase database, OperationStats[] stats) throws Exception {
+        var zipf = new ZipfDistribution(settings.resources(), settings.zipfExponent());
+        ExecutorService executor = Executors.newFixedThreadPool(settings.threads());
+        long start = System.nanoTime();
+        long deadline = start + settings.duration().toNanos();
+        try {
+            var clients = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < settings.threads(); thread++) {
+                var random = new SplittableRandom(thread);
+                clients.add(executor.submit(() -> {
+                    try (Session session = database.sessionFactory.openSession()) {
+                        var service = new JPAManagedResourceService(() -> session, database.validatorFactory, settings.mode());
+                        while (System.nanoTime() - deadline < 0) {
+                            long resourceId = database.resourceIds[zipf.sample(random)];
+                            Operation operation = settings.pick(random);
+                            int units = 1 + random.nextInt(settings.maxUnits());
+                            execute(service, operation, resourceId, units, stats[operation.ordinal()]);
+                            session.clear();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : clients) {
+                client.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void execute(JPAManagedResourceService service, Operation operation, long resourceId, int units, OperationStats stats) {
+        long start = System.nanoTime();
+        try {
+            boolean accepted = switch (operation) {
+                case ALLOCATE -> accepted(service.allocate(resourceId, units));
+                case RELEASE -> accepted(service.allocate(resourceId, -units));
+                case READ -> service.getById(resourceId).isPresent();
+            };
+            (accepted ? stats.accepted : stats.rejected).increment();
+        } catch (RManagerDataAccessException | RuntimeException e) {
+            stats.failed.increment();
+        } finally {
+            stats.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private static boolean accepted(AllocationResultRecord result) {
+        return result.status() == AllocationResult.Status.ACCEPTED;
+    }
+
+    private static long report(OperationStats[] stats, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        long failures = 0;
+        System.out.printf("%-9s %10s %10s %10s %8s %10s %10s %10s %10s%n",
+                "operation", "ops/s", "accepted", "rejected", "failed", "p50 us", "p99 us", "p999 us", "max us");
+        for (Operation operation : Operation.values()) {
+            OperationStats operationStats = stats[operation.ordinal()];
+            LatencySnapshot latency = operationStats.latency.snapshot();
+            total += latency.count();
+            failures += operationStats.failed.sum();
+            System.out.printf("%-9s %10.0f %10d %10d %8d %10d %10d %10d %10d%n",
+                    operation.name().toLowerCase(),
+                    latency.count() / seconds,
+                    operationStats.accepted.sum(),
+                    operationStats.rejected.sum(),
+                    operationStats.failed.sum(),
+                    latency.p50().toNanos() / 1_000,
+                    latency.p99().toNanos() / 1_000,
+                    latency.p999().toNanos() / 1_000,
+                    latency.max().toNanos() / 1_000);
+        }
+        System.out.printf("total     %10.0f ops/s over %.1f s%n", total / seconds, seconds);
+        return failures;
+    }
+
+    /**
+     * Checks that {@code capacity = totalCapacity - sum of accepted units} for every resource.
+     */
+    private static boolean checkInvariant(BenchmarkDatabase database) {
+        List<Object[]> resources;
+        try (Session session = database.sessionFactory.openSession()) {
+            resources = session.createQuery("""
+                            select r.id, r.capacity, r.totalCapacity,
+                                coalesce(sum(case when ar.result.status = :accepted then ar.capacity else 0 end), 0)
+                            from ManagedResource r left join r.allocationRequests ar
+                            group by r.id, r.capacity, r.totalCapacity
+                            """, Object[].class)
+                    .setParameter("accepted", AllocationResult.Status.ACCEPTED)
+                    .getResultList();
+        }
+
+        int violations = 0;
+        for (Object[] resource : resources) {
+            int capacity = (Integer) resource[1];
+            long expected = (Integer) resource[2] - ((Number) resource[3]).longValue();
+            if (capacity != expected) {
+                if (violations++ < 10) {
+                    System.out.printf("Resource %d has capacity %d, expected %d from accepted requests%n", resource[0], capacity, expected);
+                }
+            }
+        }
+        System.out.printf("Invariant %s: %d of %d resources violate it%n",
+                violations == 0 ? "holds" : "BROKEN", violations, resources.size());
+        return violations == 0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.alevel.rmanager.benchmarks;
+
+import com.alevel.rmanager.data.exception.RManagerDataAccessException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.jpa.JPAManagedResourceService;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Embedded H2 database with the data-access schema, seeded with resources and their allocation history.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    private static final int SEED_BATCH_SIZE = 1_000;
+
+    static final int RESOURCE_CAPACITY = 1_000_000;
+
+    final SessionFactory sessionFactory;
+
+    final ValidatorFactory validatorFactory;
+
+    final long[] resourceIds;
+
+    private BenchmarkDatabase(SessionFactory sessionFactory, ValidatorFactory validatorFactory, long[] resourceIds) {
+        this.sessionFactory = sessionFactory;
+        this.validatorFactory = validatorFactory;
+        this.resourceIds = resourceIds;
+    }
+
+    /**
+     * @param poolSize    connection pool size, at least the number of benchmark threads
+     * @param resources   number of resources to create
+     * @param historySize number of allocation requests to create per resource
+     */
+    static BenchmarkDatabase create(int poolSize, int resources, int historySize) throws RManagerDataAccessException {
+        return create(poolSize, resources, historySize, RESOURCE_CAPACITY);
+    }
+
+    /**
+     * @param capacity total capacity of every resource
+     */
+    static BenchmarkDatabase create(int poolSize, int resources, int historySize, int capacity) throws RManagerDataAccessException {
+        SessionFactory sessionFactory = new Configuration()
+                .configure()
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.provider_class", "com.zaxxer.hikari.hibernate.HikariConnectionProvider")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "sa")
+                .setProperty("hibernate.hikari.maximumPoolSize", String.valueOf(poolSize))
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .buildSessionFactory();
+        ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+
+        long[] ids = new long[resources];
+        try (Session session = sessionFactory.openSession()) {
+            var service = new JPAManagedResourceService(() -> session, validatorFactory);
+            for (int i = 0; i < resources; i++) {
+                ids[i] = service.save(new SaveManagedResourceRequest("resource-" + i, null, capacity)).id();
+            }
+            seedHistory(service, session, ids, historySize);
+        }
+        return new BenchmarkDatabase(sessionFactory, validatorFactory, ids);
+    }
+
+    private static void seedHistory(JPAManagedResourceService service, Session session, long[] ids, int historySize)
+            throws RManagerDataAccessException {
+        var batch = new ArrayList<AllocationCommand>(SEED_BATCH_SIZE);
+        for (long id : ids) {
+            for (int i = 0; i < historySize; i++) {
+                batch.add(new AllocationCommand(id, i % 2 == 0 ? 1 : -1));
+                if (batch.size() == SEED_BATCH_SIZE) {
+                    flush(service, session, batch);
+                }
+            }
+        }
+        flush(service, session, batch);
+    }
+
+    private static void flush(JPAManagedResourceService service, Session session, List<AllocationCommand> batch)
+            throws RManagerDataAccessException {
+        if (!batch.isEmpty()) {
+            service.allocateAll(batch);
+            batch.clear();
+            session.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        validatorFactory.close();
+        sessionFactory.close();
+    }
+}
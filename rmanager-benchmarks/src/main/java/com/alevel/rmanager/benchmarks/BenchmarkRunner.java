@@ -0,0 +1,47 @@
+package com.alevel.rmanager.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks once per thread count and writes JMH results as JSON, one file per thread count,
+ * so runs of different releases can be compared by tooling.
+ * <p>
+ * System properties:
+ * <ul>
+ *     <li>{@code rmanager.bench.threads} - comma-separated thread counts, {@code 1,4,8} by default</li>
+ *     <li>{@code rmanager.bench.include} - regular expression selecting benchmarks, all by default</li>
+ *     <li>{@code rmanager.bench.output} - directory for result files, {@code jmh-results} by default</li>
+ * </ul>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        int[] threadCounts = Arrays.stream(System.getProperty("rmanager.bench.threads", "1,4,8").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        String include = System.getProperty("rmanager.bench.include", "com\\.alevel\\.rmanager\\.benchmarks\\..*");
+        Path output = Files.createDirectories(Path.of(System.getProperty("rmanager.bench.output", "jmh-results")));
+
+        for (int threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(output.resolve("threads-" + threads + ".json").toString());
+            new Runner(options.build()).run();
+        }
+    }
+}
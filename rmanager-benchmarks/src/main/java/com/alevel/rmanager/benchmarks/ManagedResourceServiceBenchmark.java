@@ -0,0 +1,143 @@
+package com.alevel.rmanager.benchmarks;
+
+import com.alevel.rmanager.data.exception.RManagerDataAccessException;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.jpa.JPAManagedResourceService;
+import com.alevel.rmanager.data.service.pipeline.GroupCommitAllocationEngine;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ManagedResourceServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"10", "1000"})
+        public int resourceCount;
+
+        @Param({"0", "100"})
+        public int historySize;
+
+        BenchmarkDatabase database;
+
+        Session engineSession;
+
+        GroupCommitAllocationEngine engine;
+
+        final AtomicLong names = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkParams params) throws RManagerDataAccessException {
+            database = BenchmarkDatabase.create(params.getThreads() + 1, resourceCount, historySize);
+            engineSession = database.sessionFactory.openSession();
+            engine = new GroupCommitAllocationEngine(
+                    new JPAManagedResourceService(() -> engineSession, database.validatorFactory),
+                    256,
+                    Duration.ofMillis(1),
+                    65_536);
+            engine.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            engine.close();
+            engineSession.close();
+            database.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        Session session;
+
+        JPAManagedResourceService service;
+
+        SplittableRandom random;
+
+        int units;
+
+        @Setup(Level.Trial)
+        public void setUp(Database database) {
+            session = database.database.sessionFactory.openSession();
+            service = new JPAManagedResourceService(() -> session, database.database.validatorFactory);
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            session.clear();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            session.close();
+        }
+
+        long nextResource(Database database) {
+            long[] ids = database.database.resourceIds;
+            return ids[random.nextInt(ids.length)];
+        }
+
+        /**
+         * Alternates claiming and releasing a unit, so resources never run out of capacity.
+         */
+        int nextUnits() {
+            units = units == 1 ? -1 : 1;
+            return units;
+        }
+    }
+
+    @Benchmark
+    public ManagedResourceRecord save(Database database, Client client) throws RManagerDataAccessException {
+        return client.service.save(new SaveManagedResourceRequest(
+                "benchmark-" + database.names.incrementAndGet(),
+                null,
+                BenchmarkDatabase.RESOURCE_CAPACITY));
+    }
+
+    @Benchmark
+    public Optional<ManagedResourceRecord> getById(Database database, Client client) {
+        // measure a database read rather than a hit in the session's first-level cache
+        client.session.clear();
+        return client.service.getById(client.nextResource(database));
+    }
+
+    @Benchmark
+    public AllocationResultRecord allocate(Database database, Client client) throws RManagerDataAccessException {
+        return client.service.allocate(client.nextResource(database), client.nextUnits());
+    }
+
+    @Benchmark
+    public AllocationResultRecord allocateGroupCommit(Database database, Client client) {
+        return database.engine.submit(client.nextResource(database), client.nextUnits()).join();
+    }
+}
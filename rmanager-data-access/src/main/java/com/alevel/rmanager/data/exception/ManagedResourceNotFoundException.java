@@ -1,7 +1,15 @@
 package com.alevel.rmanager.data.exception;
 
 public class ManagedResourceNotFoundException extends RManagerDataAccessException {
+
+    private final Long id;
+
     public ManagedResourceNotFoundException(Long id) {
         super("Managed resource with id = " + id + " was not found!");
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
     }
 }
@@ -0,0 +1,7 @@
+package com.alevel.rmanager.data.model.dto;
+
+public record AllocationCommand(
+        long resourceId,
+        int units
+) {
+}
@@ -0,0 +1,16 @@
+package com.alevel.rmanager.data.model.dto;
+
+import java.time.Instant;
+
+/**
+ * Position in allocation history ordered by {@code issuedAt desc, id desc}.
+ */
+public record AllocationHistoryCursor(
+        Instant issuedAt,
+        long id
+) {
+
+    public static AllocationHistoryCursor after(AllocationRequestRecord record) {
+        return new AllocationHistoryCursor(record.issuedAt(), record.id());
+    }
+}
@@ -4,13 +4,17 @@ import com.alevel.rmanager.data.model.entity.AllocationResult;
 
 import java.time.Instant;
 
+/**
+ * @param groupId id shared by the requests of one atomic allocation, {@code null} for a single allocation
+ */
 public record AllocationRequestRecord(
         Long id,
         Long resourceId,
         int capacity,
         int previousResourceCapacity,
         Instant issuedAt,
-        AllocationResultRecord result
+        AllocationResultRecord result,
+        Long groupId
 ) {
 
     public AllocationRequestRecord(Long id,
@@ -21,6 +25,33 @@ public record AllocationRequestRecord(
                                    AllocationResult.Status status,
                                    String reason) {
 
-        this(id, resourceId, capacity, previousResourceCapacity, issuedAt, new AllocationResultRecord(status, reason));
+        this(id, resourceId, capacity, previousResourceCapacity, issuedAt, status, reason, null);
+    }
+
+    public AllocationRequestRecord(Long id,
+                                   Long resourceId,
+                                   int capacity,
+                                   int previousResourceCapacity,
+                                   Instant issuedAt,
+                                   AllocationResult.Status status,
+                                   String reason,
+                                   Long groupId) {
+
+        this(id, resourceId, capacity, previousResourceCapacity, issuedAt, new AllocationResultRecord(status, reason), groupId);
+    }
+
+    public AllocationRequestRecord(Long id,
+                                   Long resourceId,
+                                   int capacity,
+                                   int previousResourceCapacity,
+                                   Instant issuedAt,
+                                   AllocationResult.Status status,
+                                   AllocationResult.RejectionCode code,
+                                   Long first,
+                                   Integer second,
+                                   String reason,
+                                   Long groupId) {
+
+        this(id, resourceId, capacity, previousResourceCapacity, issuedAt, AllocationResultRecord.of(status, code, first, second, reason), groupId);
     }
 }
@@ -2,8 +2,112 @@ package com.alevel.rmanager.data.model.dto;
 
 import com.alevel.rmanager.data.model.entity.AllocationResult;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @param code          why the allocation was rejected, {@code null} if it was accepted or has only a free-text reason
+ * @param first         first parameter of {@code code}
+ * @param second        second parameter of {@code code}
+ * @param legacyReason  free-text reason of a rejection without a code
+ */
 public record AllocationResultRecord(
         AllocationResult.Status status,
-        String reason
+        AllocationResult.RejectionCode code,
+        long first,
+        int second,
+        String legacyReason
 ) {
+
+    private static final AllocationResultRecord ACCEPTED = new AllocationResultRecord(AllocationResult.Status.ACCEPTED, null);
+
+    private static final AllocationResult.RejectionCode[] CODES = AllocationResult.RejectionCode.values();
+
+    private static final Pattern[] REASON_PATTERNS = new Pattern[CODES.length];
+
+    static {
+        for (AllocationResult.RejectionCode code : CODES) {
+            REASON_PATTERNS[code.ordinal()] = Pattern.compile(
+                    Pattern.quote(code.format()).replace("%s", "\\E(-?\\d+)\\Q"));
+        }
+    }
+
+    public AllocationResultRecord(AllocationResult.Status status, String reason) {
+        this(status, null, 0, 0, reason);
+    }
+
+    /**
+     * Creates a result as stored in the database, where parameters are {@code null} when there is no code.
+     */
+    public static AllocationResultRecord of(AllocationResult.Status status,
+                                            AllocationResult.RejectionCode code,
+                                            Long first,
+                                            Integer second,
+                                            String legacyReason) {
+        if (code == null) {
+            return legacyReason == null && status == AllocationResult.Status.ACCEPTED
+                    ? ACCEPTED
+                    : new AllocationResultRecord(status, legacyReason);
+        }
+        return new AllocationResultRecord(status, code, first == null ? 0 : first, second == null ? 0 : second, null);
+    }
+
+    /**
+     * Recognises reasons in the format of one of the rejection codes, e.g. written before the codes existed.
+     *
+     * @return a result with the code and parameters of {@code reason}, or with {@code reason} as free text
+     */
+    public static AllocationResultRecord parse(AllocationResult.Status status, String reason) {
+        if (reason != null) {
+            for (AllocationResult.RejectionCode code : CODES) {
+                Matcher matcher = REASON_PATTERNS[code.ordinal()].matcher(reason);
+                if (matcher.matches()) {
+                    try {
+                        long first = Long.parseLong(matcher.group(1));
+                        int second = matcher.groupCount() > 1 ? Integer.parseInt(matcher.group(2)) : 0;
+                        return new AllocationResultRecord(status, code, first, second, null);
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return of(status, null, null, null, reason);
+    }
+
+    public static AllocationResultRecord accepted() {
+        return ACCEPTED;
+    }
+
+    public static AllocationResultRecord totalCapacityExceeded(int totalCapacity, int newCapacity) {
+        return rejected(AllocationResult.RejectionCode.TOTAL_CAPACITY_EXCEEDED, totalCapacity, newCapacity);
+    }
+
+    public static AllocationResultRecord notEnoughCapacity(int availableCapacity, int requestedUnits) {
+        return rejected(AllocationResult.RejectionCode.NOT_ENOUGH_CAPACITY, availableCapacity, requestedUnits);
+    }
+
+    public static AllocationResultRecord linkedAllocationRejected(long resourceId) {
+        return rejected(AllocationResult.RejectionCode.LINKED_ALLOCATION_REJECTED, resourceId, 0);
+    }
+
+    private static AllocationResultRecord rejected(AllocationResult.RejectionCode code, long first, int second) {
+        return new AllocationResultRecord(AllocationResult.Status.REJECTED, code, first, second, null);
+    }
+
+    /**
+     * Human-readable reason of a rejection, built from the code on every call.
+     */
+    public String reason() {
+        return code == null ? legacyReason : code.describe(first, second);
+    }
+
+    /**
+     * Converts the result into its stored form.
+     */
+    public AllocationResult toEntity() {
+        return code == null
+                ? new AllocationResult(status, legacyReason)
+                : new AllocationResult(status, code, first, second, null);
+    }
 }
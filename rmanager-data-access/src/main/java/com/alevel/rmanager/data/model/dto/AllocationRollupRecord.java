@@ -0,0 +1,21 @@
+package com.alevel.rmanager.data.model.dto;
+
+import java.time.Instant;
+
+/**
+ * Summary of the allocation requests of a resource issued within one retention period.
+ *
+ * @param unitsAllocated net units claimed by accepted requests, releases counting as negative
+ * @param minCapacity    lowest capacity the resource had when a request was issued
+ * @param maxCapacity    highest capacity the resource had when a request was issued
+ */
+public record AllocationRollupRecord(
+        Long resourceId,
+        Instant periodStart,
+        long accepted,
+        long rejected,
+        long unitsAllocated,
+        int minCapacity,
+        int maxCapacity
+) {
+}
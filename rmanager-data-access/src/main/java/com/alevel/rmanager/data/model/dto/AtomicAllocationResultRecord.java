@@ -0,0 +1,22 @@
+package com.alevel.rmanager.data.model.dto;
+
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+
+import java.util.List;
+
+/**
+ * @param status  {@code ACCEPTED} if every command was granted, {@code REJECTED} if none was
+ * @param groupId id shared by the allocation requests recorded for the commands
+ * @param results one result per command, in the same order as the commands; when the allocation is rejected,
+ *                commands that would have fit are rejected with a reason naming the resource that did not
+ */
+public record AtomicAllocationResultRecord(
+        AllocationResult.Status status,
+        Long groupId,
+        List<AllocationResultRecord> results
+) {
+
+    public boolean accepted() {
+        return status == AllocationResult.Status.ACCEPTED;
+    }
+}
@@ -0,0 +1,11 @@
+package com.alevel.rmanager.data.model.dto;
+
+/**
+ * @param index position of the rejected request in the imported stream, starting from zero
+ */
+public record BulkImportFailure(
+        long index,
+        String name,
+        String reason
+) {
+}
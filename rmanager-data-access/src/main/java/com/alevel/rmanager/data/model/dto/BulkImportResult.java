@@ -0,0 +1,9 @@
+package com.alevel.rmanager.data.model.dto;
+
+import java.util.List;
+
+public record BulkImportResult(
+        long imported,
+        List<BulkImportFailure> failures
+) {
+}
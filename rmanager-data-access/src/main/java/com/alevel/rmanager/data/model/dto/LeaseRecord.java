@@ -0,0 +1,11 @@
+package com.alevel.rmanager.data.model.dto;
+
+import java.time.Instant;
+
+public record LeaseRecord(
+        Long id,
+        Long resourceId,
+        int units,
+        Instant expiresAt
+) {
+}
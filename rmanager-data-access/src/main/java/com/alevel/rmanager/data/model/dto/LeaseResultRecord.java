@@ -0,0 +1,10 @@
+package com.alevel.rmanager.data.model.dto;
+
+/**
+ * @param lease granted lease, {@code null} if the allocation was rejected
+ */
+public record LeaseResultRecord(
+        AllocationResultRecord result,
+        LeaseRecord lease
+) {
+}
@@ -0,0 +1,30 @@
+package com.alevel.rmanager.data.model.dto;
+
+/**
+ * @param unitsAllocated net units claimed by accepted requests, releases counting as negative
+ * @param peakUnitsInUse highest number of units ever claimed at once
+ * @param capacity       units available now
+ */
+public record ResourceStatisticsRecord(
+        Long resourceId,
+        long accepted,
+        long rejected,
+        long unitsAllocated,
+        int peakUnitsInUse,
+        int capacity,
+        int totalCapacity
+) {
+
+    public double utilization() {
+        return totalCapacity == 0 ? 0 : (double) (totalCapacity - capacity) / totalCapacity;
+    }
+
+    public double peakUtilization() {
+        return totalCapacity == 0 ? 0 : (double) peakUnitsInUse / totalCapacity;
+    }
+
+    public double acceptRatio() {
+        long decided = accepted + rejected;
+        return decided == 0 ? 0 : (double) accepted / decided;
+    }
+}
@@ -0,0 +1,20 @@
+package com.alevel.rmanager.data.model.dto;
+
+import java.time.Duration;
+
+public record SnapshotStats(
+        long resources,
+        long allocationRequests,
+        long bytes,
+        Duration elapsed
+) {
+
+    public long rows() {
+        return resources + allocationRequests;
+    }
+
+    public double rowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : rows() * 1e9 / nanos;
+    }
+}
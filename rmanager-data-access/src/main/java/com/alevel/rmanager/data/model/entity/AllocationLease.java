@@ -0,0 +1,63 @@
+package com.alevel.rmanager.data.model.entity;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "alloc_leases", indexes = {
+        @Index(name = "alloc_leases_expires_at_idx", columnList = "expires_at"),
+        @Index(name = "alloc_leases_resource_id_idx", columnList = "resource_id")
+})
+public class AllocationLease {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "alloc_lease_id_generator")
+    @SequenceGenerator(name = "alloc_lease_id_generator", sequenceName = "alloc_lease_id_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "resource_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private ManagedResource resource;
+
+    @Column(nullable = false)
+    private int units;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ManagedResource getResource() {
+        return resource;
+    }
+
+    public void setResource(ManagedResource resource) {
+        this.resource = resource;
+    }
+
+    public int getUnits() {
+        return units;
+    }
+
+    public void setUnits(int units) {
+        this.units = units;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
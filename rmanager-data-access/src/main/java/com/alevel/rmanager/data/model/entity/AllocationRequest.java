@@ -4,7 +4,11 @@ import javax.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "alloc_requests")
+@Table(name = "alloc_requests", indexes = {
+        @Index(name = "alloc_requests_issued_at_idx", columnList = "issued_at"),
+        @Index(name = "alloc_requests_resource_history_idx", columnList = "resource_id, issued_at desc, id desc"),
+        @Index(name = "alloc_requests_group_id_idx", columnList = "group_id")
+})
 public class AllocationRequest {
 
     @Id
@@ -29,6 +33,12 @@ public class AllocationRequest {
     @Embedded
     private AllocationResult result;
 
+    /**
+     * Id of the first request of an atomic multi-resource allocation, shared by all its requests.
+     */
+    @Column(name = "group_id")
+    private Long groupId;
+
     @PrePersist
     public void onCreate() {
         if (issuedAt == null) {
@@ -83,4 +93,12 @@ public class AllocationRequest {
     public void setResult(AllocationResult result) {
         this.result = result;
     }
+
+    public Long getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(Long groupId) {
+        this.groupId = groupId;
+    }
 }
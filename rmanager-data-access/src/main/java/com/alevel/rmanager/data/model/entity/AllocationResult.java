@@ -10,16 +10,67 @@ public class AllocationResult {
         ACCEPTED, REJECTED
     }
 
+    /**
+     * Why an allocation was rejected. The message is built from the code and its two parameters only when read.
+     */
+    public enum RejectionCode {
+        /**
+         * {@code first} is the total capacity, {@code second} the capacity the allocation would have left.
+         */
+        TOTAL_CAPACITY_EXCEEDED("Total capacity exceeded. Total = %s, got = %s"),
+        /**
+         * {@code first} is the available capacity, {@code second} the requested units.
+         */
+        NOT_ENOUGH_CAPACITY("Not enough capacity. Was available = %s, requested = %s"),
+        /**
+         * {@code first} is the id of the resource whose allocation was rejected.
+         */
+        LINKED_ALLOCATION_REJECTED("Linked allocation of resource %s was rejected");
+
+        private final String format;
+
+        RejectionCode(String format) {
+            this.format = format;
+        }
+
+        public String format() {
+            return format;
+        }
+
+        public String describe(long first, int second) {
+            return this == LINKED_ALLOCATION_REJECTED ? format.formatted(first) : format.formatted(first, second);
+        }
+    }
+
     @Column(nullable = false)
     private Status status;
 
+    @Column(name = "reason_code")
+    private RejectionCode code;
+
+    @Column(name = "reason_first")
+    private Long first;
+
+    @Column(name = "reason_second")
+    private Integer second;
+
+    /**
+     * Free-text reason of requests recorded before rejection codes, or of reasons in no known format.
+     */
     private String reason;
 
-    public AllocationResult(Status status, String reason) {
+    public AllocationResult(Status status, RejectionCode code, Long first, Integer second, String reason) {
         this.status = status;
+        this.code = code;
+        this.first = first;
+        this.second = second;
         this.reason = reason;
     }
 
+    public AllocationResult(Status status, String reason) {
+        this(status, null, null, null, reason);
+    }
+
     public AllocationResult() {
     }
 
@@ -31,6 +82,30 @@ public class AllocationResult {
         this.status = status;
     }
 
+    public RejectionCode getCode() {
+        return code;
+    }
+
+    public void setCode(RejectionCode code) {
+        this.code = code;
+    }
+
+    public Long getFirst() {
+        return first;
+    }
+
+    public void setFirst(Long first) {
+        this.first = first;
+    }
+
+    public Integer getSecond() {
+        return second;
+    }
+
+    public void setSecond(Integer second) {
+        this.second = second;
+    }
+
     public String getReason() {
         return reason;
     }
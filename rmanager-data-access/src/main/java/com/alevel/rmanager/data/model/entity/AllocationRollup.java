@@ -0,0 +1,107 @@
+package com.alevel.rmanager.data.model.entity;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(
+        name = "alloc_request_rollups",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"resource_id", "period_start"})
+)
+public class AllocationRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "alloc_rollup_id_generator")
+    @SequenceGenerator(name = "alloc_rollup_id_generator", sequenceName = "alloc_rollup_id_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "resource_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private ManagedResource resource;
+
+    @Column(name = "period_start", nullable = false)
+    private Instant periodStart;
+
+    @Column(nullable = false)
+    private long accepted;
+
+    @Column(nullable = false)
+    private long rejected;
+
+    @Column(name = "units_allocated", nullable = false)
+    private long unitsAllocated;
+
+    @Column(name = "min_capacity", nullable = false)
+    private int minCapacity;
+
+    @Column(name = "max_capacity", nullable = false)
+    private int maxCapacity;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ManagedResource getResource() {
+        return resource;
+    }
+
+    public void setResource(ManagedResource resource) {
+        this.resource = resource;
+    }
+
+    public Instant getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(Instant periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(long accepted) {
+        this.accepted = accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getUnitsAllocated() {
+        return unitsAllocated;
+    }
+
+    public void setUnitsAllocated(long unitsAllocated) {
+        this.unitsAllocated = unitsAllocated;
+    }
+
+    public int getMinCapacity() {
+        return minCapacity;
+    }
+
+    public void setMinCapacity(int minCapacity) {
+        this.minCapacity = minCapacity;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    public void setMaxCapacity(int maxCapacity) {
+        this.maxCapacity = maxCapacity;
+    }
+}
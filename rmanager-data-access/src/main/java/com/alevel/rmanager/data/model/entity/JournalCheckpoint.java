@@ -0,0 +1,42 @@
+package com.alevel.rmanager.data.model.entity;
+
+import javax.persistence.*;
+
+/**
+ * Sequence number of the last journal entry whose effects are stored in the database.
+ */
+@Entity
+@Table(name = "journal_checkpoints")
+public class JournalCheckpoint {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private long sequence;
+
+    public JournalCheckpoint() {
+    }
+
+    public JournalCheckpoint(String name, long sequence) {
+        this.name = name;
+        this.sequence = sequence;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+}
@@ -1,15 +1,21 @@
 package com.alevel.rmanager.data.model.entity;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "managed_resources")
+@Table(name = "managed_resources", indexes = {
+        @Index(name = "managed_resources_capacity_idx", columnList = "capacity, id")
+})
+@DynamicUpdate
 public class ManagedResource {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "managed_resource_id_generator")
+    @SequenceGenerator(name = "managed_resource_id_generator", sequenceName = "managed_resource_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
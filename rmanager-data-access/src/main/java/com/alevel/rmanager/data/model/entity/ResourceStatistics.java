@@ -0,0 +1,83 @@
+package com.alevel.rmanager.data.model.entity;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "resource_stats")
+public class ResourceStatistics {
+
+    @Id
+    @Column(name = "resource_id")
+    private Long resourceId;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "resource_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private ManagedResource resource;
+
+    @Column(nullable = false)
+    private long accepted;
+
+    @Column(nullable = false)
+    private long rejected;
+
+    @Column(name = "units_allocated", nullable = false)
+    private long unitsAllocated;
+
+    @Column(name = "peak_units_in_use", nullable = false)
+    private int peakUnitsInUse;
+
+    public ResourceStatistics() {
+    }
+
+    public ResourceStatistics(Long resourceId) {
+        this.resourceId = resourceId;
+    }
+
+    public Long getResourceId() {
+        return resourceId;
+    }
+
+    public void setResourceId(Long resourceId) {
+        this.resourceId = resourceId;
+    }
+
+    public ManagedResource getResource() {
+        return resource;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(long accepted) {
+        this.accepted = accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getUnitsAllocated() {
+        return unitsAllocated;
+    }
+
+    public void setUnitsAllocated(long unitsAllocated) {
+        this.unitsAllocated = unitsAllocated;
+    }
+
+    public int getPeakUnitsInUse() {
+        return peakUnitsInUse;
+    }
+
+    public void setPeakUnitsInUse(int peakUnitsInUse) {
+        this.peakUnitsInUse = peakUnitsInUse;
+    }
+}
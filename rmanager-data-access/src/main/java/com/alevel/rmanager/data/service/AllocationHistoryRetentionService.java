@@ -0,0 +1,24 @@
+package com.alevel.rmanager.data.service;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationRollupRecord;
+import com.alevel.rmanager.data.service.retention.RetentionReport;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface AllocationHistoryRetentionService {
+
+    /**
+     * Folds allocation requests issued before the start of the rollup period containing {@code cutoff}
+     * into per-resource, per-period rollups and deletes them.
+     */
+    RetentionReport compactBefore(Instant cutoff) throws RManagerDataLayerException;
+
+    /**
+     * Returns rollups of the resource, oldest period first.
+     */
+    List<AllocationRollupRecord> getRollupsByResourceId(long resourceId) throws ManagedResourceNotFoundException;
+
+}
@@ -0,0 +1,47 @@
+package com.alevel.rmanager.data.service;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.LeaseRecord;
+import com.alevel.rmanager.data.model.dto.LeaseResultRecord;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Allocations that give their units back on their own once their time to live passes.
+ */
+public interface AllocationLeaseService {
+
+    LeaseResultRecord allocate(long resourceId, int units, Duration ttl) throws ManagedResourceNotFoundException, RManagerDataLayerException;
+
+    /**
+     * Gives the units of a lease back before it expires.
+     *
+     * @return {@code false} if the lease has already been released or has expired
+     */
+    boolean release(long leaseId) throws RManagerDataLayerException;
+
+    /**
+     * Gives back the units of the given leases that have expired by {@code now}, in a single transaction.
+     * Leases that are gone or not due yet are skipped.
+     *
+     * @return number of leases that expired
+     */
+    int expire(Collection<Long> leaseIds, Instant now) throws RManagerDataLayerException;
+
+    /**
+     * Returns outstanding leases ordered by id, one page at a time.
+     *
+     * @param afterId id of the last lease of the previous page, {@code null} for the first page
+     */
+    List<LeaseRecord> getActive(Long afterId, int limit);
+
+    /**
+     * Returns leases that expired by {@code now} but still hold their units, oldest expiry first.
+     */
+    List<LeaseRecord> getExpired(Instant now, int limit);
+
+}
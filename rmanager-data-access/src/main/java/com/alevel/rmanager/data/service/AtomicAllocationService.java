@@ -0,0 +1,27 @@
+package com.alevel.rmanager.data.service;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.AtomicAllocationResultRecord;
+
+import java.util.List;
+
+public interface AtomicAllocationService {
+
+    /**
+     * Allocates units of several resources at once: either every command is granted or none is.
+     * One allocation request is recorded per command either way, all sharing the group id of the result.
+     *
+     * @param commands at most one command per resource
+     * @throws ManagedResourceNotFoundException if any of the resources does not exist; nothing is recorded then
+     */
+    AtomicAllocationResultRecord allocate(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException;
+
+    /**
+     * Returns allocation requests recorded by one atomic allocation, ordered by resource id.
+     */
+    List<AllocationRequestRecord> getByGroupId(long groupId);
+
+}
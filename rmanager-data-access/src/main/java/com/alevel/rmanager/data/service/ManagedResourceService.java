@@ -2,22 +2,51 @@ package com.alevel.rmanager.data.service;
 
 import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
 import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
 import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
 import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
 import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ManagedResourceService {
 
     Optional<ManagedResourceRecord> getById(long id);
 
+    /**
+     * Loads resources with chunked queries straight into records, without attaching entities to the persistence context.
+     *
+     * @return found resources in the order of the first occurrence of their ids; missing ids are skipped
+     */
+    List<ManagedResourceRecord> getByIds(Collection<Long> ids);
+
     ManagedResourceRecord save(SaveManagedResourceRequest managedResource) throws RManagerDataLayerException;
 
+    /**
+     * Creates resources in bulk. Invalid requests, and requests the database refuses (e.g. duplicate names),
+     * are reported in the result and do not stop the import of the others.
+     * The stream is consumed, but not closed.
+     */
+    BulkImportResult saveAll(Stream<SaveManagedResourceRequest> managedResources) throws RManagerDataLayerException;
+
     void update(long id, SaveManagedResourceRequest managedResource) throws RManagerDataLayerException, ManagedResourceNotFoundException;
 
     void delete(long id) throws ManagedResourceNotFoundException;
 
     AllocationResultRecord allocate(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException;
 
+    /**
+     * Applies a batch of allocations in a single transaction.
+     * Commands are evaluated in list order, each against the capacity left by the previous ones.
+     *
+     * @return one result per command, in the same order as {@code commands}
+     * @throws ManagedResourceNotFoundException if any of the referenced resources does not exist;
+     *                                          nothing from the batch is applied in that case
+     */
+    List<AllocationResultRecord> allocateAll(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException;
+
 }
@@ -0,0 +1,38 @@
+package com.alevel.rmanager.data.service;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+
+import java.util.Optional;
+
+/**
+ * Finds resources with enough free capacity for a request.
+ */
+public interface PlacementService {
+
+    enum Strategy {
+        /**
+         * The resource with the lowest id among those with enough free units.
+         */
+        FIRST_FIT,
+        /**
+         * The resource with the fewest free units among those with enough, the lowest id among equals.
+         */
+        BEST_FIT
+    }
+
+    /**
+     * @param units number of free units the resource should have, at least one
+     * @return the resource chosen by {@code strategy}, empty if no resource has enough free units
+     */
+    Optional<ManagedResourceRecord> find(int units, Strategy strategy);
+
+    /**
+     * Finds a resource as {@link #find(int, Strategy)} does and allocates {@code units} of it.
+     * Concurrent allocations may take the capacity of the chosen resource first; another resource is chosen then.
+     *
+     * @return id of the resource the units were allocated from, empty if no resource had enough free units
+     */
+    Optional<Long> allocate(int units, Strategy strategy) throws RManagerDataLayerException;
+
+}
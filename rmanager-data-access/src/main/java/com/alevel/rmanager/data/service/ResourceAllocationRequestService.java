@@ -1,15 +1,51 @@
 package com.alevel.rmanager.data.service;
 
 import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
 import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ResourceAllocationRequestService {
 
     List<AllocationRequestRecord> getByResourceId(long resourceId) throws ManagedResourceNotFoundException;
 
+    /**
+     * Returns one page of allocation history, newest first.
+     *
+     * @param after position of the last record of the previous page, {@code null} for the first page
+     * @param limit maximal number of records in the page
+     */
+    List<AllocationRequestRecord> getByResourceId(long resourceId, AllocationHistoryCursor after, int limit) throws ManagedResourceNotFoundException;
+
+    /**
+     * Streams allocation history, newest first, without loading it into memory.
+     * The stream holds a transaction and a cursor open until it is closed, so it must be used in try-with-resources.
+     */
+    Stream<AllocationRequestRecord> streamByResourceId(long resourceId) throws ManagedResourceNotFoundException;
+
     Optional<AllocationRequestRecord> getById(long id);
 
+    /**
+     * Loads allocation requests with chunked queries straight into records.
+     *
+     * @return found requests in the order of the first occurrence of their ids; missing ids are skipped
+     */
+    List<AllocationRequestRecord> getByIds(Collection<Long> ids);
+
+    /**
+     * Returns allocation requests of all resources with ids greater than {@code afterId}, in id order.
+     *
+     * @param limit maximal number of records returned
+     */
+    List<AllocationRequestRecord> getAfterId(long afterId, int limit);
+
+    /**
+     * @return greatest allocation request id, {@code 0} if there are no allocation requests
+     */
+    long getLastId();
+
 }
@@ -0,0 +1,32 @@
+package com.alevel.rmanager.data.service;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.ResourceStatisticsRecord;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Utilization statistics of managed resources. Counters are maintained by the allocating transactions,
+ * so reads cost one row lookup regardless of the length of allocation history.
+ */
+public interface ResourceStatisticsService {
+
+    Optional<ResourceStatisticsRecord> getByResourceId(long resourceId);
+
+    /**
+     * Returns statistics of up to {@code limit} resources with ids greater than {@code afterResourceId}, ordered by id.
+     *
+     * @param afterResourceId id of the last resource of the previous page, {@code null} for the first page
+     */
+    List<ResourceStatisticsRecord> getAll(Long afterResourceId, int limit);
+
+    /**
+     * Recomputes statistics of every resource from its allocation history and rollups, {@code chunkSize} resources
+     * per transaction. Meant to be run once for data created before statistics were maintained.
+     *
+     * @return number of resources processed
+     */
+    long backfill(int chunkSize) throws RManagerDataLayerException;
+
+}
@@ -0,0 +1,25 @@
+package com.alevel.rmanager.data.service;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.SnapshotStats;
+import com.alevel.rmanager.data.service.snapshot.SnapshotFormat;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+public interface SnapshotService {
+
+    /**
+     * Writes every resource, each followed by its allocation history in issue order, using constant memory.
+     * The channel is not closed.
+     */
+    SnapshotStats exportTo(WritableByteChannel channel, SnapshotFormat format) throws RManagerDataLayerException;
+
+    /**
+     * Recreates resources and their allocation history from a snapshot written by {@link #exportTo}.
+     * Imported rows get new ids. Rows are committed in chunks, so a failed import keeps the chunks committed before it.
+     * The channel is not closed.
+     */
+    SnapshotStats importFrom(ReadableByteChannel channel, SnapshotFormat format) throws RManagerDataLayerException;
+
+}
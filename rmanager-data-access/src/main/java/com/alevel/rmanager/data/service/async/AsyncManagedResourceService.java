@@ -0,0 +1,41 @@
+package com.alevel.rmanager.data.service.async;
+
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Non-blocking counterpart of {@link ManagedResourceService}.
+ * Futures complete exceptionally with the exceptions declared by the blocking methods.
+ */
+public interface AsyncManagedResourceService {
+
+    CompletableFuture<Optional<ManagedResourceRecord>> getById(long id);
+
+    CompletableFuture<List<ManagedResourceRecord>> getByIds(Collection<Long> ids);
+
+    CompletableFuture<ManagedResourceRecord> save(SaveManagedResourceRequest managedResource);
+
+    /**
+     * The stream is consumed on the executor thread.
+     */
+    CompletableFuture<BulkImportResult> saveAll(Stream<SaveManagedResourceRequest> managedResources);
+
+    CompletableFuture<Void> update(long id, SaveManagedResourceRequest managedResource);
+
+    CompletableFuture<Void> delete(long id);
+
+    CompletableFuture<AllocationResultRecord> allocate(long id, int units);
+
+    CompletableFuture<List<AllocationResultRecord>> allocateAll(List<AllocationCommand> commands);
+
+}
@@ -0,0 +1,31 @@
+package com.alevel.rmanager.data.service.async;
+
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.service.ResourceAllocationRequestService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link ResourceAllocationRequestService}.
+ * Streaming history is not offered: a stream holds a transaction open on the thread that created it,
+ * so paging with {@link #getByResourceId(long, AllocationHistoryCursor, int)} is the asynchronous way to read large histories.
+ */
+public interface AsyncResourceAllocationRequestService {
+
+    CompletableFuture<List<AllocationRequestRecord>> getByResourceId(long resourceId);
+
+    CompletableFuture<List<AllocationRequestRecord>> getByResourceId(long resourceId, AllocationHistoryCursor after, int limit);
+
+    CompletableFuture<Optional<AllocationRequestRecord>> getById(long id);
+
+    CompletableFuture<List<AllocationRequestRecord>> getByIds(Collection<Long> ids);
+
+    CompletableFuture<List<AllocationRequestRecord>> getAfterId(long afterId, int limit);
+
+    CompletableFuture<Long> getLastId();
+
+}
@@ -0,0 +1,192 @@
+package com.alevel.rmanager.data.service.async;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking data access calls off the caller's thread.
+ * <p>
+ * At most {@code concurrency} calls run at once, which should match the size of the connection pool
+ * ({@code hibernate.hikari.maximumPoolSize}): more would only wait for a connection.
+ * At most {@code queueCapacity} further calls wait for their turn; beyond that calls fail fast
+ * with {@link RejectedExecutionException}.
+ * <p>
+ * Cancelling a returned future removes a queued call or interrupts a running one.
+ * A statement that has already reached the database may still complete there.
+ */
+public final class DataAccessExecutor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DataAccessExecutor.class);
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private static final boolean VIRTUAL_THREADS_AVAILABLE = probeVirtualThreads();
+
+    private final ExecutorService executor;
+
+    private final Semaphore admission;
+
+    private final Semaphore concurrency;
+
+    private DataAccessExecutor(ExecutorService executor, Semaphore admission, Semaphore concurrency) {
+        this.executor = executor;
+        this.admission = admission;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Fixed pool of {@code concurrency} platform threads with a bounded queue.
+     */
+    public static DataAccessExecutor platformThreads(int concurrency, int queueCapacity) {
+        requirePositive(concurrency, queueCapacity);
+        var counter = new AtomicInteger();
+        ThreadFactory threadFactory = task -> {
+            var thread = new Thread(task, "rmanager-data-access-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        var executor = new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        return new DataAccessExecutor(executor, null, null);
+    }
+
+    /**
+     * Virtual thread per call, with the same limits on running and waiting calls as {@link #platformThreads(int, int)}.
+     * Available on releases that ship virtual threads (Java 21, or 19 and 20 with {@code --enable-preview}).
+     *
+     * @throws UnsupportedOperationException if the running JVM has no virtual threads
+     */
+    public static DataAccessExecutor virtualThreads(int concurrency, int queueCapacity) {
+        requirePositive(concurrency, queueCapacity);
+        if (NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads are not available on Java " + Runtime.version());
+        }
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke();
+        } catch (Throwable e) {
+            throw new UnsupportedOperationException("Virtual threads are not available", e);
+        }
+        return new DataAccessExecutor(executor, new Semaphore(concurrency + queueCapacity), new Semaphore(concurrency, true));
+    }
+
+    public static boolean virtualThreadsAvailable() {
+        return VIRTUAL_THREADS_AVAILABLE;
+    }
+
+    private static boolean probeVirtualThreads() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            return false;
+        }
+        try {
+            ((ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke()).shutdown();
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        var result = new CompletableFuture<T>();
+
+        if (admission != null) {
+            if (!admission.tryAcquire()) {
+                result.completeExceptionally(new RejectedExecutionException("Too many pending data access calls"));
+                return result;
+            }
+            result.whenComplete((value, error) -> admission.release());
+        }
+
+        Future<?> task;
+        try {
+            task = executor.submit(() -> run(call, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+                if (executor instanceof ThreadPoolExecutor pool) {
+                    // A cancelled task stays in the bounded queue until a worker takes it; free its slot now
+                    pool.remove((Runnable) task);
+                }
+            }
+        });
+        return result;
+    }
+
+    private <T> void run(Callable<T> call, CompletableFuture<T> result) {
+        boolean permitted = false;
+        try {
+            if (concurrency != null) {
+                concurrency.acquire();
+                permitted = true;
+            }
+            if (result.isDone()) {
+                return;
+            }
+            result.complete(call.call());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        } finally {
+            if (permitted) {
+                concurrency.release();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Data access calls did not finish in time, interrupting them");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void requirePositive(int concurrency, int queueCapacity) {
+        if (concurrency < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Concurrency and queue capacity should be positive");
+        }
+    }
+
+    private static MethodHandle findVirtualThreadExecutorFactory() {
+        try {
+            return MethodHandles.publicLookup().findStatic(
+                    Executors.class,
+                    "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
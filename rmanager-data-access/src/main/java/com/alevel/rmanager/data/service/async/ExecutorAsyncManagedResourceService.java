@@ -0,0 +1,78 @@
+package com.alevel.rmanager.data.service.async;
+
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Runs a blocking {@link ManagedResourceService} on a {@link DataAccessExecutor}.
+ * The delegate is called from several threads at once, so it must not share an {@code EntityManager} between them.
+ */
+public class ExecutorAsyncManagedResourceService implements AsyncManagedResourceService {
+
+    private final ManagedResourceService delegate;
+
+    private final DataAccessExecutor executor;
+
+    public ExecutorAsyncManagedResourceService(ManagedResourceService delegate, DataAccessExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Optional<ManagedResourceRecord>> getById(long id) {
+        return executor.submit(() -> delegate.getById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<ManagedResourceRecord>> getByIds(Collection<Long> ids) {
+        List<Long> snapshot = List.copyOf(ids);
+        return executor.submit(() -> delegate.getByIds(snapshot));
+    }
+
+    @Override
+    public CompletableFuture<ManagedResourceRecord> save(SaveManagedResourceRequest managedResource) {
+        return executor.submit(() -> delegate.save(managedResource));
+    }
+
+    @Override
+    public CompletableFuture<BulkImportResult> saveAll(Stream<SaveManagedResourceRequest> managedResources) {
+        return executor.submit(() -> delegate.saveAll(managedResources));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(long id, SaveManagedResourceRequest managedResource) {
+        return executor.submit(() -> {
+            delegate.update(id, managedResource);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(long id) {
+        return executor.submit(() -> {
+            delegate.delete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<AllocationResultRecord> allocate(long id, int units) {
+        return executor.submit(() -> delegate.allocate(id, units));
+    }
+
+    @Override
+    public CompletableFuture<List<AllocationResultRecord>> allocateAll(List<AllocationCommand> commands) {
+        List<AllocationCommand> snapshot = List.copyOf(commands);
+        return executor.submit(() -> delegate.allocateAll(snapshot));
+    }
+}
@@ -0,0 +1,57 @@
+package com.alevel.rmanager.data.service.async;
+
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.service.ResourceAllocationRequestService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs a blocking {@link ResourceAllocationRequestService} on a {@link DataAccessExecutor}.
+ * The delegate is called from several threads at once, so it must not share an {@code EntityManager} between them.
+ */
+public class ExecutorAsyncResourceAllocationRequestService implements AsyncResourceAllocationRequestService {
+
+    private final ResourceAllocationRequestService delegate;
+
+    private final DataAccessExecutor executor;
+
+    public ExecutorAsyncResourceAllocationRequestService(ResourceAllocationRequestService delegate, DataAccessExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<AllocationRequestRecord>> getByResourceId(long resourceId) {
+        return executor.submit(() -> delegate.getByResourceId(resourceId));
+    }
+
+    @Override
+    public CompletableFuture<List<AllocationRequestRecord>> getByResourceId(long resourceId, AllocationHistoryCursor after, int limit) {
+        return executor.submit(() -> delegate.getByResourceId(resourceId, after, limit));
+    }
+
+    @Override
+    public CompletableFuture<Optional<AllocationRequestRecord>> getById(long id) {
+        return executor.submit(() -> delegate.getById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<AllocationRequestRecord>> getByIds(Collection<Long> ids) {
+        List<Long> snapshot = List.copyOf(ids);
+        return executor.submit(() -> delegate.getByIds(snapshot));
+    }
+
+    @Override
+    public CompletableFuture<List<AllocationRequestRecord>> getAfterId(long afterId, int limit) {
+        return executor.submit(() -> delegate.getAfterId(afterId, limit));
+    }
+
+    @Override
+    public CompletableFuture<Long> getLastId() {
+        return executor.submit(delegate::getLastId);
+    }
+}
@@ -0,0 +1,14 @@
+package com.alevel.rmanager.data.service.cache;
+
+public record CacheStats(
+        long hits,
+        long misses,
+        long evictions,
+        int size
+) {
+
+    public double hitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
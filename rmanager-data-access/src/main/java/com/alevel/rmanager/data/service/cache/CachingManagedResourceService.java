@@ -0,0 +1,239 @@
+package com.alevel.rmanager.data.service.cache;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of {@link ManagedResourceService#getById(long)}.
+ * <p>
+ * Entries live in segments, each an access-ordered LRU map with its own lock, so eviction is LRU within a segment.
+ * Every write made through this instance invalidates the affected entries once the delegate returns.
+ * A load that overlaps such an invalidation is not cached: each segment counts invalidations,
+ * and a loaded record is only stored if the count did not change while it was being read.
+ * Hence a read never returns capacity older than the last allocation completed through this instance.
+ */
+public class CachingManagedResourceService implements ManagedResourceService {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final ManagedResourceService delegate;
+
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingManagedResourceService(ManagedResourceService delegate, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size should be positive");
+        }
+        this.delegate = delegate;
+        int segmentCount = Math.min(MAX_SEGMENTS, maximumSize);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int segmentSize = maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0);
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public CacheStats stats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public Optional<ManagedResourceRecord> getById(long id) {
+        Segment segment = segmentFor(id);
+
+        ManagedResourceRecord cached = segment.get(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+
+        long generation = segment.generation();
+        Optional<ManagedResourceRecord> loaded = delegate.getById(id);
+        loaded.ifPresent(record -> segment.putIfUnchanged(id, record, generation));
+        return loaded;
+    }
+
+    /**
+     * Serves cached records and loads all misses with one delegate call.
+     */
+    @Override
+    public List<ManagedResourceRecord> getByIds(Collection<Long> ids) {
+        Map<Long, ManagedResourceRecord> found = new HashMap<>();
+        var missing = new ArrayList<Long>();
+        Map<Segment, Long> generations = new IdentityHashMap<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Segment segment = segmentFor(id);
+            ManagedResourceRecord cached = segment.get(id);
+            if (cached != null) {
+                hits.increment();
+                found.put(id, cached);
+            } else {
+                misses.increment();
+                missing.add(id);
+                generations.putIfAbsent(segment, segment.generation());
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (ManagedResourceRecord loaded : delegate.getByIds(missing)) {
+                Segment segment = segmentFor(loaded.id());
+                segment.putIfUnchanged(loaded.id(), loaded, generations.get(segment));
+                found.put(loaded.id(), loaded);
+            }
+        }
+
+        return ids.stream()
+                .distinct()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public ManagedResourceRecord save(SaveManagedResourceRequest managedResource) throws RManagerDataLayerException {
+        ManagedResourceRecord saved = delegate.save(managedResource);
+        segmentFor(saved.id()).put(saved.id(), saved);
+        return saved;
+    }
+
+    @Override
+    public BulkImportResult saveAll(Stream<SaveManagedResourceRequest> managedResources) throws RManagerDataLayerException {
+        return delegate.saveAll(managedResources);
+    }
+
+    @Override
+    public void update(long id, SaveManagedResourceRequest managedResource) throws RManagerDataLayerException, ManagedResourceNotFoundException {
+        try {
+            delegate.update(id, managedResource);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public void delete(long id) throws ManagedResourceNotFoundException {
+        try {
+            delegate.delete(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public AllocationResultRecord allocate(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        try {
+            return delegate.allocate(id, units);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public List<AllocationResultRecord> allocateAll(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        try {
+            return delegate.allocateAll(commands);
+        } finally {
+            for (AllocationCommand command : commands) {
+                invalidate(command.resourceId());
+            }
+        }
+    }
+
+    private void invalidate(long id) {
+        segmentFor(id).invalidate(id);
+    }
+
+    private Segment segmentFor(long id) {
+        int hash = Long.hashCode(id);
+        hash ^= hash >>> 16;
+        return segments[Math.floorMod(hash, segments.length)];
+    }
+
+    private final class Segment {
+
+        private final Map<Long, ManagedResourceRecord> entries;
+
+        private long generation;
+
+        Segment(int maximumSize) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, ManagedResourceRecord> eldest) {
+                    if (size() > maximumSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized ManagedResourceRecord get(long id) {
+            return entries.get(id);
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized void put(long id, ManagedResourceRecord record) {
+            entries.put(id, record);
+        }
+
+        synchronized void putIfUnchanged(long id, ManagedResourceRecord record, long expectedGeneration) {
+            if (generation == expectedGeneration) {
+                entries.put(id, record);
+            }
+        }
+
+        synchronized void invalidate(long id) {
+            generation++;
+            entries.remove(id);
+        }
+
+        synchronized void clear() {
+            generation++;
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.alevel.rmanager.data.service.feed;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.service.ResourceAllocationRequestService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes committed allocation requests of all resources in id order.
+ * <p>
+ * A single feed thread tails {@code alloc_requests} by id through {@code requests}, which must not share
+ * an {@code EntityManager} with other threads, and hands every new page to all live subscribers, so the database
+ * sees one range query per poll however many subscribers there are. The feed polls every {@code pollInterval};
+ * call {@link #wakeUp()} after committing allocations to publish them sooner. Allocations written through any
+ * service or process are published, as they are read back from the table.
+ * <p>
+ * Every subscriber has a buffer of {@code bufferSize} records and is signalled on {@code executor} only as far
+ * as it has requested. A subscriber whose buffer is full is not waited for: it falls back to catching up
+ * from the database, a page per free buffer space, until it reaches the live position again. Subscribers
+ * resuming after a request id catch up the same way, so a subscriber never misses or repeats a record.
+ * <p>
+ * Ids are assigned before commit, so a transaction may commit after one holding a greater id.
+ * The feed publishes past a missing id only once it stays missing for {@code gapTimeout}, which covers rolled back
+ * allocations and ids skipped on restart. Allocations committed later than that, out of id order, are not published,
+ * so the timeout should exceed the longest allocation transaction, and requests should be written by one process.
+ */
+public class AllocationFeed implements Flow.Publisher<AllocationRequestRecord>, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationFeed.class);
+
+    private final ResourceAllocationRequestService requests;
+
+    private final Executor executor;
+
+    private final int bufferSize;
+
+    private final int pageSize;
+
+    private final Duration pollInterval;
+
+    private final Duration gapTimeout;
+
+    private final Queue<FeedSubscription> added = new ConcurrentLinkedQueue<>();
+
+    private final List<FeedSubscription> subscriptions = new ArrayList<>();
+
+    private final Semaphore wakeUps = new Semaphore(0);
+
+    private volatile boolean running;
+
+    private volatile boolean closed;
+
+    private Thread feed;
+
+    private long liveId;
+
+    private long gapSince;
+
+    public AllocationFeed(ResourceAllocationRequestService requests,
+                          Executor executor,
+                          int bufferSize,
+                          int pageSize,
+                          Duration pollInterval,
+                          Duration gapTimeout) {
+        if (bufferSize < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("Buffer and page sizes should be positive");
+        }
+        this.requests = requests;
+        this.executor = Objects.requireNonNull(executor);
+        this.bufferSize = bufferSize;
+        this.pageSize = pageSize;
+        this.pollInterval = pollInterval;
+        this.gapTimeout = gapTimeout;
+    }
+
+    /**
+     * Starts publishing allocation requests committed from now on.
+     */
+    public synchronized void start() {
+        if (running || closed) {
+            throw new IllegalStateException("Allocation feed is already started");
+        }
+        liveId = requests.getLastId();
+        running = true;
+        feed = new Thread(this::runFeed, "rmanager-allocation-feed");
+        feed.setDaemon(true);
+        feed.start();
+    }
+
+    /**
+     * Subscribes to allocation requests committed after the subscription.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super AllocationRequestRecord> subscriber) {
+        register(subscriber, -1);
+    }
+
+    /**
+     * Subscribes to allocation requests with ids greater than {@code afterId}, catching up on those already committed.
+     *
+     * @param afterId id of the last request the subscriber has seen, {@code 0} to read the whole history
+     */
+    public void subscribe(Flow.Subscriber<? super AllocationRequestRecord> subscriber, long afterId) {
+        if (afterId < 0) {
+            throw new IllegalArgumentException("Request id should not be negative");
+        }
+        register(subscriber, afterId);
+    }
+
+    /**
+     * Makes the feed poll now instead of at the end of the poll interval.
+     */
+    public void wakeUp() {
+        if (wakeUps.availablePermits() == 0) {
+            wakeUps.release();
+        }
+    }
+
+    /**
+     * Stops the feed and completes all subscriptions once their buffered records are delivered.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = false;
+            thread = feed;
+        }
+        wakeUp();
+        if (thread != null) {
+            thread.join();
+        }
+        adoptAdded();
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        subscriptions.clear();
+    }
+
+    private void register(Flow.Subscriber<? super AllocationRequestRecord> subscriber, long afterId) {
+        var subscription = new FeedSubscription(Objects.requireNonNull(subscriber), afterId);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.fail(new IllegalStateException("Allocation feed is closed"));
+            return;
+        }
+        added.add(subscription);
+        wakeUp();
+        // close() may have run between the check and adding the subscription
+        if (closed) {
+            synchronized (this) {
+                if (added.remove(subscription)) {
+                    subscription.complete();
+                }
+            }
+        }
+    }
+
+    private void runFeed() {
+        while (running) {
+            try {
+                adoptAdded();
+                subscriptions.removeIf(FeedSubscription::isCancelled);
+                tail();
+                catchUp();
+            } catch (RuntimeException e) {
+                log.error("Allocation feed poll failed", e);
+            }
+            try {
+                if (wakeUps.tryAcquire(pollInterval.toNanos(), TimeUnit.NANOSECONDS)) {
+                    wakeUps.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Allocation feed interrupted");
+                return;
+            }
+        }
+    }
+
+    private synchronized void adoptAdded() {
+        FeedSubscription subscription;
+        while ((subscription = added.poll()) != null) {
+            subscription.adopt(liveId);
+            subscriptions.add(subscription);
+        }
+    }
+
+    /**
+     * Reads requests committed after the live position and hands them to live subscribers, page by page.
+     */
+    private void tail() {
+        while (true) {
+            List<AllocationRequestRecord> page = requests.getAfterId(liveId, pageSize);
+            List<AllocationRequestRecord> settled = settledPrefix(page);
+            if (!settled.isEmpty()) {
+                liveId = settled.get(settled.size() - 1).id();
+                for (FeedSubscription subscription : subscriptions) {
+                    subscription.offer(settled);
+                }
+            }
+            if (page.size() < pageSize || settled.size() < page.size()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns records up to the first id that is missing for less than the gap timeout.
+     */
+    private List<AllocationRequestRecord> settledPrefix(List<AllocationRequestRecord> page) {
+        long expected = liveId + 1;
+        int settled = 0;
+        for (AllocationRequestRecord record : page) {
+            if (record.id() != expected) {
+                long now = System.nanoTime();
+                if (gapSince == 0) {
+                    gapSince = now;
+                }
+                if (now - gapSince < gapTimeout.toNanos()) {
+                    break;
+                }
+                log.debug("Publishing past missing allocation request ids {} to {}", expected, record.id() - 1);
+            }
+            gapSince = 0;
+            expected = record.id() + 1;
+            settled++;
+        }
+        return page.subList(0, settled);
+    }
+
+    /**
+     * Fills buffers of subscribers behind the live position, reading no further than the live position.
+     */
+    private void catchUp() {
+        for (FeedSubscription subscription : subscriptions) {
+            int free = subscription.catchUpSpace();
+            if (free == 0) {
+                continue;
+            }
+            int limit = Math.min(free, pageSize);
+            List<AllocationRequestRecord> page = requests.getAfterId(subscription.catchUpPosition(), limit);
+            int upToLive = 0;
+            while (upToLive < page.size() && page.get(upToLive).id() <= liveId) {
+                upToLive++;
+            }
+            subscription.caughtUp(page.subList(0, upToLive), upToLive < limit, liveId);
+        }
+    }
+
+    private final class FeedSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super AllocationRequestRecord> subscriber;
+
+        private final ArrayDeque<AllocationRequestRecord> buffer = new ArrayDeque<>();
+
+        private final AtomicInteger signals = new AtomicInteger();
+
+        private long position;
+
+        private boolean live;
+
+        private long demand;
+
+        private boolean completed;
+
+        private Throwable error;
+
+        private volatile boolean cancelled;
+
+        private FeedSubscription(Flow.Subscriber<? super AllocationRequestRecord> subscriber, long afterId) {
+            this.subscriber = subscriber;
+            this.position = afterId;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Subscriber should request a positive number of records, got " + n));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            synchronized (this) {
+                buffer.clear();
+            }
+        }
+
+        private boolean isCancelled() {
+            return cancelled;
+        }
+
+        private synchronized void adopt(long liveId) {
+            if (position < 0) {
+                position = liveId;
+                live = true;
+            }
+        }
+
+        private void offer(List<AllocationRequestRecord> records) {
+            synchronized (this) {
+                if (!live || cancelled) {
+                    return;
+                }
+                for (AllocationRequestRecord record : records) {
+                    if (record.id() <= position) {
+                        continue;
+                    }
+                    if (buffer.size() == bufferSize) {
+                        live = false;
+                        break;
+                    }
+                    buffer.add(record);
+                    position = record.id();
+                }
+            }
+            signal();
+        }
+
+        private synchronized int catchUpSpace() {
+            return live || cancelled ? 0 : bufferSize - buffer.size();
+        }
+
+        private synchronized long catchUpPosition() {
+            return position;
+        }
+
+        private void caughtUp(List<AllocationRequestRecord> records, boolean reachedLive, long liveId) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                buffer.addAll(records);
+                if (!records.isEmpty()) {
+                    position = records.get(records.size() - 1).id();
+                }
+                if (reachedLive) {
+                    position = Math.max(position, liveId);
+                    live = true;
+                }
+            }
+            signal();
+        }
+
+        private void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            signal();
+        }
+
+        private void fail(Throwable error) {
+            synchronized (this) {
+                this.error = error;
+            }
+            signal();
+        }
+
+        private void signal() {
+            if (signals.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Delivers buffered records as far as requested. Runs on one thread at a time,
+         * rerunning while other threads signalled during delivery.
+         */
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                deliver();
+                missed = signals.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void deliver() {
+            boolean refill = false;
+            while (!cancelled) {
+                AllocationRequestRecord next;
+                Throwable failure;
+                boolean done;
+                synchronized (this) {
+                    failure = error;
+                    next = failure == null && demand > 0 ? buffer.poll() : null;
+                    done = failure == null && completed && buffer.isEmpty() && next == null;
+                    if (next != null) {
+                        demand--;
+                        refill |= !live && buffer.isEmpty();
+                    }
+                }
+                if (failure != null || done) {
+                    cancelled = true;
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                if (next == null) {
+                    break;
+                }
+                try {
+                    subscriber.onNext(next);
+                } catch (RuntimeException e) {
+                    log.error("Allocation feed subscriber failed, cancelling its subscription", e);
+                    cancel();
+                }
+            }
+            if (refill) {
+                wakeUp();
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.alevel.rmanager.data.service.journal;
+
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of allocation decisions, kept in fixed-size memory-mapped segment files.
+ * <p>
+ * Every entry gets the next sequence number and is stored as {@code length, crc32c, payload}; the length is written
+ * last, so an entry cut short by a crash is recognised by a missing length or a checksum mismatch and discarded
+ * on the next {@link #open}. An appended entry is in the page cache as soon as {@link #append} returns,
+ * which is enough to survive the process being killed; {@code syncEachAppend} additionally forces it to the device
+ * to survive a power loss, at the cost of a disk flush per entry.
+ * <p>
+ * When an entry doesn't fit into the active segment, a new one is started. It is prepared under a temporary name
+ * and renamed once its header is on disk, so a crash while starting it leaves no segment without a header.
+ * Segments whose entries are all checkpointed elsewhere are deleted with {@link #releaseThrough(long)},
+ * which caps the journal size.
+ * A journal directory must be used by one instance at a time.
+ */
+public final class AllocationJournal implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        void accept(long sequence, JournalEntry entry);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationJournal.class);
+
+    private static final int MAGIC = 0x524D4A31;
+
+    private static final int VERSION = 2;
+
+    private static final int SEGMENT_HEADER_SIZE = 16;
+
+    private static final int ENTRY_HEADER_SIZE = 8;
+
+    private static final int FIXED_PAYLOAD_SIZE = 8 + 8 + 4 + 4 + 4 + 1 + 8 + 4 + 4 + 1 + 8 + 4;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final int NO_REASON = -1;
+
+    private static final byte NO_CODE = -1;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final AllocationResult.Status[] STATUSES = AllocationResult.Status.values();
+
+    private static final AllocationResult.RejectionCode[] CODES = AllocationResult.RejectionCode.values();
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final boolean syncEachAppend;
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    private final CRC32C checksum = new CRC32C();
+
+    private long lastSequence;
+
+    private boolean closed;
+
+    private AllocationJournal(Path directory, int segmentSize, boolean syncEachAppend) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncEachAppend = syncEachAppend;
+    }
+
+    /**
+     * Opens the journal in {@code directory}, creating it if needed, and recovers its tail.
+     *
+     * @param segmentSize size of each segment file in bytes
+     * @throws IOException if a segment other than the last one is damaged
+     */
+    public static AllocationJournal open(Path directory, int segmentSize, boolean syncEachAppend) throws IOException {
+        if (segmentSize < SEGMENT_HEADER_SIZE + ENTRY_HEADER_SIZE + FIXED_PAYLOAD_SIZE + 4) {
+            throw new IllegalArgumentException("Journal segment of " + segmentSize + " bytes can't hold an entry");
+        }
+        Files.createDirectories(directory);
+        var journal = new AllocationJournal(directory, segmentSize, syncEachAppend);
+        journal.recover();
+        return journal;
+    }
+
+    /**
+     * @return sequence number of the appended entry
+     */
+    public synchronized long append(JournalEntry entry) throws IOException {
+        requireOpen();
+        AllocationResultRecord result = entry.result();
+        byte[] reason = result.legacyReason() == null ? null : result.legacyReason().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = FIXED_PAYLOAD_SIZE + (reason == null ? 0 : reason.length);
+        int entrySize = ENTRY_HEADER_SIZE + payloadSize;
+        if (SEGMENT_HEADER_SIZE + entrySize + 4 > segmentSize) {
+            throw new IOException("Journal entry of " + entrySize + " bytes does not fit into a segment");
+        }
+
+        Segment active = active();
+        if (active.position + entrySize + 4 > segmentSize) {
+            active.seal();
+            active = startSegment(lastSequence + 1);
+        }
+
+        long sequence = lastSequence + 1;
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.position;
+        int at = position + ENTRY_HEADER_SIZE;
+        buffer.putLong(at, sequence);
+        buffer.putLong(at + 8, entry.resourceId());
+        buffer.putInt(at + 16, entry.units());
+        buffer.putInt(at + 20, entry.previousCapacity());
+        buffer.putInt(at + 24, entry.totalCapacity());
+        buffer.put(at + 28, (byte) result.status().ordinal());
+        buffer.putLong(at + 29, entry.issuedAt().getEpochSecond());
+        buffer.putInt(at + 37, entry.issuedAt().getNano());
+        buffer.putInt(at + 41, reason == null ? NO_REASON : reason.length);
+        buffer.put(at + 45, result.code() == null ? NO_CODE : (byte) result.code().ordinal());
+        buffer.putLong(at + 46, result.first());
+        buffer.putInt(at + 54, result.second());
+        if (reason != null) {
+            buffer.put(at + FIXED_PAYLOAD_SIZE, reason);
+        }
+        buffer.putInt(position + 4, checksum(buffer, at, payloadSize));
+        buffer.putInt(position, payloadSize);
+        if (syncEachAppend) {
+            buffer.force(position, entrySize);
+        }
+
+        active.position = position + entrySize;
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Passes entries with sequence numbers greater than {@code afterSequence} to {@code consumer}, oldest first.
+     *
+     * @return number of entries replayed
+     */
+    public synchronized long replay(long afterSequence, EntryConsumer consumer) {
+        requireOpen();
+        long[] replayed = {0};
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && segments.get(i + 1).firstSequence <= afterSequence + 1) {
+                continue;
+            }
+            scan(segments.get(i), (sequence, entry) -> {
+                if (sequence > afterSequence) {
+                    consumer.accept(sequence, entry);
+                    replayed[0]++;
+                }
+            });
+        }
+        return replayed[0];
+    }
+
+    /**
+     * Deletes segments holding only entries with sequence numbers up to {@code sequence}. The active segment is kept.
+     *
+     * @return number of deleted segments
+     */
+    public synchronized int releaseThrough(long sequence) throws IOException {
+        requireOpen();
+        int released = 0;
+        while (segments.size() > 1 && segments.get(1).firstSequence <= sequence + 1) {
+            Segment segment = segments.remove(0);
+            Files.deleteIfExists(segment.path);
+            released++;
+        }
+        if (released > 0) {
+            log.debug("Released {} journal segments up to sequence {}", released, sequence);
+        }
+        return released;
+    }
+
+    /**
+     * Makes the next entry get a sequence number greater than {@code sequence}, e.g. to continue after
+     * a checkpoint when the journal was lost or replaced by an older copy.
+     */
+    public synchronized void advanceTo(long sequence) throws IOException {
+        requireOpen();
+        if (lastSequence >= sequence) {
+            return;
+        }
+        log.warn("Journal ends at sequence {} behind checkpoint {}, continuing after the checkpoint", lastSequence, sequence);
+        active().seal();
+        startSegment(sequence + 1);
+        lastSequence = sequence;
+    }
+
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!segments.isEmpty()) {
+            active().buffer.force();
+        }
+        segments.clear();
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .toList();
+        }
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(SEGMENT_SUFFIX + TEMPORARY_SUFFIX)) {
+                log.warn("Deleting journal segment {} left unfinished by a crash", file);
+                Files.delete(file);
+            }
+        }
+        files = files.stream()
+                .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted(Comparator.comparingLong(AllocationJournal::firstSequenceOf))
+                .toList();
+
+        if (files.isEmpty()) {
+            startSegment(1);
+            return;
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = mapSegment(files.get(i), firstSequenceOf(files.get(i)));
+            segments.add(segment);
+
+            ScanResult scan = scan(segment, (sequence, entry) -> {
+            });
+            boolean last = i == files.size() - 1;
+            if (scan.damaged() && !last) {
+                throw new IOException("Journal segment " + segment.path + " is damaged at offset " + scan.position());
+            }
+            lastSequence = Math.max(lastSequence, scan.lastSequence());
+            segment.position = scan.position();
+            if (last && scan.damaged()) {
+                log.warn("Discarding incomplete journal entry at offset {} of {}", scan.position(), segment.path);
+                for (int position = scan.position(); position < segmentSize; position++) {
+                    segment.buffer.put(position, (byte) 0);
+                }
+                segment.buffer.force();
+            }
+        }
+        log.info("Opened allocation journal {} with {} segments up to sequence {}", directory, segments.size(), lastSequence);
+    }
+
+    private ScanResult scan(Segment segment, EntryConsumer consumer) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = SEGMENT_HEADER_SIZE;
+        long expected = segment.firstSequence;
+        while (position + ENTRY_HEADER_SIZE <= segmentSize) {
+            int payloadSize = buffer.getInt(position);
+            if (payloadSize == 0 || payloadSize == END_OF_SEGMENT) {
+                return new ScanResult(position, expected - 1, false);
+            }
+            int at = position + ENTRY_HEADER_SIZE;
+            if (payloadSize < FIXED_PAYLOAD_SIZE || at + payloadSize > segmentSize
+                    || buffer.getInt(position + 4) != checksum(buffer, at, payloadSize)
+                    || buffer.getLong(at) != expected) {
+                return new ScanResult(position, expected - 1, true);
+            }
+            consumer.accept(expected, decode(buffer, at));
+            expected++;
+            position = at + payloadSize;
+        }
+        return new ScanResult(position, expected - 1, false);
+    }
+
+    private static JournalEntry decode(ByteBuffer buffer, int at) {
+        int reasonLength = buffer.getInt(at + 41);
+        String reason = null;
+        if (reasonLength != NO_REASON) {
+            byte[] bytes = new byte[reasonLength];
+            buffer.get(at + FIXED_PAYLOAD_SIZE, bytes);
+            reason = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new JournalEntry(
+                buffer.getLong(at + 8),
+                buffer.getInt(at + 16),
+                buffer.getInt(at + 20),
+                buffer.getInt(at + 24),
+                decodeResult(buffer, at, reason),
+                Instant.ofEpochSecond(buffer.getLong(at + 29), buffer.getInt(at + 37))
+        );
+    }
+
+    private static AllocationResultRecord decodeResult(ByteBuffer buffer, int at, String reason) {
+        AllocationResult.Status status = STATUSES[buffer.get(at + 28)];
+        byte code = buffer.get(at + 45);
+        if (code == NO_CODE) {
+            return AllocationResultRecord.of(status, null, null, null, reason);
+        }
+        return new AllocationResultRecord(status, CODES[code], buffer.getLong(at + 46), buffer.getInt(at + 54), null);
+    }
+
+    private int checksum(ByteBuffer buffer, int from, int length) {
+        checksum.reset();
+        checksum.update(buffer.duplicate().limit(from + length).position(from));
+        return (int) checksum.getValue();
+    }
+
+    private Segment startSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve("%s%020d%s".formatted(SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, firstSequence);
+        buffer.force();
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+
+        var segment = new Segment(path, firstSequence, buffer);
+        segment.position = SEGMENT_HEADER_SIZE;
+        segments.add(segment);
+        return segment;
+    }
+
+    private Segment mapSegment(Path path, long firstSequence) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != firstSequence) {
+            throw new IOException("File " + path + " is not a journal segment of this version");
+        }
+        return new Segment(path, firstSequence, buffer);
+    }
+
+    private static long firstSequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Segment active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private void requireOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    private record ScanResult(int position, long lastSequence, boolean damaged) {
+    }
+
+    private final class Segment {
+
+        private final Path path;
+
+        private final long firstSequence;
+
+        private final MappedByteBuffer buffer;
+
+        private int position;
+
+        private Segment(Path path, long firstSequence, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.buffer = buffer;
+        }
+
+        private void seal() {
+            if (position + 4 <= segmentSize) {
+                buffer.putInt(position, END_OF_SEGMENT);
+            }
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.alevel.rmanager.data.service.journal;
+
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+
+import java.time.Instant;
+
+/**
+ * Allocation decision as recorded in {@link AllocationJournal}, with the fields of an allocation request.
+ */
+public record JournalEntry(
+        long resourceId,
+        int units,
+        int previousCapacity,
+        int totalCapacity,
+        AllocationResultRecord result,
+        Instant issuedAt
+) {
+}
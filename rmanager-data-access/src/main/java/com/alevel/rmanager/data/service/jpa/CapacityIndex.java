@@ -0,0 +1,228 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.TreeSet;
+
+/**
+ * In-memory index of free capacity of managed resources.
+ * <p>
+ * Best fit is a ceiling lookup in a set ordered by capacity and id. First fit descends a max segment tree
+ * whose leaves are resources in id order, towards the leftmost leaf with enough capacity. Both are logarithmic.
+ * Leaves of removed resources are left empty until they make up half of the tree, which is then rebuilt;
+ * so is a tree that runs out of leaves, or gets a resource out of id order.
+ * <p>
+ * Capacity comes from reads that may finish out of order, so every change carries the version returned by
+ * {@link #nextVersion()} before its read, and is ignored unless it is the latest read of the resource.
+ * Removed resources keep their version until the next {@link #load(List, long)}.
+ */
+class CapacityIndex {
+
+    record Entry(long id, int capacity) {
+    }
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private static final int MIN_LEAVES = 16;
+
+    private static final Comparator<Entry> BY_CAPACITY = Comparator.comparingInt(Entry::capacity).thenComparingLong(Entry::id);
+
+    private final Map<Long, Integer> leaves = new HashMap<>();
+
+    private final NavigableSet<Entry> byCapacity = new TreeSet<>(BY_CAPACITY);
+
+    private final Map<Long, Long> versions = new HashMap<>();
+
+    private long clock;
+
+    private long[] ids = new long[MIN_LEAVES];
+
+    private int[] tree = new int[2 * MIN_LEAVES];
+
+    private int width = MIN_LEAVES;
+
+    private int used;
+
+    private int removed;
+
+    private boolean ordered = true;
+
+    CapacityIndex() {
+        Arrays.fill(tree, EMPTY);
+    }
+
+    /**
+     * @return version of state read after this call
+     */
+    synchronized long nextVersion() {
+        return ++clock;
+    }
+
+    /**
+     * Replaces the indexed resources with {@code entries} read at {@code version}.
+     * Resources indexed or removed from later reads keep that state.
+     */
+    synchronized void load(List<Entry> entries, long version) {
+        Map<Long, Entry> current = new HashMap<>();
+        for (Entry entry : entries()) {
+            current.put(entry.id(), entry);
+        }
+        Map<Long, Long> later = new HashMap<>();
+        versions.forEach((id, indexed) -> {
+            if (indexed > version) {
+                later.put(id, indexed);
+            }
+        });
+
+        var loaded = new ArrayList<Entry>(entries.size());
+        versions.clear();
+        for (Entry entry : entries) {
+            if (!later.containsKey(entry.id())) {
+                loaded.add(entry);
+                versions.put(entry.id(), version);
+            }
+        }
+        for (Long id : later.keySet()) {
+            Entry kept = current.get(id);
+            if (kept != null) {
+                loaded.add(kept);
+            }
+        }
+        versions.putAll(later);
+
+        leaves.clear();
+        byCapacity.clear();
+        layout(loaded);
+    }
+
+    /**
+     * Indexes capacity of a resource read at {@code version}.
+     */
+    synchronized void put(long id, int capacity, long version) {
+        if (!advance(id, version)) {
+            return;
+        }
+        Integer leaf = leaves.get(id);
+        if (leaf != null) {
+            byCapacity.remove(new Entry(id, tree[width + leaf]));
+            byCapacity.add(new Entry(id, capacity));
+            set(leaf, capacity);
+            return;
+        }
+
+        if (used == width) {
+            layout(entries());
+        }
+        if (used > 0 && ids[used - 1] > id) {
+            ordered = false;
+        }
+        leaves.put(id, used);
+        ids[used] = id;
+        byCapacity.add(new Entry(id, capacity));
+        set(used++, capacity);
+    }
+
+    /**
+     * Removes a resource deleted, or found missing by a read, at {@code version}.
+     */
+    synchronized void remove(long id, long version) {
+        if (!advance(id, version)) {
+            return;
+        }
+        Integer leaf = leaves.remove(id);
+        if (leaf == null) {
+            return;
+        }
+        byCapacity.remove(new Entry(id, tree[width + leaf]));
+        set(leaf, EMPTY);
+        removed++;
+        if (removed > used / 2 && used > MIN_LEAVES) {
+            layout(entries());
+        }
+    }
+
+    synchronized OptionalLong firstFit(int units) {
+        if (!ordered) {
+            layout(entries());
+        }
+        if (tree[1] < units) {
+            return OptionalLong.empty();
+        }
+        int node = 1;
+        while (node < width) {
+            node = tree[2 * node] >= units ? 2 * node : 2 * node + 1;
+        }
+        return OptionalLong.of(ids[node - width]);
+    }
+
+    synchronized OptionalLong bestFit(int units) {
+        Entry entry = byCapacity.ceiling(new Entry(Long.MIN_VALUE, units));
+        return entry == null ? OptionalLong.empty() : OptionalLong.of(entry.id());
+    }
+
+    synchronized int size() {
+        return leaves.size();
+    }
+
+    private boolean advance(long id, long version) {
+        Long indexed = versions.get(id);
+        if (indexed != null && indexed >= version) {
+            return false;
+        }
+        versions.put(id, version);
+        return true;
+    }
+
+    private List<Entry> entries() {
+        var entries = new ArrayList<Entry>(leaves.size());
+        for (int leaf = 0; leaf < used; leaf++) {
+            int capacity = tree[width + leaf];
+            if (capacity != EMPTY) {
+                entries.add(new Entry(ids[leaf], capacity));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Lays resources out in id order on a tree with at least twice as many leaves.
+     */
+    private void layout(List<Entry> entries) {
+        var sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(Entry::id));
+
+        width = Math.max(MIN_LEAVES, Integer.highestOneBit(Math.max(1, sorted.size())) << 2);
+        ids = new long[width];
+        tree = new int[2 * width];
+        Arrays.fill(tree, EMPTY);
+        leaves.clear();
+        byCapacity.clear();
+        for (int leaf = 0; leaf < sorted.size(); leaf++) {
+            Entry entry = sorted.get(leaf);
+            ids[leaf] = entry.id();
+            tree[width + leaf] = entry.capacity();
+            leaves.put(entry.id(), leaf);
+            byCapacity.add(entry);
+        }
+        for (int node = width - 1; node > 0; node--) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+        used = sorted.size();
+        removed = 0;
+        ordered = true;
+    }
+
+    private void set(int leaf, int capacity) {
+        int node = width + leaf;
+        tree[node] = capacity;
+        for (node /= 2; node > 0; node /= 2) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory view of {@code capacity} and {@code totalCapacity} of managed resources.
+ * Both counters of a resource are packed into a single {@link AtomicLong},
+ * so a decision and the capacity change it implies are applied with one compare-and-set.
+ */
+class CapacityLedger {
+
+    record Decision(AllocationResultRecord result, int previousCapacity, int totalCapacity) {
+    }
+
+    private final ConcurrentMap<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    boolean contains(long id) {
+        return counters.containsKey(id);
+    }
+
+    /**
+     * Registers resource state unless the ledger already tracks it. The ledger is the source of truth
+     * for tracked resources, so state read from the database never overwrites it.
+     */
+    void track(long id, int capacity, int totalCapacity) {
+        counters.putIfAbsent(id, new AtomicLong(pack(capacity, totalCapacity)));
+    }
+
+    void forget(long id) {
+        counters.remove(id);
+    }
+
+    void clear() {
+        counters.clear();
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    /**
+     * @return capacity and total capacity packed as in {@link #capacity(long)}, {@link #totalCapacity(long)},
+     * or {@code null} if the resource is not tracked
+     */
+    Long state(long id) {
+        AtomicLong counter = counters.get(id);
+        return counter == null ? null : counter.get();
+    }
+
+    /**
+     * @return decision for the allocation or {@code null} if the resource is not tracked
+     */
+    Decision allocate(long id, int units) {
+        AtomicLong counter = counters.get(id);
+        if (counter == null) {
+            return null;
+        }
+        while (true) {
+            long state = counter.get();
+            int capacity = capacity(state);
+            int totalCapacity = totalCapacity(state);
+            int newCapacity = capacity - units;
+            if (newCapacity > totalCapacity) {
+                return new Decision(AllocationResultRecord.totalCapacityExceeded(totalCapacity, newCapacity), capacity, totalCapacity);
+            }
+            if (newCapacity < 0) {
+                return new Decision(AllocationResultRecord.notEnoughCapacity(capacity, units), capacity, totalCapacity);
+            }
+            if (counter.compareAndSet(state, pack(newCapacity, totalCapacity))) {
+                return new Decision(AllocationResultRecord.accepted(), capacity, totalCapacity);
+            }
+        }
+    }
+
+    /**
+     * Returns units claimed by an accepted decision that could not be made durable.
+     */
+    void compensate(long id, int units) {
+        AtomicLong counter = counters.get(id);
+        if (counter == null) {
+            return;
+        }
+        long state;
+        do {
+            state = counter.get();
+        } while (!counter.compareAndSet(state, pack(capacity(state) + units, totalCapacity(state))));
+    }
+
+    /**
+     * @return {@code false} if the resource is tracked and has more capacity available than {@code totalCapacity}
+     */
+    boolean updateTotalCapacity(long id, int totalCapacity) {
+        AtomicLong counter = counters.get(id);
+        if (counter == null) {
+            return true;
+        }
+        while (true) {
+            long state = counter.get();
+            if (totalCapacity < capacity(state)) {
+                return false;
+            }
+            if (counter.compareAndSet(state, pack(capacity(state), totalCapacity))) {
+                return true;
+            }
+        }
+    }
+
+    static int capacity(long state) {
+        return (int) (state >> 32);
+    }
+
+    static int totalCapacity(long state) {
+        return (int) state;
+    }
+
+    private static long pack(int capacity, int totalCapacity) {
+        return ((long) capacity << 32) | (totalCapacity & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,48 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Splits lookups by id into IN-lists of at most {@value #CHUNK_SIZE} ids, which keeps statements
+ * within bind parameter limits of the database and bounds the number of distinct statements it has to plan.
+ */
+final class IdChunks {
+
+    static final int CHUNK_SIZE = 500;
+
+    private IdChunks() {
+    }
+
+    /**
+     * @param query loads items with ids from the given chunk
+     * @return loaded items in the order of the first occurrence of their ids; ids nothing was loaded for are skipped
+     */
+    static <T> List<T> load(Collection<Long> ids, Function<List<Long>, List<T>> query, Function<T, Long> idOf) {
+        List<Long> distinct = List.copyOf(new LinkedHashSet<>(ids));
+        if (distinct.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, T> loaded = new HashMap<>();
+        for (int from = 0; from < distinct.size(); from += CHUNK_SIZE) {
+            for (T item : query.apply(distinct.subList(from, Math.min(from + CHUNK_SIZE, distinct.size())))) {
+                loaded.put(idOf.apply(item), item);
+            }
+        }
+
+        var ordered = new ArrayList<T>(loaded.size());
+        for (Long id : distinct) {
+            T item = loaded.get(id);
+            if (item != null) {
+                ordered.add(item);
+            }
+        }
+        return ordered;
+    }
+}
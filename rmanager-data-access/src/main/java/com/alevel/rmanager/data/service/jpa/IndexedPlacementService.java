@@ -0,0 +1,236 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+import com.alevel.rmanager.data.service.PlacementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Answers placement queries from a {@link CapacityIndex} kept in sync with the operations passing through it
+ * to {@code delegate}, and allocates through {@code delegate}.
+ * <p>
+ * The index is loaded from the database by {@link #rebuild()}. Until then, queries go to the database
+ * through {@code persistence}, like {@link JPAPlacementService}. Capacity changed elsewhere, e.g. by leases or
+ * other processes, is seen once the resource is read through this service or after the next rebuild. A placement
+ * allocation rejected because the index was stale refreshes the resource and tries the next candidate;
+ * such an attempt is recorded as a rejected request of the resource.
+ * <p>
+ * After an accepted allocation the index takes the capacity the resource has once it is committed, read back from
+ * {@code delegate}, rather than subtracting the units, which a concurrent read that already saw them would count twice.
+ */
+public class IndexedPlacementService implements ManagedResourceService, PlacementService {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexedPlacementService.class);
+
+    private static final int MAX_ATTEMPTS = 16;
+
+    private final ManagedResourceService delegate;
+
+    private final Supplier<EntityManager> persistence;
+
+    private final JPAPlacementService fallback;
+
+    private final CapacityIndex index = new CapacityIndex();
+
+    private volatile boolean indexed;
+
+    public IndexedPlacementService(ManagedResourceService delegate, Supplier<EntityManager> persistence) {
+        this.delegate = delegate;
+        this.persistence = persistence;
+        this.fallback = new JPAPlacementService(persistence);
+    }
+
+    /**
+     * Loads free capacity of all managed resources into the index.
+     */
+    public void rebuild() {
+        EntityManager jpa = persistence.get();
+
+        long version = index.nextVersion();
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            List<CapacityIndex.Entry> entries = jpa.createQuery(
+                            "select r.id, r.capacity from ManagedResource r", Object[].class)
+                    .getResultStream()
+                    .map(row -> new CapacityIndex.Entry((Long) row[0], (Integer) row[1]))
+                    .toList();
+            transaction.commit();
+
+            index.load(entries, version);
+            indexed = true;
+            log.info("Indexed free capacity of {} resources", entries.size());
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<ManagedResourceRecord> find(int units, Strategy strategy) {
+        JPAPlacementService.requirePositive(units);
+        if (!indexed) {
+            return fallback.find(units, strategy);
+        }
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            OptionalLong candidate = candidate(units, strategy);
+            if (candidate.isEmpty()) {
+                return Optional.empty();
+            }
+            Optional<ManagedResourceRecord> resource = getById(candidate.getAsLong());
+            if (resource.isPresent() && resource.get().capacity() >= units) {
+                return resource;
+            }
+        }
+        log.warn("Capacity index kept offering stale candidates for {} units, asking the database", units);
+        return fallback.find(units, strategy);
+    }
+
+    @Override
+    public Optional<Long> allocate(int units, Strategy strategy) throws RManagerDataLayerException {
+        JPAPlacementService.requirePositive(units);
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            OptionalLong candidate = indexed
+                    ? candidate(units, strategy)
+                    : fallback.find(units, strategy).map(resource -> OptionalLong.of(resource.id())).orElse(OptionalLong.empty());
+            if (candidate.isEmpty()) {
+                return Optional.empty();
+            }
+            long id = candidate.getAsLong();
+            try {
+                if (allocate(id, units).status() == AllocationResult.Status.ACCEPTED) {
+                    return Optional.of(id);
+                }
+            } catch (ManagedResourceNotFoundException e) {
+                continue;
+            }
+            getById(id);
+        }
+        throw new RManagerDataLayerException(new IllegalStateException(
+                "Could not place " + units + " units in " + MAX_ATTEMPTS + " attempts"));
+    }
+
+    private OptionalLong candidate(int units, Strategy strategy) {
+        return switch (strategy) {
+            case FIRST_FIT -> index.firstFit(units);
+            case BEST_FIT -> index.bestFit(units);
+        };
+    }
+
+    /**
+     * Number of resources in the index.
+     */
+    public int indexedResources() {
+        return index.size();
+    }
+
+    @Override
+    public Optional<ManagedResourceRecord> getById(long id) {
+        long version = index.nextVersion();
+        Optional<ManagedResourceRecord> resource = delegate.getById(id);
+        resource.ifPresentOrElse(found -> index.put(id, found.capacity(), version), () -> index.remove(id, version));
+        return resource;
+    }
+
+    @Override
+    public List<ManagedResourceRecord> getByIds(Collection<Long> ids) {
+        long version = index.nextVersion();
+        List<ManagedResourceRecord> resources = delegate.getByIds(ids);
+        for (ManagedResourceRecord resource : resources) {
+            index.put(resource.id(), resource.capacity(), version);
+        }
+        return resources;
+    }
+
+    @Override
+    public ManagedResourceRecord save(SaveManagedResourceRequest managedResource) throws RManagerDataLayerException {
+        long version = index.nextVersion();
+        ManagedResourceRecord saved = delegate.save(managedResource);
+        index.put(saved.id(), saved.capacity(), version);
+        return saved;
+    }
+
+    /**
+     * Imported resources are not reported one by one, so the index is rebuilt after an import.
+     */
+    @Override
+    public BulkImportResult saveAll(Stream<SaveManagedResourceRequest> managedResources) throws RManagerDataLayerException {
+        BulkImportResult result = delegate.saveAll(managedResources);
+        if (indexed && result.imported() > 0) {
+            rebuild();
+        }
+        return result;
+    }
+
+    @Override
+    public void update(long id, SaveManagedResourceRequest managedResource) throws RManagerDataLayerException, ManagedResourceNotFoundException {
+        try {
+            delegate.update(id, managedResource);
+        } finally {
+            getById(id);
+        }
+    }
+
+    @Override
+    public void delete(long id) throws ManagedResourceNotFoundException {
+        try {
+            delegate.delete(id);
+        } finally {
+            index.remove(id, index.nextVersion());
+        }
+    }
+
+    @Override
+    public AllocationResultRecord allocate(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        AllocationResultRecord result;
+        try {
+            result = delegate.allocate(id, units);
+        } catch (ManagedResourceNotFoundException e) {
+            index.remove(id, index.nextVersion());
+            throw e;
+        }
+        if (result.status() == AllocationResult.Status.ACCEPTED) {
+            getById(id);
+        }
+        return result;
+    }
+
+    @Override
+    public List<AllocationResultRecord> allocateAll(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        List<AllocationResultRecord> results = delegate.allocateAll(commands);
+        Set<Long> claimed = new HashSet<>();
+        for (int i = 0; i < commands.size(); i++) {
+            if (results.get(i).status() == AllocationResult.Status.ACCEPTED) {
+                claimed.add(commands.get(i).resourceId());
+            }
+        }
+        if (!claimed.isEmpty()) {
+            getByIds(claimed);
+        }
+        return results;
+    }
+}
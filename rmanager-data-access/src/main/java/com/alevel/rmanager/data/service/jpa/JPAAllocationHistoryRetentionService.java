@@ -0,0 +1,250 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationRollupRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.model.entity.AllocationRollup;
+import com.alevel.rmanager.data.model.entity.ManagedResource;
+import com.alevel.rmanager.data.service.AllocationHistoryRetentionService;
+import com.alevel.rmanager.data.service.retention.RetentionPolicy;
+import com.alevel.rmanager.data.service.retention.RetentionReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Compacts history in chunks of {@link RetentionPolicy#chunkSize()} requests, oldest first. Each chunk is folded
+ * into rollups and deleted in its own short transaction, so row locks are held only for the duration of one chunk
+ * and an interrupted run leaves consistent state behind: a request is either still raw or counted in its rollup.
+ * The requests of an atomic allocation go into the same chunk, and stay raw while any of them is within the retention
+ * period, so a group is never left partly compacted.
+ * Only one compaction should run at a time.
+ */
+public class JPAAllocationHistoryRetentionService implements AllocationHistoryRetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(JPAAllocationHistoryRetentionService.class);
+
+    private static final String SELECT_REQUESTS = """
+            select ar.id, ar.resource.id, ar.issuedAt, ar.capacity, ar.previousResourceCapacity, ar.result.status, ar.groupId
+            from AllocationRequest ar
+            """;
+
+    private final Supplier<EntityManager> persistence;
+
+    private final RetentionPolicy policy;
+
+    public JPAAllocationHistoryRetentionService(Supplier<EntityManager> persistence, RetentionPolicy policy) {
+        this.persistence = persistence;
+        this.policy = policy;
+    }
+
+    @Override
+    public RetentionReport compactBefore(Instant cutoff) throws RManagerDataLayerException {
+        Instant boundary = policy.periodStart(cutoff);
+        EntityManager jpa = persistence.get();
+
+        long start = System.nanoTime();
+        long compactedRequests = 0;
+        long rollups = 0;
+        int chunks = 0;
+        while (true) {
+            ChunkResult chunk = compactChunk(jpa, boundary);
+            if (chunk.requests() == 0) {
+                break;
+            }
+            chunks++;
+            compactedRequests += chunk.requests();
+            rollups += chunk.rollups();
+            if (chunk.requests() < policy.chunkSize()) {
+                break;
+            }
+        }
+
+        var report = new RetentionReport(boundary, compactedRequests, rollups, chunks, Duration.ofNanos(System.nanoTime() - start));
+        log.info("Compacted {} allocation requests issued before {} into {} rollups in {} chunks",
+                compactedRequests, boundary, rollups, chunks);
+        return report;
+    }
+
+    private ChunkResult compactChunk(EntityManager jpa, Instant boundary) throws RManagerDataLayerException {
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            List<Object[]> requests = jpa.createQuery(SELECT_REQUESTS + """
+                            where ar.issuedAt < :cutoff and not exists (
+                                select other.id from AllocationRequest other
+                                where other.groupId = ar.groupId and other.issuedAt >= :cutoff
+                            )
+                            order by ar.issuedAt, ar.id
+                            """, Object[].class)
+                    .setParameter("cutoff", boundary)
+                    .setMaxResults(policy.chunkSize())
+                    .getResultList();
+            requests = withGroupMembers(jpa, requests);
+
+            if (requests.isEmpty()) {
+                transaction.commit();
+                return new ChunkResult(0, 0);
+            }
+
+            Map<RollupKey, AllocationRollup> rollups = loadRollups(jpa, requests);
+            var requestIds = new ArrayList<Long>(requests.size());
+            for (Object[] request : requests) {
+                requestIds.add((Long) request[0]);
+                var key = new RollupKey((Long) request[1], policy.periodStart((Instant) request[2]));
+                AllocationRollup rollup = rollups.computeIfAbsent(key, JPAAllocationHistoryRetentionService::newRollup);
+                fold(rollup, (Integer) request[3], (Integer) request[4], (AllocationResult.Status) request[5]);
+            }
+
+            for (Map.Entry<RollupKey, AllocationRollup> entry : rollups.entrySet()) {
+                AllocationRollup rollup = entry.getValue();
+                if (rollup.getId() == null) {
+                    rollup.setResource(jpa.getReference(ManagedResource.class, entry.getKey().resourceId()));
+                    jpa.persist(rollup);
+                }
+            }
+
+            jpa.createQuery("delete from AllocationRequest ar where ar.id in :ids")
+                    .setParameter("ids", requestIds)
+                    .executeUpdate();
+
+            transaction.commit();
+
+            log.debug("Compacted chunk of {} allocation requests into {} rollups", requests.size(), rollups.size());
+
+            return new ChunkResult(requests.size(), rollups.size());
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        } finally {
+            jpa.clear();
+        }
+    }
+
+    /**
+     * Adds the requests of the chunk's groups cut off by the chunk size, so each group is compacted whole.
+     */
+    private static List<Object[]> withGroupMembers(EntityManager jpa, List<Object[]> requests) {
+        Set<Long> groupIds = new HashSet<>();
+        Set<Long> requestIds = new HashSet<>();
+        for (Object[] request : requests) {
+            requestIds.add((Long) request[0]);
+            if (request[6] != null) {
+                groupIds.add((Long) request[6]);
+            }
+        }
+        if (groupIds.isEmpty()) {
+            return requests;
+        }
+
+        var chunk = new ArrayList<>(requests);
+        jpa.createQuery(SELECT_REQUESTS + "where ar.groupId in :groupIds", Object[].class)
+                .setParameter("groupIds", groupIds)
+                .getResultStream()
+                .filter(member -> !requestIds.contains((Long) member[0]))
+                .forEach(chunk::add);
+        return chunk;
+    }
+
+    /**
+     * Loads rollups the chunk adds to. The query matches resources and periods independently,
+     * so it may return a few unrelated rollups, which are left untouched.
+     */
+    private Map<RollupKey, AllocationRollup> loadRollups(EntityManager jpa, List<Object[]> requests) {
+        Set<Long> resourceIds = new HashSet<>();
+        Set<Instant> periods = new HashSet<>();
+        for (Object[] request : requests) {
+            resourceIds.add((Long) request[1]);
+            periods.add(policy.periodStart((Instant) request[2]));
+        }
+
+        Map<RollupKey, AllocationRollup> rollups = new HashMap<>();
+        jpa.createQuery("""
+                        select r from AllocationRollup r
+                        where r.resource.id in :resourceIds and r.periodStart in :periods
+                        """, AllocationRollup.class)
+                .setParameter("resourceIds", resourceIds)
+                .setParameter("periods", periods)
+                .getResultStream()
+                .forEach(rollup -> rollups.put(new RollupKey(rollup.getResource().getId(), rollup.getPeriodStart()), rollup));
+        return rollups;
+    }
+
+    private static AllocationRollup newRollup(RollupKey key) {
+        var rollup = new AllocationRollup();
+        rollup.setPeriodStart(key.periodStart());
+        rollup.setMinCapacity(Integer.MAX_VALUE);
+        rollup.setMaxCapacity(Integer.MIN_VALUE);
+        return rollup;
+    }
+
+    private static void fold(AllocationRollup rollup, int units, int previousCapacity, AllocationResult.Status status) {
+        if (status == AllocationResult.Status.ACCEPTED) {
+            rollup.setAccepted(rollup.getAccepted() + 1);
+            rollup.setUnitsAllocated(rollup.getUnitsAllocated() + units);
+        } else {
+            rollup.setRejected(rollup.getRejected() + 1);
+        }
+        rollup.setMinCapacity(Math.min(rollup.getMinCapacity(), previousCapacity));
+        rollup.setMaxCapacity(Math.max(rollup.getMaxCapacity(), previousCapacity));
+    }
+
+    @Override
+    public List<AllocationRollupRecord> getRollupsByResourceId(long resourceId) throws ManagedResourceNotFoundException {
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            List<AllocationRollupRecord> rollups = jpa.createQuery("""
+                            select new com.alevel.rmanager.data.model.dto.AllocationRollupRecord(
+                                r.resource.id,
+                                r.periodStart,
+                                r.accepted,
+                                r.rejected,
+                                r.unitsAllocated,
+                                r.minCapacity,
+                                r.maxCapacity
+                            ) from AllocationRollup r
+                            where r.resource.id = :id
+                            order by r.periodStart
+                            """, AllocationRollupRecord.class)
+                    .setParameter("id", resourceId)
+                    .getResultList();
+
+            if (rollups.isEmpty() && !JPAResourceAllocationRequestService.exists(jpa, resourceId)) {
+                transaction.rollback();
+                throw new ManagedResourceNotFoundException(resourceId);
+            }
+
+            transaction.commit();
+
+            return rollups;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    private record RollupKey(Long resourceId, Instant periodStart) {
+    }
+
+    private record ChunkResult(int requests, int rollups) {
+    }
+}
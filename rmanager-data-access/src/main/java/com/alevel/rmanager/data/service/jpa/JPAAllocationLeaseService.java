@@ -0,0 +1,272 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.LeaseRecord;
+import com.alevel.rmanager.data.model.dto.LeaseResultRecord;
+import com.alevel.rmanager.data.model.entity.AllocationLease;
+import com.alevel.rmanager.data.model.entity.AllocationRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.model.entity.ManagedResource;
+import com.alevel.rmanager.data.service.AllocationLeaseService;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Leases claim capacity the same way as {@link JPAManagedResourceService.AllocationMode#CONDITIONAL_UPDATE},
+ * and give it back with an atomic increment, so expiry never overwrites concurrent allocations.
+ * Both directions are recorded in the allocation history, a return as an accepted request of negative units.
+ */
+public class JPAAllocationLeaseService implements AllocationLeaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(JPAAllocationLeaseService.class);
+
+    private static final int JDBC_BATCH_SIZE = 50;
+
+    private static final String SELECT_LEASES = """
+            select new com.alevel.rmanager.data.model.dto.LeaseRecord(
+                l.id,
+                l.resource.id,
+                l.units,
+                l.expiresAt
+            ) from AllocationLease l
+            """;
+
+    private final Supplier<EntityManager> persistence;
+
+    public JPAAllocationLeaseService(Supplier<EntityManager> persistence) {
+        this.persistence = persistence;
+    }
+
+    @Override
+    public LeaseResultRecord allocate(long resourceId, int units, Duration ttl) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        if (units < 1) {
+            throw new IllegalArgumentException("Can't lease less than one unit of a resource");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Lease time to live should be positive");
+        }
+
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            AllocationResultRecord result = JPAManagedResourceService.claimCapacity(jpa, resourceId, units);
+            if (result.status() != AllocationResult.Status.ACCEPTED) {
+                transaction.commit();
+                return new LeaseResultRecord(result, null);
+            }
+
+            var lease = new AllocationLease();
+            lease.setResource(jpa.getReference(ManagedResource.class, resourceId));
+            lease.setUnits(units);
+            lease.setExpiresAt(Instant.now().plus(ttl).truncatedTo(ChronoUnit.MILLIS));
+            jpa.persist(lease);
+
+            transaction.commit();
+
+            return new LeaseResultRecord(result, new LeaseRecord(lease.getId(), resourceId, units, lease.getExpiresAt()));
+        } catch (ManagedResourceNotFoundException e) {
+            transaction.rollback();
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        }
+    }
+
+    @Override
+    public boolean release(long leaseId) throws RManagerDataLayerException {
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            AllocationLease lease = jpa.find(AllocationLease.class, leaseId, LockModeType.PESSIMISTIC_WRITE);
+            if (lease == null) {
+                transaction.commit();
+                return false;
+            }
+
+            returnUnits(jpa, List.of(lease));
+
+            transaction.commit();
+
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        } finally {
+            jpa.clear();
+        }
+    }
+
+    @Override
+    public int expire(Collection<Long> leaseIds, Instant now) throws RManagerDataLayerException {
+        if (leaseIds.isEmpty()) {
+            return 0;
+        }
+
+        EntityManager jpa = persistence.get();
+        Session session = jpa.unwrap(Session.class);
+        Integer sessionBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(JDBC_BATCH_SIZE);
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            List<AllocationLease> leases = jpa.createQuery("""
+                            select l from AllocationLease l
+                            where l.id in :ids and l.expiresAt <= :now
+                            order by l.id
+                            """, AllocationLease.class)
+                    .setParameter("ids", leaseIds)
+                    .setParameter("now", now)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList();
+
+            returnUnits(jpa, leases);
+
+            transaction.commit();
+
+            log.debug("Expired {} of {} leases", leases.size(), leaseIds.size());
+
+            return leases.size();
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        } finally {
+            jpa.clear();
+            session.setJdbcBatchSize(sessionBatchSize);
+        }
+    }
+
+    /**
+     * Returns units of locked leases with one increment per resource, records each return with its statistics and deletes the leases.
+     * Resources are locked in ascending id order, as {@link JPAAtomicAllocationService} does, so the two never deadlock.
+     * Capacity never grows above the total, which may have been lowered while the lease was held:
+     * only the units that fit are returned and recorded, and a lease with none left to return leaves no history.
+     */
+    private static void returnUnits(EntityManager jpa, List<AllocationLease> leases) {
+        if (leases.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<AllocationLease>> byResource = new TreeMap<>();
+        for (AllocationLease lease : leases) {
+            byResource.computeIfAbsent(lease.getResource().getId(), id -> new ArrayList<>()).add(lease);
+        }
+
+        var lockResource = jpa.createQuery(
+                        "select r.capacity, r.totalCapacity from ManagedResource r where r.id = :id", Object[].class)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        var setCapacity = jpa.createQuery("update ManagedResource r set r.capacity = :capacity where r.id = :id");
+        var statistics = new ResourceStatisticsBatch();
+
+        for (Map.Entry<Long, List<AllocationLease>> entry : byResource.entrySet()) {
+            Long resourceId = entry.getKey();
+            Object[] state = lockResource.setParameter("id", resourceId).getSingleResult();
+            int capacity = (Integer) state[0];
+            int totalCapacity = (Integer) state[1];
+
+            ManagedResource resource = jpa.getReference(ManagedResource.class, resourceId);
+            for (AllocationLease lease : entry.getValue()) {
+                int returned = Math.min(lease.getUnits(), Math.max(totalCapacity - capacity, 0));
+                if (returned > 0) {
+                    var allocationRequest = new AllocationRequest();
+                    allocationRequest.setResource(resource);
+                    allocationRequest.setPreviousResourceCapacity(capacity);
+                    allocationRequest.setCapacity(-returned);
+                    allocationRequest.setResult(new AllocationResult(AllocationResult.Status.ACCEPTED, null));
+                    jpa.persist(allocationRequest);
+                    capacity += returned;
+                    statistics.record(resourceId, -returned, AllocationResult.Status.ACCEPTED, capacity, totalCapacity);
+                }
+                if (returned < lease.getUnits()) {
+                    log.debug("Lease {} returned {} of {} units, the total capacity of resource {} was lowered",
+                            lease.getId(), returned, lease.getUnits(), resourceId);
+                }
+
+                jpa.remove(lease);
+            }
+
+            if (capacity != (Integer) state[0]) {
+                setCapacity.setParameter("id", resourceId)
+                        .setParameter("capacity", capacity)
+                        .executeUpdate();
+            }
+        }
+        statistics.apply(jpa);
+    }
+
+    @Override
+    public List<LeaseRecord> getActive(Long afterId, int limit) {
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            List<LeaseRecord> leases = jpa.createQuery(
+                            SELECT_LEASES + "where l.id > :afterId order by l.id", LeaseRecord.class)
+                    .setParameter("afterId", afterId == null ? Long.MIN_VALUE : afterId)
+                    .setMaxResults(limit)
+                    .getResultList();
+
+            transaction.commit();
+
+            return leases;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<LeaseRecord> getExpired(Instant now, int limit) {
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            List<LeaseRecord> leases = jpa.createQuery(
+                            SELECT_LEASES + "where l.expiresAt <= :now order by l.expiresAt, l.id", LeaseRecord.class)
+                    .setParameter("now", now)
+                    .setMaxResults(limit)
+                    .getResultList();
+
+            transaction.commit();
+
+            return leases;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
+    }
+}
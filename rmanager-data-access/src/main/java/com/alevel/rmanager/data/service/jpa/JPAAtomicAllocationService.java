@@ -0,0 +1,179 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.AtomicAllocationResultRecord;
+import com.alevel.rmanager.data.model.entity.AllocationRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.model.entity.ManagedResource;
+import com.alevel.rmanager.data.service.AtomicAllocationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Locks the rows of all involved resources with {@code select ... for update} in ascending id order,
+ * so two overlapping allocations can't deadlock each other, evaluates every command and applies all or none.
+ * <p>
+ * Before touching the database, callers take in-process lock stripes of their resources. Overlapping allocations
+ * made through this instance thus queue up in memory instead of holding connections while waiting for row locks,
+ * and allocations of disjoint resources proceed in parallel. Row locks still protect against other processes and
+ * other writers, except {@link JPAManagedResourceService.AllocationMode#READ_MODIFY_WRITE}, which takes no locks.
+ */
+public class JPAAtomicAllocationService implements AtomicAllocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(JPAAtomicAllocationService.class);
+
+    private static final int DEFAULT_LOCK_STRIPES = 64;
+
+    private final Supplier<EntityManager> persistence;
+
+    private final StripedLocks locks;
+
+    public JPAAtomicAllocationService(Supplier<EntityManager> persistence) {
+        this(persistence, DEFAULT_LOCK_STRIPES);
+    }
+
+    public JPAAtomicAllocationService(Supplier<EntityManager> persistence, int lockStripes) {
+        this.persistence = persistence;
+        this.locks = new StripedLocks(lockStripes);
+    }
+
+    @Override
+    public AtomicAllocationResultRecord allocate(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        long[] ids = sortedResourceIds(commands);
+
+        try (StripedLocks.Held ignored = locks.lockAll(ids)) {
+            EntityManager jpa = persistence.get();
+
+            EntityTransaction transaction = jpa.getTransaction();
+            transaction.begin();
+            try {
+                Map<Long, ManagedResource> resources = jpa.createQuery(
+                                "select r from ManagedResource r where r.id in :ids order by r.id", ManagedResource.class)
+                        .setParameter("ids", Arrays.stream(ids).boxed().toList())
+                        .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                        .getResultStream()
+                        .collect(Collectors.toMap(ManagedResource::getId, Function.identity()));
+
+                for (long id : ids) {
+                    if (!resources.containsKey(id)) {
+                        transaction.rollback();
+                        throw new ManagedResourceNotFoundException(id);
+                    }
+                }
+
+                AtomicAllocationResultRecord result = apply(jpa, commands, resources);
+
+                transaction.commit();
+
+                return result;
+            } catch (RuntimeException e) {
+                log.error("Data layer operation failed", e);
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw new RManagerDataLayerException(e);
+            }
+        }
+    }
+
+    private static long[] sortedResourceIds(List<AllocationCommand> commands) {
+        if (commands.isEmpty()) {
+            throw new IllegalArgumentException("Atomic allocation needs at least one command");
+        }
+        long[] ids = new long[commands.size()];
+        for (int i = 0; i < ids.length; i++) {
+            AllocationCommand command = commands.get(i);
+            if (command.units() == 0) {
+                throw new IllegalArgumentException("Can't allocate zero units of a resource");
+            }
+            ids[i] = command.resourceId();
+        }
+        Arrays.sort(ids);
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] == ids[i - 1]) {
+                throw new IllegalArgumentException("Resource " + ids[i] + " appears in more than one command");
+            }
+        }
+        return ids;
+    }
+
+    private static AtomicAllocationResultRecord apply(EntityManager jpa,
+                                                      List<AllocationCommand> commands,
+                                                      Map<Long, ManagedResource> resources) {
+        var evaluations = new ArrayList<AllocationResultRecord>(commands.size());
+        Long rejectedResourceId = null;
+        for (AllocationCommand command : commands) {
+            ManagedResource resource = resources.get(command.resourceId());
+            AllocationResultRecord evaluation = JPAManagedResourceService.evaluate(
+                    resource.getCapacity(), resource.getTotalCapacity(), command.units());
+            if (rejectedResourceId == null && evaluation.status() == AllocationResult.Status.REJECTED) {
+                rejectedResourceId = command.resourceId();
+            }
+            evaluations.add(evaluation);
+        }
+
+        var results = new ArrayList<AllocationResultRecord>(commands.size());
+        var statistics = new ResourceStatisticsBatch();
+        Long groupId = null;
+        for (int i = 0; i < commands.size(); i++) {
+            AllocationCommand command = commands.get(i);
+            ManagedResource resource = resources.get(command.resourceId());
+            AllocationResultRecord result = evaluations.get(i);
+            if (rejectedResourceId != null && result.status() == AllocationResult.Status.ACCEPTED) {
+                result = AllocationResultRecord.linkedAllocationRejected(rejectedResourceId);
+            }
+
+            int oldCapacity = resource.getCapacity();
+            if (result.status() == AllocationResult.Status.ACCEPTED) {
+                resource.setCapacity(oldCapacity - command.units());
+            }
+
+            var allocationRequest = new AllocationRequest();
+            allocationRequest.setResult(result.toEntity());
+            allocationRequest.setResource(resource);
+            allocationRequest.setPreviousResourceCapacity(oldCapacity);
+            allocationRequest.setCapacity(command.units());
+            resource.getAllocationRequests().add(allocationRequest);
+            jpa.persist(allocationRequest);
+            if (groupId == null) {
+                groupId = allocationRequest.getId();
+            }
+            allocationRequest.setGroupId(groupId);
+
+            statistics.record(resource.getId(), command.units(), result.status(), resource.getCapacity(), resource.getTotalCapacity());
+            results.add(result);
+        }
+        statistics.apply(jpa);
+
+        return new AtomicAllocationResultRecord(
+                rejectedResourceId == null ? AllocationResult.Status.ACCEPTED : AllocationResult.Status.REJECTED,
+                groupId,
+                results);
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getByGroupId(long groupId) {
+        EntityManager jpa = persistence.get();
+
+        return jpa.createQuery(
+                        JPAResourceAllocationRequestService.SELECT_RECORDS + "where ar.groupId = :groupId order by ar.resource.id",
+                        AllocationRequestRecord.class)
+                .setParameter("groupId", groupId)
+                .getResultList();
+    }
+}
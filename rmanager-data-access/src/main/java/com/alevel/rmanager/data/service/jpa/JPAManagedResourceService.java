@@ -2,37 +2,109 @@ package com.alevel.rmanager.data.service.jpa;
 
 import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
 import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
 import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportFailure;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
 import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
 import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
 import com.alevel.rmanager.data.model.entity.AllocationRequest;
 import com.alevel.rmanager.data.model.entity.AllocationResult;
 import com.alevel.rmanager.data.model.entity.ManagedResource;
+import com.alevel.rmanager.data.model.entity.ResourceStatistics;
 import com.alevel.rmanager.data.service.ManagedResourceService;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.ObjectNotFoundException;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.NativeQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
 import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class JPAManagedResourceService implements ManagedResourceService {
 
+    /**
+     * How a single {@link #allocate(long, int)} call checks and claims capacity.
+     */
+    public enum AllocationMode {
+        /**
+         * Loads the resource, computes the new capacity in Java and relies on dirty checking to write it back.
+         * Does not take any locks, so concurrent allocations against the same resource may overwrite each other.
+         */
+        READ_MODIFY_WRITE,
+        /**
+         * Claims capacity with a single guarded {@code update} and decides the outcome from the affected row count.
+         * Safe under concurrency: the row lock taken by the update serializes competing allocations.
+         */
+        CONDITIONAL_UPDATE
+    }
+
     private static final Logger log = LoggerFactory.getLogger(JPAManagedResourceService.class);
 
+    private static final int JDBC_BATCH_SIZE = 50;
+
+    static final String SELECT_RECORDS = """
+            select new com.alevel.rmanager.data.model.dto.ManagedResourceRecord(
+                r.id,
+                r.name,
+                r.description,
+                r.capacity,
+                r.totalCapacity
+            ) from ManagedResource r
+            """;
+
+    private static final String CLAIM_CAPACITY = """
+            update ManagedResource r set r.capacity = r.capacity - :units
+            where r.id = :id and r.capacity >= :units and r.capacity - :units <= r.totalCapacity
+            """;
+
+    private static final String RECORD_CLAIM = """
+            insert into alloc_requests (id, resource_id, previous_resource_capacity, capacity, issued_at, status)
+            select :requestId, r.id, r.capacity + :units, :units, :issuedAt, :status
+            from managed_resources r where r.id = :id
+            """;
+
     private final Supplier<EntityManager> persistence;
 
     private final Validator validator;
 
+    private final AllocationMode allocationMode;
+
     public JPAManagedResourceService(Supplier<EntityManager> persistence, ValidatorFactory validatorFactory) {
+        this(persistence, validatorFactory, AllocationMode.READ_MODIFY_WRITE);
+    }
+
+    public JPAManagedResourceService(Supplier<EntityManager> persistence,
+                                     ValidatorFactory validatorFactory,
+                                     AllocationMode allocationMode) {
         this.persistence = persistence;
         this.validator = validatorFactory.getValidator();
+        this.allocationMode = allocationMode;
     }
 
     @Override
@@ -45,6 +117,16 @@ public class JPAManagedResourceService implements ManagedResourceService {
                 .map(JPAManagedResourceService::entityToRecord);
     }
 
+    @Override
+    public List<ManagedResourceRecord> getByIds(Collection<Long> ids) {
+        EntityManager jpa = persistence.get();
+
+        TypedQuery<ManagedResourceRecord> findByIds = jpa.createQuery(
+                SELECT_RECORDS + "where r.id in :ids", ManagedResourceRecord.class);
+
+        return IdChunks.load(ids, chunk -> findByIds.setParameter("ids", chunk).getResultList(), ManagedResourceRecord::id);
+    }
+
     @Override
     public ManagedResourceRecord save(SaveManagedResourceRequest managedResource) throws RManagerDataLayerException {
         validate(managedResource);
@@ -59,6 +141,7 @@ public class JPAManagedResourceService implements ManagedResourceService {
             mergeEntityWithRecord(managedResource, entity);
             entity.setCapacity(managedResource.totalCapacity());
             jpa.persist(entity);
+            jpa.persist(new ResourceStatistics(entity.getId()));
             transaction.commit();
             return entityToRecord(entity);
         } catch (RuntimeException e) {
@@ -68,6 +151,127 @@ public class JPAManagedResourceService implements ManagedResourceService {
         }
     }
 
+    /**
+     * Inserts resources in chunks of {@value #JDBC_BATCH_SIZE}, one transaction and one JDBC batch per chunk.
+     * Ids come from a pooled sequence, so a chunk needs a single sequence call instead of a round trip per row.
+     * The persistence context is cleared after every chunk, keeping memory flat regardless of the stream size.
+     * If the database rejects a chunk, its resources are retried one by one to find the offending ones.
+     */
+    @Override
+    public BulkImportResult saveAll(Stream<SaveManagedResourceRequest> managedResources) throws RManagerDataLayerException {
+        EntityManager jpa = persistence.get();
+        Session session = jpa.unwrap(Session.class);
+        Integer sessionBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(JDBC_BATCH_SIZE);
+
+        var failures = new ArrayList<BulkImportFailure>();
+        var chunk = new ArrayList<PendingImport>(JDBC_BATCH_SIZE);
+        long imported = 0;
+        long index = 0;
+        try {
+            Iterator<SaveManagedResourceRequest> iterator = managedResources.iterator();
+            while (iterator.hasNext()) {
+                SaveManagedResourceRequest managedResource = iterator.next();
+                long position = index++;
+
+                String violations = describeViolations(managedResource);
+                if (violations != null) {
+                    failures.add(new BulkImportFailure(position, managedResource == null ? null : managedResource.name(), violations));
+                    continue;
+                }
+
+                chunk.add(new PendingImport(position, managedResource));
+                if (chunk.size() == JDBC_BATCH_SIZE) {
+                    imported += importChunk(jpa, chunk, failures);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                imported += importChunk(jpa, chunk, failures);
+            }
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            throw new RManagerDataLayerException(e);
+        } finally {
+            session.setJdbcBatchSize(sessionBatchSize);
+        }
+
+        failures.sort(Comparator.comparingLong(BulkImportFailure::index));
+
+        log.info("Imported {} resources, rejected {}", imported, failures.size());
+
+        return new BulkImportResult(imported, failures);
+    }
+
+    private String describeViolations(SaveManagedResourceRequest managedResource) {
+        if (managedResource == null) {
+            return "Request is null";
+        }
+        Set<ConstraintViolation<SaveManagedResourceRequest>> constraintViolations = validator.validate(managedResource);
+        if (constraintViolations.isEmpty()) {
+            return null;
+        }
+        return constraintViolations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static int importChunk(EntityManager jpa, List<PendingImport> chunk, List<BulkImportFailure> failures) {
+        try {
+            persistChunk(jpa, chunk);
+            return chunk.size();
+        } catch (RuntimeException e) {
+            log.warn("Failed to import chunk of {} resources, importing them one by one", chunk.size(), e);
+        }
+
+        int imported = 0;
+        for (PendingImport pending : chunk) {
+            try {
+                persistChunk(jpa, List.of(pending));
+                imported++;
+            } catch (RuntimeException e) {
+                failures.add(new BulkImportFailure(pending.index(), pending.request().name(), rootCauseMessage(e)));
+            }
+        }
+        return imported;
+    }
+
+    private static void persistChunk(EntityManager jpa, List<PendingImport> chunk) {
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            // inserts are flushed in persist order, and a JDBC batch ends where the table changes
+            var entities = new ArrayList<ManagedResource>(chunk.size());
+            for (PendingImport pending : chunk) {
+                var entity = new ManagedResource();
+                mergeEntityWithRecord(pending.request(), entity);
+                entity.setCapacity(pending.request().totalCapacity());
+                jpa.persist(entity);
+                entities.add(entity);
+            }
+            for (ManagedResource entity : entities) {
+                jpa.persist(new ResourceStatistics(entity.getId()));
+            }
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            jpa.clear();
+        }
+    }
+
+    private static String rootCauseMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
     @Override
     public void update(long id, SaveManagedResourceRequest managedResource) throws ManagedResourceNotFoundException, RManagerDataLayerException {
         validate(managedResource);
@@ -115,18 +319,31 @@ public class JPAManagedResourceService implements ManagedResourceService {
                 transaction.rollback();
                 throw new ManagedResourceNotFoundException(id);
             }
-            jpa.remove(entity);
+            // bulk deletes instead of cascading the removal, which loads the whole history and deletes it row by row;
+            // statistics, leases and rollups are deleted by the database
+            jpa.detach(entity);
+            jpa.createQuery("delete from AllocationRequest ar where ar.resource.id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+            jpa.createQuery("delete from ManagedResource r where r.id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+            transaction.commit();
         } catch (RuntimeException e) {
             log.error("Data layer operation failed", e);
-            transaction.rollback();
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
             throw e;
         }
     }
 
     @Override
     public AllocationResultRecord allocate(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
-        if (units == 0) {
-            throw new IllegalArgumentException("Can't allocate zero units of a resource");
+        requireNonZero(units);
+
+        if (allocationMode == AllocationMode.CONDITIONAL_UPDATE) {
+            return allocateConditionally(id, units);
         }
 
         EntityManager jpa = persistence.get();
@@ -140,38 +357,241 @@ public class JPAManagedResourceService implements ManagedResourceService {
                 throw new ManagedResourceNotFoundException(id);
             }
 
-            int oldCapacity = resource.getCapacity();
-            int newCapacity = oldCapacity - units;
-            AllocationResult.Status status;
-            String reason;
-            if (newCapacity > resource.getTotalCapacity()) {
-                status = AllocationResult.Status.REJECTED;
-                reason = "Total capacity exceeded. Total = %s, got = %s".formatted(resource.getTotalCapacity(), newCapacity);
-            } else if (newCapacity < 0) {
-                status = AllocationResult.Status.REJECTED;
-                reason = "Not enough capacity. Was available = %s, requested = %s".formatted(oldCapacity, units);
-            } else {
-                status = AllocationResult.Status.ACCEPTED;
-                reason = null;
-                resource.setCapacity(newCapacity);
-            }
-            var allocationResult = new AllocationResult(status, reason);
-            var allocationRequest = new AllocationRequest();
-            allocationRequest.setResult(allocationResult);
-            allocationRequest.setResource(resource);
-            allocationRequest.setPreviousResourceCapacity(oldCapacity);
-            allocationRequest.setCapacity(units);
-            resource.getAllocationRequests().add(allocationRequest);
-
-            jpa.persist(allocationRequest);
+            var statistics = new ResourceStatisticsBatch();
+            AllocationResultRecord result = applyAllocation(jpa, resource, units, statistics);
+            statistics.apply(jpa);
+
+            transaction.commit();
+
+            return result;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        }
+    }
+
+    private AllocationResultRecord allocateConditionally(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            AllocationResultRecord result = claimCapacity(jpa, id, units);
+
+            transaction.commit();
+
+            return result;
+        } catch (ManagedResourceNotFoundException e) {
+            transaction.rollback();
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        }
+    }
+
+    /**
+     * Claims capacity with a guarded bulk update and records the allocation request and its statistics,
+     * within the caller's transaction.
+     * <p>
+     * An accepted allocation takes three statements: the update, an {@code insert ... select} recording the request
+     * from the row the update just wrote, and the statistics update. Only when the update matches nothing is the
+     * row read, under a lock, to tell a missing resource from a rejection; should capacity have been released
+     * in between, the allocation is applied under that lock, so there is never a retry.
+     */
+    static AllocationResultRecord claimCapacity(EntityManager jpa, long id, int units) throws ManagedResourceNotFoundException {
+        int claimed = jpa.createQuery(CLAIM_CAPACITY)
+                .setParameter("id", id)
+                .setParameter("units", units)
+                .executeUpdate();
+        if (claimed > 0) {
+            recordClaim(jpa, id, units);
+            return AllocationResultRecord.accepted();
+        }
+
+        ManagedResource resource = loadCurrentState(jpa, id, LockModeType.PESSIMISTIC_WRITE);
+        if (resource == null) {
+            throw new ManagedResourceNotFoundException(id);
+        }
+        var statistics = new ResourceStatisticsBatch();
+        AllocationResultRecord result = applyAllocation(jpa, resource, units, statistics);
+        statistics.apply(jpa);
+        return result;
+    }
+
+    /**
+     * Claims capacity only if enough is free and records the accepted request and its statistics,
+     * within the caller's transaction. Nothing is recorded if the capacity is not available.
+     */
+    static boolean claimIfAvailable(EntityManager jpa, long id, int units) {
+        int claimed = jpa.createQuery(CLAIM_CAPACITY)
+                .setParameter("id", id)
+                .setParameter("units", units)
+                .executeUpdate();
+        if (claimed == 0) {
+            return false;
+        }
+        recordClaim(jpa, id, units);
+        return true;
+    }
+
+    /**
+     * Records an accepted allocation whose units {@link #CLAIM_CAPACITY} has just taken, reading the capacity
+     * it left in the database rather than loading the resource.
+     */
+    private static void recordClaim(EntityManager jpa, long id, int units) {
+        SessionImplementor session = jpa.unwrap(SessionImplementor.class);
+        Serializable requestId = session.getEntityPersister(AllocationRequest.class.getName(), null)
+                .getIdentifierGenerator()
+                .generate(session, null);
+        jpa.createNativeQuery(RECORD_CLAIM)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(AllocationRequest.class)
+                .setParameter("requestId", requestId)
+                .setParameter("id", id)
+                .setParameter("units", units)
+                .setParameter("issuedAt", Instant.now())
+                .setParameter("status", AllocationResult.Status.ACCEPTED.ordinal())
+                .executeUpdate();
+        ResourceStatisticsBatch.applyClaim(jpa, id, units);
+
+        // the bulk statements bypass the persistence context, so a resource it already holds would be written back stale
+        ManagedResource cached = jpa.getReference(ManagedResource.class, id);
+        if (Hibernate.isInitialized(cached)) {
+            jpa.refresh(cached);
+        }
+    }
+
+    /**
+     * Reads and locks the resource row bypassing stale state: the bulk update above is not reflected in
+     * an instance that is already managed by the persistence context, so such an instance is refreshed.
+     * Either way exactly one select is issued.
+     */
+    private static ManagedResource loadCurrentState(EntityManager jpa, long id, LockModeType lockMode) {
+        ManagedResource resource = jpa.getReference(ManagedResource.class, id);
+        try {
+            if (Hibernate.isInitialized(resource)) {
+                jpa.refresh(resource, lockMode);
+                return resource;
+            }
+            jpa.detach(resource);
+            return jpa.find(ManagedResource.class, id, lockMode);
+        } catch (EntityNotFoundException | ObjectNotFoundException e) {
+            jpa.detach(resource);
+            return null;
+        }
+    }
+
+    @Override
+    public List<AllocationResultRecord> allocateAll(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        for (AllocationCommand command : commands) {
+            requireNonZero(command.units());
+        }
+        if (commands.isEmpty()) {
+            return List.of();
+        }
+
+        EntityManager jpa = persistence.get();
+        Session session = jpa.unwrap(Session.class);
+        Integer sessionBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(JDBC_BATCH_SIZE);
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            Set<Long> ids = commands.stream()
+                    .map(AllocationCommand::resourceId)
+                    .collect(Collectors.toSet());
+
+            Map<Long, ManagedResource> resources = jpa.createQuery(
+                            "select r from ManagedResource r where r.id in :ids", ManagedResource.class)
+                    .setParameter("ids", ids)
+                    .getResultStream()
+                    .collect(Collectors.toMap(ManagedResource::getId, Function.identity()));
+
+            for (Long id : ids) {
+                if (!resources.containsKey(id)) {
+                    transaction.rollback();
+                    throw new ManagedResourceNotFoundException(id);
+                }
+            }
+
+            var results = new ArrayList<AllocationResultRecord>(commands.size());
+            var statistics = new ResourceStatisticsBatch();
+            for (AllocationCommand command : commands) {
+                results.add(applyAllocation(jpa, resources.get(command.resourceId()), command.units(), statistics));
+            }
+            statistics.apply(jpa);
 
             transaction.commit();
 
-            return new AllocationResultRecord(status, reason);
+            log.debug("Applied batch of {} allocations over {} resources", commands.size(), ids.size());
+
+            return results;
         } catch (RuntimeException e) {
             log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
             throw new RManagerDataLayerException(e);
+        } finally {
+            session.setJdbcBatchSize(sessionBatchSize);
+        }
+    }
+
+    private static void requireNonZero(int units) {
+        if (units == 0) {
+            throw new IllegalArgumentException("Can't allocate zero units of a resource");
+        }
+    }
+
+    private static AllocationResultRecord applyAllocation(EntityManager jpa,
+                                                          ManagedResource resource,
+                                                          int units,
+                                                          ResourceStatisticsBatch statistics) {
+        int oldCapacity = resource.getCapacity();
+        AllocationResultRecord result = evaluate(oldCapacity, resource.getTotalCapacity(), units);
+        if (result.status() == AllocationResult.Status.ACCEPTED) {
+            resource.setCapacity(oldCapacity - units);
         }
+        appendRequest(jpa, resource, oldCapacity, units, result, statistics);
+        return result;
+    }
+
+    static AllocationResultRecord evaluate(int oldCapacity, int totalCapacity, int units) {
+        int newCapacity = oldCapacity - units;
+        if (newCapacity > totalCapacity) {
+            return AllocationResultRecord.totalCapacityExceeded(totalCapacity, newCapacity);
+        } else if (newCapacity < 0) {
+            return AllocationResultRecord.notEnoughCapacity(oldCapacity, units);
+        }
+        return AllocationResultRecord.accepted();
+    }
+
+    private static void appendRequest(EntityManager jpa,
+                                      ManagedResource resource,
+                                      int oldCapacity,
+                                      int units,
+                                      AllocationResultRecord result,
+                                      ResourceStatisticsBatch statistics) {
+        var allocationRequest = new AllocationRequest();
+        allocationRequest.setResult(result.toEntity());
+        allocationRequest.setResource(resource);
+        allocationRequest.setPreviousResourceCapacity(oldCapacity);
+        allocationRequest.setCapacity(units);
+        resource.getAllocationRequests().add(allocationRequest);
+
+        jpa.persist(allocationRequest);
+
+        boolean accepted = result.status() == AllocationResult.Status.ACCEPTED;
+        statistics.record(resource.getId(), units, result.status(),
+                accepted ? oldCapacity - units : oldCapacity, resource.getTotalCapacity());
     }
 
     private static void mergeEntityWithRecord(SaveManagedResourceRequest managedResource, ManagedResource entity) {
@@ -189,4 +609,7 @@ public class JPAManagedResourceService implements ManagedResourceService {
                 entity.getTotalCapacity()
         );
     }
-}
\ No newline at end of file
+
+    private record PendingImport(long index, SaveManagedResourceRequest request) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.service.PlacementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Answers placement queries from the database with a range scan of {@code managed_resources_capacity_idx}
+ * for best fit, and a scan in id order for first fit.
+ * An allocation claims capacity of the first candidate that still has it with a guarded update, so a resource
+ * drained concurrently is skipped without recording a rejected request.
+ */
+public class JPAPlacementService implements PlacementService {
+
+    private static final Logger log = LoggerFactory.getLogger(JPAPlacementService.class);
+
+    private static final int CANDIDATES = 8;
+
+    private final Supplier<EntityManager> persistence;
+
+    public JPAPlacementService(Supplier<EntityManager> persistence) {
+        this.persistence = persistence;
+    }
+
+    @Override
+    public Optional<ManagedResourceRecord> find(int units, Strategy strategy) {
+        requirePositive(units);
+
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            Optional<ManagedResourceRecord> resource = jpa.createQuery(
+                            JPAManagedResourceService.SELECT_RECORDS + "where r.capacity >= :units " + order(strategy),
+                            ManagedResourceRecord.class)
+                    .setParameter("units", units)
+                    .setMaxResults(1)
+                    .getResultStream()
+                    .findFirst();
+
+            transaction.commit();
+
+            return resource;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<Long> allocate(int units, Strategy strategy) throws RManagerDataLayerException {
+        requirePositive(units);
+
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            var findCandidates = jpa.createQuery(
+                            "select r.id from ManagedResource r where r.capacity >= :units " + order(strategy), Long.class)
+                    .setParameter("units", units)
+                    .setMaxResults(CANDIDATES);
+
+            while (true) {
+                List<Long> candidates = findCandidates.getResultList();
+                if (candidates.isEmpty()) {
+                    transaction.commit();
+                    return Optional.empty();
+                }
+                for (Long id : candidates) {
+                    if (JPAManagedResourceService.claimIfAvailable(jpa, id, units)) {
+                        transaction.commit();
+                        return Optional.of(id);
+                    }
+                }
+                log.debug("All {} placement candidates for {} units were taken concurrently", candidates.size(), units);
+            }
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        } finally {
+            jpa.clear();
+        }
+    }
+
+    private static String order(Strategy strategy) {
+        return switch (strategy) {
+            case FIRST_FIT -> "order by r.id";
+            case BEST_FIT -> "order by r.capacity, r.id";
+        };
+    }
+
+    static void requirePositive(int units) {
+        if (units < 1) {
+            throw new IllegalArgumentException("Can't place less than one unit of a resource");
+        }
+    }
+}
@@ -1,24 +1,50 @@
 package com.alevel.rmanager.data.service.jpa;
 
 import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
 import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
-import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
-import com.alevel.rmanager.data.model.entity.AllocationRequest;
 import com.alevel.rmanager.data.service.ResourceAllocationRequestService;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.persistence.TypedQuery;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JPAResourceAllocationRequestService implements ResourceAllocationRequestService {
 
     private static final Logger log = LoggerFactory.getLogger(JPAResourceAllocationRequestService.class);
 
+    static final String SELECT_RECORDS = """
+            select new com.alevel.rmanager.data.model.dto.AllocationRequestRecord(
+                ar.id,
+                ar.resource.id,
+                ar.capacity,
+                ar.previousResourceCapacity,
+                ar.issuedAt,
+                ar.result.status,
+                ar.result.code,
+                ar.result.first,
+                ar.result.second,
+                ar.result.reason,
+                ar.groupId
+            ) from AllocationRequest ar
+            """;
+
+    private static final String HISTORY_ORDER = "order by ar.issuedAt desc, ar.id desc";
+
+    private static final int STREAM_FETCH_SIZE = 256;
+
     private final Supplier<EntityManager> persistence;
 
     public JPAResourceAllocationRequestService(Supplier<EntityManager> persistence) {
@@ -33,38 +59,73 @@ public class JPAResourceAllocationRequestService implements ResourceAllocationRe
         transaction.begin();
 
         try {
-            TypedQuery<Boolean> checkIfExists = jpa.createQuery("""
-                    select (count(r) > 0) as exists
-                    from ManagedResource r where r.id = :id
-                    """, Boolean.class);
+            TypedQuery<AllocationRequestRecord> findByResourceId = jpa.createQuery(
+                    SELECT_RECORDS + "where ar.resource.id = :id " + HISTORY_ORDER,
+                    AllocationRequestRecord.class);
+
+            findByResourceId.setParameter("id", resourceId);
+
+            var resultList = findByResourceId.getResultList();
 
-            checkIfExists.setParameter("id", resourceId);
-            if (!checkIfExists.getSingleResult()) {
+            if (resultList.isEmpty() && !exists(jpa, resourceId)) {
                 transaction.rollback();
                 throw new ManagedResourceNotFoundException(resourceId);
             }
 
-            TypedQuery<AllocationRequestRecord> findByResourceId = jpa.createQuery("""
-                    select new com.alevel.rmanager.data.model.dto.AllocationRequestRecord(
-                        ar.id,
-                        ar.resource.id,
-                        ar.capacity,
-                        ar.previousResourceCapacity,
-                        ar.issuedAt,
-                        ar.result.status,
-                        ar.result.reason
-                    ) from AllocationRequest ar where ar.resource.id = :id order by ar.issuedAt desc
-                    """, AllocationRequestRecord.class);
+            log.debug("Found {} requests for resources {}", resultList.size(), resourceId);
 
-            findByResourceId.setParameter("id", resourceId);
+            transaction.commit();
 
-            var resultList = findByResourceId.getResultList();
+            return resultList;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
+    }
 
-            log.debug("Found {} requests for resources {}", resultList.size(), resourceId);
+    @Override
+    public List<AllocationRequestRecord> getByResourceId(long resourceId, AllocationHistoryCursor after, int limit) throws ManagedResourceNotFoundException {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit should be positive");
+        }
+
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+
+        try {
+            TypedQuery<AllocationRequestRecord> findPage;
+            if (after == null) {
+                findPage = jpa.createQuery(
+                        SELECT_RECORDS + "where ar.resource.id = :id " + HISTORY_ORDER,
+                        AllocationRequestRecord.class);
+            } else {
+                findPage = jpa.createQuery(SELECT_RECORDS + """
+                                where ar.resource.id = :id and ar.issuedAt <= :issuedAt
+                                and (ar.issuedAt < :issuedAt or (ar.issuedAt = :issuedAt and ar.id < :requestId))
+                                """ + HISTORY_ORDER,
+                        AllocationRequestRecord.class);
+                findPage.setParameter("issuedAt", after.issuedAt());
+                findPage.setParameter("requestId", after.id());
+            }
+
+            findPage.setParameter("id", resourceId);
+            findPage.setMaxResults(limit);
+
+            var page = findPage.getResultList();
+
+            if (page.isEmpty() && !exists(jpa, resourceId)) {
+                transaction.rollback();
+                throw new ManagedResourceNotFoundException(resourceId);
+            }
+
+            log.debug("Found page of {} requests for resources {}", page.size(), resourceId);
 
             transaction.commit();
 
-            return resultList;
+            return page;
         } catch (RuntimeException e) {
             log.error("Data layer operation failed", e);
             transaction.rollback();
@@ -72,23 +133,126 @@ public class JPAResourceAllocationRequestService implements ResourceAllocationRe
         }
     }
 
+    @Override
+    public Stream<AllocationRequestRecord> streamByResourceId(long resourceId) throws ManagedResourceNotFoundException {
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+
+        try {
+            Stream<AllocationRequestRecord> records = jpa.unwrap(Session.class)
+                    .createQuery(SELECT_RECORDS + "where ar.resource.id = :id " + HISTORY_ORDER, AllocationRequestRecord.class)
+                    .setParameter("id", resourceId)
+                    .setFetchSize(STREAM_FETCH_SIZE)
+                    .setReadOnly(true)
+                    .stream();
+
+            Iterator<AllocationRequestRecord> iterator = records.iterator();
+            if (!iterator.hasNext()) {
+                records.close();
+                boolean exists = exists(jpa, resourceId);
+                transaction.commit();
+                if (!exists) {
+                    throw new ManagedResourceNotFoundException(resourceId);
+                }
+                return Stream.empty();
+            }
+
+            Spliterator<AllocationRequestRecord> spliterator = Spliterators.spliteratorUnknownSize(
+                    iterator,
+                    Spliterator.ORDERED | Spliterator.NONNULL);
+
+            return StreamSupport.stream(spliterator, false)
+                    .onClose(() -> {
+                        records.close();
+                        if (transaction.isActive()) {
+                            transaction.commit();
+                        }
+                    });
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    static boolean exists(EntityManager jpa, long resourceId) {
+        TypedQuery<Boolean> checkIfExists = jpa.createQuery("""
+                select (count(r) > 0) as exists
+                from ManagedResource r where r.id = :id
+                """, Boolean.class);
+
+        checkIfExists.setParameter("id", resourceId);
+        return checkIfExists.getSingleResult();
+    }
+
     @Override
     public Optional<AllocationRequestRecord> getById(long id) {
         EntityManager jpa = persistence.get();
 
-        AllocationRequest allocationRequest = jpa.find(AllocationRequest.class, id);
-
-        return Optional.ofNullable(allocationRequest)
-                .map(entity -> new AllocationRequestRecord(
-                        entity.getId(),
-                        entity.getResource().getId(),
-                        entity.getCapacity(),
-                        entity.getPreviousResourceCapacity(),
-                        entity.getIssuedAt(),
-                        new AllocationResultRecord(
-                                entity.getResult().getStatus(),
-                                entity.getResult().getReason()
-                        )
-                ));
+        return jpa.createQuery(SELECT_RECORDS + "where ar.id = :id", AllocationRequestRecord.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst();
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getByIds(Collection<Long> ids) {
+        EntityManager jpa = persistence.get();
+
+        TypedQuery<AllocationRequestRecord> findByIds = jpa.createQuery(
+                SELECT_RECORDS + "where ar.id in :ids", AllocationRequestRecord.class);
+
+        return IdChunks.load(ids, chunk -> findByIds.setParameter("ids", chunk).getResultList(), AllocationRequestRecord::id);
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getAfterId(long afterId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit should be positive");
+        }
+
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            List<AllocationRequestRecord> page = jpa.createQuery(
+                            SELECT_RECORDS + "where ar.id > :afterId order by ar.id", AllocationRequestRecord.class)
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit)
+                    .getResultList();
+
+            transaction.commit();
+
+            return page;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public long getLastId() {
+        EntityManager jpa = persistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            Long lastId = jpa.createQuery("select max(ar.id) from AllocationRequest ar", Long.class)
+                    .getSingleResult();
+
+            transaction.commit();
+
+            return lastId == null ? 0 : lastId;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
     }
 }
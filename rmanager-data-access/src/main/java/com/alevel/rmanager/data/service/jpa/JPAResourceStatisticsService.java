@@ -0,0 +1,195 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.ResourceStatisticsRecord;
+import com.alevel.rmanager.data.model.entity.ResourceStatistics;
+import com.alevel.rmanager.data.service.ResourceStatisticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Reads statistics maintained by {@link ResourceStatisticsBatch}. Resources that have no statistics row yet
+ * are reported with zero counters until {@link #backfill(int)} is run.
+ * <p>
+ * Peak usage is derived from the capacity left after each allocation and the total capacity at the time it was
+ * recorded; backfill can only use the current total capacity, and for compacted history the lowest capacity
+ * seen before an allocation of the period.
+ */
+public class JPAResourceStatisticsService implements ResourceStatisticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(JPAResourceStatisticsService.class);
+
+    private static final String SELECT_STATISTICS = """
+            select new com.alevel.rmanager.data.model.dto.ResourceStatisticsRecord(
+                r.id,
+                coalesce(s.accepted, 0L),
+                coalesce(s.rejected, 0L),
+                coalesce(s.unitsAllocated, 0L),
+                coalesce(s.peakUnitsInUse, 0),
+                r.capacity,
+                r.totalCapacity
+            ) from ManagedResource r left join ResourceStatistics s on s.resourceId = r.id
+            """;
+
+    private static final String ACCEPTED = "com.alevel.rmanager.data.model.entity.AllocationResult$Status.ACCEPTED";
+
+    private final Supplier<EntityManager> persistence;
+
+    public JPAResourceStatisticsService(Supplier<EntityManager> persistence) {
+        this.persistence = persistence;
+    }
+
+    @Override
+    public Optional<ResourceStatisticsRecord> getByResourceId(long resourceId) {
+        EntityManager jpa = persistence.get();
+
+        return jpa.createQuery(SELECT_STATISTICS + "where r.id = :id", ResourceStatisticsRecord.class)
+                .setParameter("id", resourceId)
+                .getResultStream()
+                .findFirst();
+    }
+
+    @Override
+    public List<ResourceStatisticsRecord> getAll(Long afterResourceId, int limit) {
+        EntityManager jpa = persistence.get();
+
+        return jpa.createQuery(SELECT_STATISTICS + "where r.id > :afterId order by r.id", ResourceStatisticsRecord.class)
+                .setParameter("afterId", afterResourceId == null ? Long.MIN_VALUE : afterResourceId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Locks each chunk of resources while recomputing it, so allocations to those resources wait
+     * instead of updating counters that are about to be replaced.
+     */
+    @Override
+    public long backfill(int chunkSize) throws RManagerDataLayerException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size should be positive");
+        }
+        EntityManager jpa = persistence.get();
+
+        long processed = 0;
+        Long afterId = Long.MIN_VALUE;
+        while (afterId != null) {
+            EntityTransaction transaction = jpa.getTransaction();
+            transaction.begin();
+            try {
+                List<Object[]> resources = jpa.createQuery("""
+                                select r.id, r.totalCapacity from ManagedResource r
+                                where r.id > :afterId
+                                order by r.id
+                                """, Object[].class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(chunkSize)
+                        .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                        .getResultList();
+
+                if (!resources.isEmpty()) {
+                    backfillChunk(jpa, resources);
+                }
+
+                transaction.commit();
+
+                processed += resources.size();
+                afterId = resources.size() < chunkSize ? null : (Long) resources.get(resources.size() - 1)[0];
+            } catch (RuntimeException e) {
+                log.error("Data layer operation failed", e);
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw new RManagerDataLayerException(e);
+            } finally {
+                jpa.clear();
+            }
+        }
+
+        log.info("Backfilled statistics of {} resources", processed);
+        return processed;
+    }
+
+    private static void backfillChunk(EntityManager jpa, List<Object[]> resources) {
+        var ids = new ArrayList<Long>(resources.size());
+        Map<Long, Counters> counters = new HashMap<>();
+        for (Object[] resource : resources) {
+            ids.add((Long) resource[0]);
+            counters.put((Long) resource[0], new Counters());
+        }
+
+        jpa.createQuery("""
+                        select ar.resource.id,
+                            sum(case when ar.result.status = %1$s then 1 else 0 end),
+                            sum(case when ar.result.status = %1$s then 0 else 1 end),
+                            sum(case when ar.result.status = %1$s then ar.capacity else 0 end),
+                            min(case when ar.result.status = %1$s
+                                then (ar.previousResourceCapacity - ar.capacity)
+                                else ar.previousResourceCapacity end)
+                        from AllocationRequest ar
+                        where ar.resource.id in :ids
+                        group by ar.resource.id
+                        """.formatted(ACCEPTED), Object[].class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .forEach(row -> counters.get((Long) row[0]).add(row));
+
+        jpa.createQuery("""
+                        select r.resource.id, sum(r.accepted), sum(r.rejected), sum(r.unitsAllocated), min(r.minCapacity)
+                        from AllocationRollup r
+                        where r.resource.id in :ids
+                        group by r.resource.id
+                        """, Object[].class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .forEach(row -> counters.get((Long) row[0]).add(row));
+
+        jpa.createQuery("delete from ResourceStatistics s where s.resourceId in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        // the bulk delete bypasses the persistence context, which may still hold the deleted rows
+        jpa.clear();
+
+        for (Object[] resource : resources) {
+            Long id = (Long) resource[0];
+            int totalCapacity = (Integer) resource[1];
+            Counters resourceCounters = counters.get(id);
+
+            var statistics = new ResourceStatistics(id);
+            statistics.setAccepted(resourceCounters.accepted);
+            statistics.setRejected(resourceCounters.rejected);
+            statistics.setUnitsAllocated(resourceCounters.unitsAllocated);
+            statistics.setPeakUnitsInUse(resourceCounters.minCapacity == Integer.MAX_VALUE
+                    ? 0
+                    : Math.max(0, totalCapacity - resourceCounters.minCapacity));
+            jpa.persist(statistics);
+        }
+    }
+
+    private static final class Counters {
+
+        private long accepted;
+
+        private long rejected;
+
+        private long unitsAllocated;
+
+        private int minCapacity = Integer.MAX_VALUE;
+
+        void add(Object[] row) {
+            accepted += ((Number) row[1]).longValue();
+            rejected += ((Number) row[2]).longValue();
+            unitsAllocated += ((Number) row[3]).longValue();
+            minCapacity = Math.min(minCapacity, ((Number) row[4]).intValue());
+        }
+    }
+}
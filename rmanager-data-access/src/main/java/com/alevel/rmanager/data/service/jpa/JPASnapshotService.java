@@ -0,0 +1,244 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SnapshotStats;
+import com.alevel.rmanager.data.model.entity.AllocationRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.model.entity.ManagedResource;
+import com.alevel.rmanager.data.model.entity.ResourceStatistics;
+import com.alevel.rmanager.data.service.SnapshotService;
+import com.alevel.rmanager.data.service.snapshot.SnapshotFormat;
+import com.alevel.rmanager.data.service.snapshot.SnapshotHandler;
+import com.alevel.rmanager.data.service.snapshot.SnapshotReader;
+import com.alevel.rmanager.data.service.snapshot.SnapshotWriter;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Export walks two forward-only cursors side by side, resources ordered by id and allocation requests ordered by
+ * resource id and then issue time, so neither is ever held in memory. Both cursors read projections, leaving the persistence context empty.
+ * Import keeps only the id of the resource being imported, flushing and committing every {@value #IMPORT_CHUNK_SIZE} rows.
+ * The members of an atomic allocation span resources, so the new group ids are kept for the whole import, one per group:
+ * a group gets the new id of its first imported request, as groups created by {@link JPAAtomicAllocationService} do.
+ */
+public class JPASnapshotService implements SnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(JPASnapshotService.class);
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
+    private static final int JDBC_BATCH_SIZE = 50;
+
+    private static final String SELECT_RESOURCES = """
+            select new com.alevel.rmanager.data.model.dto.ManagedResourceRecord(
+                r.id,
+                r.name,
+                r.description,
+                r.capacity,
+                r.totalCapacity
+            ) from ManagedResource r
+            order by r.id
+            """;
+
+    private static final String SELECT_ALLOCATION_REQUESTS =
+            JPAResourceAllocationRequestService.SELECT_RECORDS + "order by ar.resource.id, ar.issuedAt, ar.id";
+
+    private final Supplier<EntityManager> persistence;
+
+    public JPASnapshotService(Supplier<EntityManager> persistence) {
+        this.persistence = persistence;
+    }
+
+    @Override
+    public SnapshotStats exportTo(WritableByteChannel channel, SnapshotFormat format) throws RManagerDataLayerException {
+        SnapshotWriter writer = format.newWriter(channel);
+
+        EntityManager jpa = persistence.get();
+        Session session = jpa.unwrap(Session.class);
+
+        long start = System.nanoTime();
+        long resourceCount = 0;
+        long requestCount = 0;
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try (ScrollableResults resources = scroll(session, SELECT_RESOURCES);
+             ScrollableResults requests = scroll(session, SELECT_ALLOCATION_REQUESTS)) {
+
+            boolean hasRequest = requests.next();
+            while (resources.next()) {
+                var resource = (ManagedResourceRecord) resources.get(0);
+                writer.writeResource(resource);
+                resourceCount++;
+
+                while (hasRequest) {
+                    var request = (AllocationRequestRecord) requests.get(0);
+                    if (request.resourceId() > resource.id()) {
+                        break;
+                    }
+                    // requests of a resource created after the resource cursor was opened are skipped
+                    if (request.resourceId().equals(resource.id())) {
+                        writer.writeAllocationRequest(request);
+                        requestCount++;
+                    }
+                    hasRequest = requests.next();
+                }
+            }
+            writer.finish();
+
+            transaction.commit();
+        } catch (IOException | RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        }
+
+        var stats = new SnapshotStats(resourceCount, requestCount, writer.bytesWritten(), Duration.ofNanos(System.nanoTime() - start));
+        log.info("Exported {} resources and {} allocation requests ({} bytes) in {}, {} rows/s",
+                stats.resources(), stats.allocationRequests(), stats.bytes(), stats.elapsed(), Math.round(stats.rowsPerSecond()));
+        return stats;
+    }
+
+    @Override
+    public SnapshotStats importFrom(ReadableByteChannel channel, SnapshotFormat format) throws RManagerDataLayerException {
+        SnapshotReader reader = format.newReader(channel);
+
+        EntityManager jpa = persistence.get();
+        Session session = jpa.unwrap(Session.class);
+        Integer sessionBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(JDBC_BATCH_SIZE);
+
+        long start = System.nanoTime();
+        var importer = new Importer(jpa);
+
+        EntityTransaction transaction = jpa.getTransaction();
+        try {
+            transaction.begin();
+            while (reader.readNext(importer)) {
+                if (importer.rowsInChunk == IMPORT_CHUNK_SIZE) {
+                    importer.statistics.apply(jpa);
+                    transaction.commit();
+                    jpa.clear();
+                    importer.rowsInChunk = 0;
+                    transaction.begin();
+                }
+            }
+            importer.statistics.apply(jpa);
+            transaction.commit();
+        } catch (IOException | RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RManagerDataLayerException(e);
+        } finally {
+            jpa.clear();
+            session.setJdbcBatchSize(sessionBatchSize);
+        }
+
+        var stats = new SnapshotStats(importer.resources, importer.requests, reader.bytesRead(), Duration.ofNanos(System.nanoTime() - start));
+        log.info("Imported {} resources and {} allocation requests ({} bytes) in {}, {} rows/s",
+                stats.resources(), stats.allocationRequests(), stats.bytes(), stats.elapsed(), Math.round(stats.rowsPerSecond()));
+        return stats;
+    }
+
+    private static ScrollableResults scroll(Session session, String query) {
+        return session.createQuery(query)
+                .setReadOnly(true)
+                .setFetchSize(FETCH_SIZE)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    private static final class Importer implements SnapshotHandler {
+
+        private final EntityManager jpa;
+
+        private final ResourceStatisticsBatch statistics = new ResourceStatisticsBatch();
+
+        private final Map<Long, Long> groupIds = new HashMap<>();
+
+        private Long sourceResourceId;
+
+        private Long targetResourceId;
+
+        private int targetTotalCapacity;
+
+        private long resources;
+
+        private long requests;
+
+        private int rowsInChunk;
+
+        Importer(EntityManager jpa) {
+            this.jpa = jpa;
+        }
+
+        @Override
+        public void resource(ManagedResourceRecord resource) {
+            var entity = new ManagedResource();
+            entity.setName(resource.name());
+            entity.setDescription(resource.description());
+            entity.setCapacity(resource.capacity());
+            entity.setTotalCapacity(resource.totalCapacity());
+            jpa.persist(entity);
+            jpa.persist(new ResourceStatistics(entity.getId()));
+
+            sourceResourceId = resource.id();
+            targetResourceId = entity.getId();
+            targetTotalCapacity = resource.totalCapacity();
+            resources++;
+            rowsInChunk++;
+        }
+
+        @Override
+        public void allocationRequest(AllocationRequestRecord allocationRequest) {
+            if (!Objects.equals(allocationRequest.resourceId(), sourceResourceId)) {
+                throw new UncheckedIOException(new IOException(
+                        "Allocation request " + allocationRequest.id() + " does not follow its resource " + allocationRequest.resourceId()));
+            }
+            var entity = new AllocationRequest();
+            entity.setResource(jpa.getReference(ManagedResource.class, targetResourceId));
+            entity.setCapacity(allocationRequest.capacity());
+            entity.setPreviousResourceCapacity(allocationRequest.previousResourceCapacity());
+            entity.setIssuedAt(allocationRequest.issuedAt());
+            entity.setResult(AllocationResultRecord.parse(allocationRequest.result().status(), allocationRequest.result().reason()).toEntity());
+            jpa.persist(entity);
+            if (allocationRequest.groupId() != null) {
+                entity.setGroupId(groupIds.computeIfAbsent(allocationRequest.groupId(), sourceGroupId -> entity.getId()));
+            }
+
+            AllocationResult.Status status = allocationRequest.result().status();
+            int capacityAfter = status == AllocationResult.Status.ACCEPTED
+                    ? allocationRequest.previousResourceCapacity() - allocationRequest.capacity()
+                    : allocationRequest.previousResourceCapacity();
+            statistics.record(targetResourceId, allocationRequest.capacity(), status, capacityAfter, targetTotalCapacity);
+
+            requests++;
+            rowsInChunk++;
+        }
+    }
+}
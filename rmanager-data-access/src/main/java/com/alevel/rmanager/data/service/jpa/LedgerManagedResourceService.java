@@ -0,0 +1,861 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.model.entity.JournalCheckpoint;
+import com.alevel.rmanager.data.model.entity.ManagedResource;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+import com.alevel.rmanager.data.service.journal.AllocationJournal;
+import com.alevel.rmanager.data.service.journal.JournalEntry;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Decides allocations against an in-memory {@link CapacityLedger} and writes the resulting
+ * {@code alloc_requests} rows and capacity changes to the database behind the caller, in batches,
+ * from a single writer thread.
+ * <p>
+ * The ledger is the source of truth for capacity of the resources it tracks, so every allocation
+ * of those resources must go through the same instance. Resources are tracked on first use,
+ * after {@link #save(SaveManagedResourceRequest)} and for the whole {@code managed_resources} table on {@link #start()}.
+ * Operations other than allocation are delegated, after pending writes are flushed.
+ * <p>
+ * Allocations of a resource are decided and queued under its lock stripe. {@link #update(long, SaveManagedResourceRequest)}
+ * and {@link #delete(long)} hold the stripe while they flush and drop the resource from the ledger, so no decision slips
+ * in between. Resource state is loaded by the writer thread, after it has written every decision queued before,
+ * so the ledger never starts from capacity that misses claims not yet written.
+ * <p>
+ * With an {@link AllocationJournal}, decisions are appended to the journal before the caller is answered,
+ * and each written batch moves the journal checkpoint within its transaction. {@link #start()} writes decisions
+ * journaled after the checkpoint before loading the ledger, then deletes journal segments that are fully written.
+ * A journaled decision is never dropped: a failed write is retried with backoff, and if it still fails the writer
+ * stops with the checkpoint before it, so the next start writes it and everything journaled after it.
+ */
+public class LedgerManagedResourceService implements ManagedResourceService, AutoCloseable {
+
+    public enum Durability {
+        /**
+         * The caller is answered as soon as the ledger decides. Decisions are written within about one flush interval;
+         * ones not yet written are lost if the process dies. If a write fails, claimed units are returned to the ledger.
+         */
+        WRITE_BEHIND,
+        /**
+         * The caller is answered after the batch containing its decision is committed.
+         * Concurrent callers share batches, so this still costs much less than a transaction per allocation.
+         */
+        AWAIT_FLUSH,
+        /**
+         * The caller is answered once the decision is appended to the journal; the database is written behind
+         * as with {@link #WRITE_BEHIND}. Decisions not yet written when the process dies are written on the next start.
+         * If a write keeps failing, the ledger stops accepting allocations until it is restarted.
+         */
+        JOURNAL
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerManagedResourceService.class);
+
+    private static final int QUEUE_CAPACITY = 65_536;
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private static final String CHECKPOINT_NAME = "allocation-journal";
+
+    private static final int JOURNALED_WRITE_ATTEMPTS = 10;
+
+    private static final long RETRY_BACKOFF_MILLIS = 50;
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5_000;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ManagedResourceService delegate;
+
+    private final Supplier<EntityManager> writerPersistence;
+
+    private final Durability durability;
+
+    private final int batchSize;
+
+    private final Duration flushInterval;
+
+    private final AllocationJournal journal;
+
+    private final CapacityLedger ledger = new CapacityLedger();
+
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+
+    private final BlockingQueue<PendingItem> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    private volatile boolean running;
+
+    private volatile IllegalStateException writerFailure;
+
+    private Thread writer;
+
+    /**
+     * @param delegate          service used for everything but allocation
+     * @param writerPersistence persistence used exclusively by the writer thread
+     * @param batchSize         maximal number of allocation requests written in one transaction
+     * @param flushInterval     how long the writer waits for a batch to fill up before writing it
+     */
+    public LedgerManagedResourceService(ManagedResourceService delegate,
+                                        Supplier<EntityManager> writerPersistence,
+                                        Durability durability,
+                                        int batchSize,
+                                        Duration flushInterval) {
+        this(delegate, writerPersistence, durability, null, batchSize, flushInterval);
+    }
+
+    /**
+     * Creates a ledger with {@link Durability#JOURNAL} durability.
+     *
+     * @param journal journal used exclusively by this instance; the caller closes it after closing this instance
+     */
+    public LedgerManagedResourceService(ManagedResourceService delegate,
+                                        Supplier<EntityManager> writerPersistence,
+                                        AllocationJournal journal,
+                                        int batchSize,
+                                        Duration flushInterval) {
+        this(delegate, writerPersistence, Durability.JOURNAL, Objects.requireNonNull(journal), batchSize, flushInterval);
+    }
+
+    private LedgerManagedResourceService(ManagedResourceService delegate,
+                                         Supplier<EntityManager> writerPersistence,
+                                         Durability durability,
+                                         AllocationJournal journal,
+                                         int batchSize,
+                                         Duration flushInterval) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be positive");
+        }
+        if ((durability == Durability.JOURNAL) != (journal != null)) {
+            throw new IllegalArgumentException("Journal durability needs a journal");
+        }
+        this.delegate = delegate;
+        this.writerPersistence = writerPersistence;
+        this.durability = durability;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Writes decisions journaled after the last checkpoint, loads state of all managed resources into the ledger
+     * and starts the writer.
+     */
+    public synchronized void start() {
+        if (running) {
+            throw new IllegalStateException("Ledger is already running");
+        }
+        if (journal != null) {
+            replayJournal();
+        }
+        rebuild();
+        writerFailure = null;
+        running = true;
+        writer = new Thread(this::runWriter, "rmanager-ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Blocks until every allocation decided before this call is written.
+     */
+    public void flush() throws RManagerDataLayerException {
+        if (!running) {
+            if (writerFailure != null) {
+                throw new RManagerDataLayerException(writerFailure);
+            }
+            return;
+        }
+        var barrier = new FlushBarrier(new CompletableFuture<>());
+        enqueue(barrier);
+        await(barrier.done());
+    }
+
+    @Override
+    public synchronized void close() throws RManagerDataLayerException {
+        if (!running) {
+            return;
+        }
+        flush();
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RManagerDataLayerException(e);
+        }
+    }
+
+    @Override
+    public Optional<ManagedResourceRecord> getById(long id) {
+        return delegate.getById(id).map(this::withLedgerState);
+    }
+
+    @Override
+    public List<ManagedResourceRecord> getByIds(Collection<Long> ids) {
+        return delegate.getByIds(ids).stream()
+                .map(this::withLedgerState)
+                .toList();
+    }
+
+    private ManagedResourceRecord withLedgerState(ManagedResourceRecord record) {
+        Long state = ledger.state(record.id());
+        if (state == null) {
+            return record;
+        }
+        return new ManagedResourceRecord(
+                record.id(),
+                record.name(),
+                record.description(),
+                CapacityLedger.capacity(state),
+                CapacityLedger.totalCapacity(state)
+        );
+    }
+
+    @Override
+    public ManagedResourceRecord save(SaveManagedResourceRequest managedResource) throws RManagerDataLayerException {
+        ManagedResourceRecord saved = delegate.save(managedResource);
+        ledger.track(saved.id(), saved.capacity(), saved.totalCapacity());
+        return saved;
+    }
+
+    /**
+     * Imported resources are not tracked right away: the ledger loads each of them on its first allocation.
+     */
+    @Override
+    public BulkImportResult saveAll(Stream<SaveManagedResourceRequest> managedResources) throws RManagerDataLayerException {
+        return delegate.saveAll(managedResources);
+    }
+
+    @Override
+    public void update(long id, SaveManagedResourceRequest managedResource) throws RManagerDataLayerException, ManagedResourceNotFoundException {
+        try (StripedLocks.Held ignored = locks.lockAll(new long[]{id})) {
+            flush();
+            delegate.update(id, managedResource);
+            if (!ledger.updateTotalCapacity(id, managedResource.totalCapacity())) {
+                log.warn("Ledger capacity of resource {} exceeds its updated total capacity, reloading it on next use", id);
+                ledger.forget(id);
+            }
+        }
+    }
+
+    @Override
+    public void delete(long id) throws ManagedResourceNotFoundException {
+        try (StripedLocks.Held ignored = locks.lockAll(new long[]{id})) {
+            try {
+                flush();
+            } catch (RManagerDataLayerException e) {
+                log.error("Failed to flush pending allocations before deleting resource {}", id, e);
+            }
+            delegate.delete(id);
+            ledger.forget(id);
+        }
+    }
+
+    @Override
+    public AllocationResultRecord allocate(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        requireNonZero(units);
+        requireRunning();
+
+        PendingAllocation pending;
+        try (StripedLocks.Held ignored = locks.lockAll(new long[]{id})) {
+            pending = submit(id, units);
+        }
+        if (pending.written() != null) {
+            await(pending.written());
+        }
+        return pending.result();
+    }
+
+    @Override
+    public List<AllocationResultRecord> allocateAll(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        for (AllocationCommand command : commands) {
+            requireNonZero(command.units());
+        }
+        requireRunning();
+
+        Set<Long> ids = new LinkedHashSet<>();
+        for (AllocationCommand command : commands) {
+            ids.add(command.resourceId());
+        }
+
+        var results = new ArrayList<AllocationResultRecord>(commands.size());
+        var written = new ArrayList<CompletableFuture<Void>>();
+        try (StripedLocks.Held ignored = locks.lockAll(ids.stream().mapToLong(Long::longValue).toArray())) {
+            for (Long id : ids) {
+                if (!ledger.contains(id)) {
+                    load(id);
+                }
+            }
+            for (AllocationCommand command : commands) {
+                PendingAllocation pending = submit(command.resourceId(), command.units());
+                if (pending.written() != null) {
+                    written.add(pending.written());
+                }
+                results.add(pending.result());
+            }
+        }
+        if (!written.isEmpty()) {
+            await(CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)));
+        }
+        return results;
+    }
+
+    /**
+     * Decides the allocation and queues it for the writer; the caller holds the lock stripe of the resource.
+     * Journaled decisions are queued in the order of their sequence numbers, so every written batch can move
+     * the checkpoint to its last decision.
+     */
+    private PendingAllocation submit(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        PendingAllocation pending = decide(id, units);
+        if (journal == null) {
+            enqueue(pending);
+            return pending;
+        }
+
+        synchronized (journal) {
+            long sequence;
+            try {
+                sequence = journal.append(new JournalEntry(
+                        pending.resourceId(),
+                        pending.units(),
+                        pending.previousCapacity(),
+                        pending.totalCapacity(),
+                        pending.result(),
+                        pending.issuedAt()));
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to journal allocation of {} units of resource {}", units, id, e);
+                if (pending.accepted()) {
+                    ledger.compensate(id, units);
+                }
+                throw new RManagerDataLayerException(e);
+            }
+            PendingAllocation journaled = pending.journaled(sequence);
+            enqueueUninterruptibly(journaled);
+            return journaled;
+        }
+    }
+
+    private PendingAllocation decide(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        CapacityLedger.Decision decision = ledger.allocate(id, units);
+        if (decision == null) {
+            load(id);
+            decision = ledger.allocate(id, units);
+            if (decision == null) {
+                throw new ManagedResourceNotFoundException(id);
+            }
+        }
+        return new PendingAllocation(
+                id,
+                units,
+                decision.previousCapacity(),
+                decision.totalCapacity(),
+                decision.result(),
+                Instant.now(),
+                0,
+                durability == Durability.AWAIT_FLUSH ? new CompletableFuture<>() : null
+        );
+    }
+
+    /**
+     * Tracks state of the resource read by the writer once everything queued before is written;
+     * the caller holds the lock stripe of the resource.
+     */
+    private void load(long id) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        var load = new ResourceLoad(id, new CompletableFuture<>());
+        enqueue(load);
+        ManagedResourceRecord record = await(load.loaded())
+                .orElseThrow(() -> new ManagedResourceNotFoundException(id));
+        ledger.track(id, record.capacity(), record.totalCapacity());
+    }
+
+    private void rebuild() {
+        EntityManager jpa = writerPersistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            ledger.clear();
+            jpa.createQuery("select r.id, r.capacity, r.totalCapacity from ManagedResource r", Object[].class)
+                    .getResultStream()
+                    .forEach(row -> ledger.track((Long) row[0], (Integer) row[1], (Integer) row[2]));
+            transaction.commit();
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
+
+        log.info("Capacity ledger loaded {} resources", ledger.size());
+    }
+
+    private void enqueue(PendingItem item) throws RManagerDataLayerException {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (item instanceof PendingAllocation pending && pending.accepted()) {
+                ledger.compensate(pending.resourceId(), pending.units());
+            }
+            throw new RManagerDataLayerException(e);
+        }
+    }
+
+    /**
+     * A journaled decision is written on the next start even if it is not queued now,
+     * so giving up on an interrupt would only make the caller believe it failed.
+     */
+    private void enqueueUninterruptibly(PendingAllocation pending) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(pending);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void replayJournal() {
+        long checkpoint = readCheckpoint();
+        var batch = new ArrayList<PendingAllocation>(batchSize);
+        long replayed = journal.replay(checkpoint, (sequence, entry) -> {
+            batch.add(new PendingAllocation(
+                    entry.resourceId(),
+                    entry.units(),
+                    entry.previousCapacity(),
+                    entry.totalCapacity(),
+                    entry.result(),
+                    entry.issuedAt(),
+                    sequence,
+                    null));
+            if (batch.size() == batchSize) {
+                writeReplayed(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            writeReplayed(batch);
+        }
+
+        try {
+            journal.advanceTo(checkpoint);
+            journal.releaseThrough(readCheckpoint());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Replayed {} journaled allocations after checkpoint {}", replayed, checkpoint);
+    }
+
+    private void writeReplayed(List<PendingAllocation> allocations) {
+        try {
+            persist(allocations);
+        } catch (RuntimeException e) {
+            log.error("Failed to replay batch of {} allocations, retrying one by one", allocations.size(), e);
+            for (PendingAllocation allocation : allocations) {
+                if (!writeJournaled(allocation)) {
+                    throw new IllegalStateException("Failed to replay journaled allocation " + allocation.sequence()
+                            + ", it is kept in the journal for the next start", e);
+                }
+            }
+        }
+    }
+
+    private long readCheckpoint() {
+        EntityManager jpa = writerPersistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            long checkpoint = jpa.createQuery(
+                            "select c.sequence from JournalCheckpoint c where c.name = :name", Long.class)
+                    .setParameter("name", CHECKPOINT_NAME)
+                    .getResultStream()
+                    .findFirst()
+                    .orElse(0L);
+            transaction.commit();
+            return checkpoint;
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+    private static void advanceCheckpoint(EntityManager jpa, long sequence) {
+        int updated = jpa.createQuery("""
+                        update JournalCheckpoint c set c.sequence = :sequence
+                        where c.name = :name and c.sequence < :sequence
+                        """)
+                .setParameter("name", CHECKPOINT_NAME)
+                .setParameter("sequence", sequence)
+                .executeUpdate();
+        if (updated == 0 && jpa.find(JournalCheckpoint.class, CHECKPOINT_NAME) == null) {
+            jpa.persist(new JournalCheckpoint(CHECKPOINT_NAME, sequence));
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws RManagerDataLayerException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new RManagerDataLayerException(e.getCause());
+        }
+    }
+
+    private void requireRunning() {
+        if (!running) {
+            throw new IllegalStateException("Ledger is not running", writerFailure);
+        }
+    }
+
+    private static void requireNonZero(int units) {
+        if (units == 0) {
+            throw new IllegalArgumentException("Can't allocate zero units of a resource");
+        }
+    }
+
+    private void runWriter() {
+        var batch = new ArrayList<PendingItem>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingItem first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Ledger writer interrupted, {} allocations are not written", queue.size());
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ledger writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void fillBatch(List<PendingItem> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (batch.size() < batchSize && batch.get(batch.size() - 1) instanceof PendingAllocation) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingItem next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<PendingItem> batch) {
+        var allocations = new ArrayList<PendingAllocation>(batch.size());
+        for (PendingItem item : batch) {
+            if (item instanceof PendingAllocation allocation) {
+                allocations.add(allocation);
+            }
+        }
+
+        if (!allocations.isEmpty()) {
+            try {
+                persist(allocations);
+                allocations.forEach(PendingAllocation::markWritten);
+                log.debug("Ledger wrote batch of {} allocations", allocations.size());
+                releaseJournal(allocations.get(allocations.size() - 1).sequence());
+            } catch (RuntimeException e) {
+                log.error("Failed to write batch of {} allocations, retrying one by one", allocations.size(), e);
+                if (journal == null) {
+                    for (PendingAllocation allocation : allocations) {
+                        writeAlone(allocation);
+                    }
+                } else {
+                    for (PendingAllocation allocation : allocations) {
+                        if (!writeJournaled(allocation)) {
+                            stopWriter(batch);
+                            return;
+                        }
+                    }
+                    releaseJournal(allocations.get(allocations.size() - 1).sequence());
+                }
+            }
+        }
+
+        for (PendingItem item : batch) {
+            if (item instanceof FlushBarrier barrier) {
+                barrier.done().complete(null);
+            } else if (item instanceof ResourceLoad load) {
+                readResource(load);
+            }
+        }
+    }
+
+    private void readResource(ResourceLoad load) {
+        EntityManager jpa = writerPersistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            Optional<ManagedResourceRecord> record = jpa.createQuery("""
+                            select new com.alevel.rmanager.data.model.dto.ManagedResourceRecord(
+                                r.id, r.name, r.description, r.capacity, r.totalCapacity
+                            ) from ManagedResource r where r.id = :id
+                            """, ManagedResourceRecord.class)
+                    .setParameter("id", load.id())
+                    .getResultStream()
+                    .findFirst();
+            transaction.commit();
+            load.loaded().complete(record);
+        } catch (RuntimeException e) {
+            log.error("Data layer operation failed", e);
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            load.loaded().completeExceptionally(e);
+        }
+    }
+
+    private void releaseJournal(long checkpoint) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.releaseThrough(checkpoint);
+        } catch (IOException e) {
+            log.warn("Failed to delete journal segments up to {}", checkpoint, e);
+        }
+    }
+
+    private void writeAlone(PendingAllocation allocation) {
+        try {
+            persist(List.of(allocation));
+            allocation.markWritten();
+        } catch (RuntimeException e) {
+            log.error("Dropping allocation of {} units of resource {}", allocation.units(), allocation.resourceId(), e);
+            if (allocation.accepted()) {
+                ledger.compensate(allocation.resourceId(), allocation.units());
+            }
+            if (allocation.written() != null) {
+                allocation.written().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Writes a journaled decision on its own. Its caller has been answered already, so the decision is never dropped
+     * or handed back to the ledger: it is retried with backoff, and skipped only if the checkpoint shows it written,
+     * as when a commit succeeded but its acknowledgement was lost, or if its resource has been deleted since.
+     *
+     * @return {@code false} if it still could not be written
+     */
+    private boolean writeJournaled(PendingAllocation allocation) {
+        long backoff = RETRY_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (readCheckpoint() >= allocation.sequence()) {
+                    return true;
+                }
+                if (!resourceExists(allocation.resourceId())) {
+                    log.warn("Skipping journaled allocation {} of deleted resource {}", allocation.sequence(), allocation.resourceId());
+                    return true;
+                }
+                persist(List.of(allocation));
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt == JOURNALED_WRITE_ATTEMPTS) {
+                    log.error("Failed to write journaled allocation {} of {} units of resource {} in {} attempts",
+                            allocation.sequence(), allocation.units(), allocation.resourceId(), attempt, e);
+                    return false;
+                }
+                log.warn("Failed to write journaled allocation {}, retrying in {} ms", allocation.sequence(), backoff, e);
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+        }
+    }
+
+    private boolean resourceExists(long id) {
+        EntityManager jpa = writerPersistence.get();
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            boolean exists = !jpa.createQuery("select r.id from ManagedResource r where r.id = :id", Long.class)
+                    .setParameter("id", id)
+                    .getResultList()
+                    .isEmpty();
+            transaction.commit();
+            return exists;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the writer when a journaled decision could not be written: writing later decisions would move
+     * the checkpoint past it. Everything not written stays in the journal for the next start.
+     */
+    private void stopWriter(List<PendingItem> batch) {
+        var failure = new IllegalStateException("Ledger writer stopped on a failed write, restart to write journaled allocations");
+        writerFailure = failure;
+        running = false;
+
+        var unwritten = new ArrayList<>(batch);
+        queue.drainTo(unwritten);
+        for (PendingItem item : unwritten) {
+            if (item instanceof FlushBarrier barrier) {
+                barrier.done().completeExceptionally(failure);
+            } else if (item instanceof ResourceLoad load) {
+                load.loaded().completeExceptionally(failure);
+            }
+        }
+        log.error("Ledger writer stopped, allocations it did not write are written from the journal on the next start");
+    }
+
+    private void persist(List<PendingAllocation> allocations) {
+        EntityManager jpa = writerPersistence.get();
+        Session session = jpa.unwrap(Session.class);
+        Integer sessionBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(Math.min(batchSize, 50));
+
+        EntityTransaction transaction = jpa.getTransaction();
+        transaction.begin();
+        try {
+            Map<Long, Integer> claimedUnits = new HashMap<>();
+            var statistics = new ResourceStatisticsBatch();
+            for (PendingAllocation allocation : allocations) {
+                var request = new AllocationRequest();
+                request.setResource(jpa.getReference(ManagedResource.class, allocation.resourceId()));
+                request.setPreviousResourceCapacity(allocation.previousCapacity());
+                request.setCapacity(allocation.units());
+                request.setIssuedAt(allocation.issuedAt());
+                request.setResult(allocation.result().toEntity());
+                jpa.persist(request);
+                if (allocation.accepted()) {
+                    claimedUnits.merge(allocation.resourceId(), allocation.units(), Integer::sum);
+                }
+                int capacityAfter = allocation.accepted()
+                        ? allocation.previousCapacity() - allocation.units()
+                        : allocation.previousCapacity();
+                statistics.record(allocation.resourceId(), allocation.units(), allocation.result().status(),
+                        capacityAfter, allocation.totalCapacity());
+            }
+
+            Query claimCapacity = jpa.createQuery("""
+                    update ManagedResource r set r.capacity = r.capacity - :units where r.id = :id
+                    """);
+            for (Map.Entry<Long, Integer> claimed : claimedUnits.entrySet()) {
+                if (claimed.getValue() == 0) {
+                    continue;
+                }
+                int updated = claimCapacity
+                        .setParameter("id", claimed.getKey())
+                        .setParameter("units", claimed.getValue())
+                        .executeUpdate();
+                if (updated == 0) {
+                    throw new EntityNotFoundException("Managed resource with id = " + claimed.getKey() + " was not found!");
+                }
+            }
+            statistics.apply(jpa);
+
+            long checkpoint = allocations.stream().mapToLong(PendingAllocation::sequence).max().orElse(0);
+            if (checkpoint > 0) {
+                advanceCheckpoint(jpa, checkpoint);
+            }
+
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            jpa.clear();
+            session.setJdbcBatchSize(sessionBatchSize);
+        }
+    }
+
+    private sealed interface PendingItem permits PendingAllocation, FlushBarrier, ResourceLoad {
+    }
+
+    private record PendingAllocation(long resourceId,
+                                     int units,
+                                     int previousCapacity,
+                                     int totalCapacity,
+                                     AllocationResultRecord result,
+                                     Instant issuedAt,
+                                     long sequence,
+                                     CompletableFuture<Void> written) implements PendingItem {
+
+        PendingAllocation journaled(long sequence) {
+            return new PendingAllocation(resourceId, units, previousCapacity, totalCapacity, result, issuedAt, sequence, written);
+        }
+
+        boolean accepted() {
+            return result.status() == AllocationResult.Status.ACCEPTED;
+        }
+
+        void markWritten() {
+            if (written != null) {
+                written.complete(null);
+            }
+        }
+    }
+
+    private record FlushBarrier(CompletableFuture<Void> done) implements PendingItem {
+    }
+
+    private record ResourceLoad(long id, CompletableFuture<Optional<ManagedResourceRecord>> loaded) implements PendingItem {
+    }
+}
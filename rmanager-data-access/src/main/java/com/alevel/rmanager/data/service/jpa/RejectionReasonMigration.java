@@ -0,0 +1,94 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Moves free-text rejection reasons of requests recorded before rejection codes into the code and parameter columns,
+ * {@code chunkSize} requests per transaction in id order. Reasons in no known format are kept as text.
+ * The migration can be interrupted and run again; it only reads requests that still have a text reason.
+ */
+public class RejectionReasonMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(RejectionReasonMigration.class);
+
+    private final Supplier<EntityManager> persistence;
+
+    public RejectionReasonMigration(Supplier<EntityManager> persistence) {
+        this.persistence = persistence;
+    }
+
+    /**
+     * @return number of requests whose reasons were converted to codes
+     */
+    public long migrate(int chunkSize) throws RManagerDataLayerException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size should be positive");
+        }
+
+        EntityManager jpa = persistence.get();
+        long migrated = 0;
+        long kept = 0;
+        long afterId = 0;
+        while (true) {
+            EntityTransaction transaction = jpa.getTransaction();
+            transaction.begin();
+            try {
+                List<Object[]> requests = jpa.createQuery("""
+                                select ar.id, ar.result.status, ar.result.reason from AllocationRequest ar
+                                where ar.id > :afterId and ar.result.reason is not null
+                                order by ar.id
+                                """, Object[].class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(chunkSize)
+                        .getResultList();
+
+                Query setCode = jpa.createQuery("""
+                        update AllocationRequest ar
+                        set ar.result.code = :code, ar.result.first = :first, ar.result.second = :second, ar.result.reason = null
+                        where ar.id = :id
+                        """);
+                for (Object[] request : requests) {
+                    AllocationResultRecord result = AllocationResultRecord.parse((AllocationResult.Status) request[1], (String) request[2]);
+                    if (result.code() == null) {
+                        kept++;
+                        continue;
+                    }
+                    setCode.setParameter("id", request[0])
+                            .setParameter("code", result.code())
+                            .setParameter("first", result.first())
+                            .setParameter("second", result.second())
+                            .executeUpdate();
+                    migrated++;
+                }
+
+                transaction.commit();
+
+                if (requests.size() < chunkSize) {
+                    break;
+                }
+                afterId = (Long) requests.get(requests.size() - 1)[0];
+            } catch (RuntimeException e) {
+                log.error("Data layer operation failed", e);
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw new RManagerDataLayerException(e);
+            } finally {
+                jpa.clear();
+            }
+        }
+
+        log.info("Converted rejection reasons of {} allocation requests to codes, kept {} free-text reasons", migrated, kept);
+        return migrated;
+    }
+}
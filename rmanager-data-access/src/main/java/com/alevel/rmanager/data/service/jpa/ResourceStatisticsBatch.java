@@ -0,0 +1,94 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.model.entity.ResourceStatistics;
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Accumulates the effect of allocations on {@link ResourceStatistics} and writes it within the allocating transaction,
+ * with one update per resource however many allocations the transaction makes.
+ * Increments are relative, so concurrent transactions never overwrite each other's counts.
+ * The row is created with the resource, or by {@link JPAResourceStatisticsService#backfill(int)} for resources
+ * created before statistics were kept; until then their allocations update nothing, and backfill counts them
+ * from the history.
+ */
+final class ResourceStatisticsBatch {
+
+    private final Map<Long, Delta> deltas = new LinkedHashMap<>();
+
+    void record(long resourceId, int units, AllocationResult.Status status, int capacityAfter, int totalCapacity) {
+        Delta delta = deltas.computeIfAbsent(resourceId, id -> new Delta());
+        if (status == AllocationResult.Status.ACCEPTED) {
+            delta.accepted++;
+            delta.unitsAllocated += units;
+        } else {
+            delta.rejected++;
+        }
+        delta.peakUnitsInUse = Math.max(delta.peakUnitsInUse, totalCapacity - capacityAfter);
+    }
+
+    void apply(EntityManager jpa) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Query increment = jpa.createQuery("""
+                update ResourceStatistics s
+                set s.accepted = s.accepted + :accepted,
+                    s.rejected = s.rejected + :rejected,
+                    s.unitsAllocated = s.unitsAllocated + :unitsAllocated,
+                    s.peakUnitsInUse = case when s.peakUnitsInUse < :peak then :peak else s.peakUnitsInUse end
+                where s.resourceId = :id
+                """);
+
+        for (Map.Entry<Long, Delta> entry : deltas.entrySet()) {
+            Delta delta = entry.getValue();
+            increment
+                    .setParameter("id", entry.getKey())
+                    .setParameter("accepted", delta.accepted)
+                    .setParameter("rejected", delta.rejected)
+                    .setParameter("unitsAllocated", delta.unitsAllocated)
+                    .setParameter("peak", delta.peakUnitsInUse)
+                    .executeUpdate();
+        }
+        deltas.clear();
+    }
+
+    /**
+     * Records one accepted allocation of {@code units} whose capacity was claimed by a bulk update in this transaction,
+     * taking the peak from the resource row instead of a loaded capacity.
+     */
+    static void applyClaim(EntityManager jpa, long resourceId, int units) {
+        jpa.createNativeQuery("""
+                        update resource_stats
+                        set accepted = accepted + 1,
+                            units_allocated = units_allocated + :units,
+                            peak_units_in_use = (
+                                select case when peak_units_in_use < r.total_capacity - r.capacity
+                                    then r.total_capacity - r.capacity else peak_units_in_use end
+                                from managed_resources r where r.id = :id)
+                        where resource_id = :id
+                        """)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(ResourceStatistics.class)
+                .setParameter("id", resourceId)
+                .setParameter("units", (long) units)
+                .executeUpdate();
+    }
+
+    private static final class Delta {
+
+        private long accepted;
+
+        private long rejected;
+
+        private long unitsAllocated;
+
+        private int peakUnitsInUse;
+    }
+}
@@ -0,0 +1,77 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks, each guarding every id that hashes to it. A caller needing several ids takes their stripes
+ * in ascending stripe order, so callers never wait for each other in a cycle; callers with disjoint stripes
+ * do not wait at all.
+ */
+final class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+
+    private final int mask;
+
+    StripedLocks(int minimumStripes) {
+        if (minimumStripes < 1) {
+            throw new IllegalArgumentException("Number of lock stripes should be positive");
+        }
+        int size = Integer.highestOneBit(minimumStripes);
+        if (size < minimumStripes) {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    int size() {
+        return stripes.length;
+    }
+
+    /**
+     * Blocks until the stripes of all {@code ids} are held by the calling thread.
+     *
+     * @return handle releasing the stripes when closed
+     */
+    Held lockAll(long[] ids) {
+        int[] indexes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            indexes[i] = stripeFor(ids[i]);
+        }
+        int[] ordered = Arrays.stream(indexes).sorted().distinct().toArray();
+
+        int locked = 0;
+        try {
+            for (int index : ordered) {
+                stripes[index].lock();
+                locked++;
+            }
+        } catch (RuntimeException | Error e) {
+            unlock(ordered, locked);
+            throw e;
+        }
+        return () -> unlock(ordered, ordered.length);
+    }
+
+    private void unlock(int[] ordered, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[ordered[i]].unlock();
+        }
+    }
+
+    private int stripeFor(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    interface Held extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,123 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.function.Supplier;
+
+/**
+ * Supplies the JPA services with entity managers whose persistence context lives for one operation,
+ * or for an explicit {@link Scope} spanning several.
+ * <p>
+ * Every thread gets its own entity manager. Outside a scope, {@link #get()} clears it before handing it out,
+ * so entities loaded or persisted by the previous operation of the thread are not dirty-checked or kept
+ * in memory any longer. A context with an active transaction, e.g. held by an open history stream, is not cleared.
+ * Inside a scope the context is shared by all calls of the thread and cleared when the outermost scope closes.
+ * A scope shares the persistence context, not a transaction: each service call still commits on its own.
+ * <p>
+ * Idle entity managers hold no JDBC connection, so threads that end without {@link #release()} leak nothing
+ * but the entity manager itself.
+ */
+public class UnitOfWork implements Supplier<EntityManager> {
+
+    private static final Logger log = LoggerFactory.getLogger(UnitOfWork.class);
+
+    private final EntityManagerFactory factory;
+
+    private final ThreadLocal<Context> contexts = new ThreadLocal<>();
+
+    public UnitOfWork(EntityManagerFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public EntityManager get() {
+        return current().jpa;
+    }
+
+    /**
+     * Starts a scope of the calling thread, or joins the one it is already in.
+     */
+    public Scope begin() {
+        Context context = current();
+        context.depth++;
+        return new Scope(context);
+    }
+
+    /**
+     * Closes the entity manager of the calling thread, e.g. before a pooled thread is retired.
+     *
+     * @throws IllegalStateException if the thread is inside a scope
+     */
+    public void release() {
+        Context context = contexts.get();
+        if (context == null) {
+            return;
+        }
+        if (context.depth > 0) {
+            throw new IllegalStateException("Can't release entity manager inside a scope");
+        }
+        contexts.remove();
+        rollbackAbandoned(context.jpa);
+        context.jpa.close();
+    }
+
+    private Context current() {
+        Context context = contexts.get();
+        if (context == null || !context.jpa.isOpen()) {
+            context = new Context(factory.createEntityManager());
+            contexts.set(context);
+        } else if (context.depth == 0 && !context.jpa.getTransaction().isActive()) {
+            context.jpa.clear();
+        }
+        return context;
+    }
+
+    private static void rollbackAbandoned(EntityManager jpa) {
+        EntityTransaction transaction = jpa.getTransaction();
+        if (transaction.isActive()) {
+            log.warn("Rolling back transaction left active at the end of a unit of work");
+            transaction.rollback();
+        }
+    }
+
+    public final class Scope implements AutoCloseable {
+
+        private final Context context;
+
+        private boolean closed;
+
+        private Scope(Context context) {
+            this.context = context;
+        }
+
+        /**
+         * Leaves the scope; the outermost scope rolls back a transaction left active and clears the context.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (--context.depth == 0) {
+                rollbackAbandoned(context.jpa);
+                context.jpa.clear();
+            }
+        }
+    }
+
+    private static final class Context {
+
+        private final EntityManager jpa;
+
+        private int depth;
+
+        private Context(EntityManager jpa) {
+            this.jpa = jpa;
+        }
+    }
+}
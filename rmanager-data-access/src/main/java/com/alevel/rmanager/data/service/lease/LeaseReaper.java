@@ -0,0 +1,217 @@
+package com.alevel.rmanager.data.service.lease;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.LeaseRecord;
+import com.alevel.rmanager.data.model.dto.LeaseResultRecord;
+import com.alevel.rmanager.data.service.AllocationLeaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Gives back units of expired leases in the background.
+ * <p>
+ * Leases granted through this instance are put on a {@link TimingWheel}. A reaper thread advances it every tick and
+ * expires due leases in batches of {@code batchSize}, one transaction per batch, through its own
+ * {@code reaperService}, which must not share an {@code EntityManager} with {@code delegate}.
+ * On {@link #start()} the wheel is rebuilt from all outstanding leases. Every {@code sweepInterval} the reaper
+ * also looks for overdue leases in the database, which covers leases granted by other processes.
+ * Leases expire at most a tick or so after their time, later if the database is lagging behind.
+ */
+public class LeaseReaper implements AllocationLeaseService, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaseReaper.class);
+
+    private static final int REBUILD_PAGE_SIZE = 10_000;
+
+    private final AllocationLeaseService delegate;
+
+    private final AllocationLeaseService reaperService;
+
+    private final Duration tick;
+
+    private final Duration sweepInterval;
+
+    private final int batchSize;
+
+    private final Clock clock;
+
+    private TimingWheel wheel;
+
+    private volatile boolean running;
+
+    private Thread reaper;
+
+    public LeaseReaper(AllocationLeaseService delegate,
+                       AllocationLeaseService reaperService,
+                       Duration tick,
+                       Duration sweepInterval,
+                       int batchSize,
+                       Clock clock) {
+        if (tick.toMillis() < 1 || sweepInterval.compareTo(tick) < 0 || batchSize < 1) {
+            throw new IllegalArgumentException("Tick should be at least a millisecond, sweep interval at least a tick, batch size positive");
+        }
+        this.delegate = delegate;
+        this.reaperService = reaperService;
+        this.tick = tick;
+        this.sweepInterval = sweepInterval;
+        this.batchSize = batchSize;
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    public synchronized void start() throws RManagerDataLayerException {
+        if (running) {
+            throw new IllegalStateException("Lease reaper is already running");
+        }
+        wheel = new TimingWheel(tick.toMillis(), clock.millis());
+        rebuild();
+        running = true;
+        reaper = new Thread(this::runReaper, "rmanager-lease-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    @Override
+    public LeaseResultRecord allocate(long resourceId, int units, Duration ttl) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        LeaseResultRecord result = delegate.allocate(resourceId, units, ttl);
+        if (result.lease() != null) {
+            schedule(result.lease());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean release(long leaseId) throws RManagerDataLayerException {
+        return delegate.release(leaseId);
+    }
+
+    @Override
+    public int expire(Collection<Long> leaseIds, Instant now) throws RManagerDataLayerException {
+        return delegate.expire(leaseIds, now);
+    }
+
+    @Override
+    public List<LeaseRecord> getActive(Long afterId, int limit) {
+        return delegate.getActive(afterId, limit);
+    }
+
+    @Override
+    public List<LeaseRecord> getExpired(Instant now, int limit) {
+        return delegate.getExpired(now, limit);
+    }
+
+    public synchronized long scheduledLeases() {
+        return wheel == null ? 0 : wheel.size();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = reaper;
+        }
+        thread.interrupt();
+        thread.join();
+    }
+
+    private void rebuild() throws RManagerDataLayerException {
+        long scheduled = 0;
+        var overdue = new ArrayList<Long>();
+        Long afterId = null;
+        while (true) {
+            List<LeaseRecord> page = reaperService.getActive(afterId, REBUILD_PAGE_SIZE);
+            for (LeaseRecord lease : page) {
+                synchronized (this) {
+                    if (wheel.schedule(lease.id(), lease.expiresAt().toEpochMilli())) {
+                        scheduled++;
+                    } else {
+                        overdue.add(lease.id());
+                    }
+                }
+                if (overdue.size() == batchSize) {
+                    expireBatch(overdue);
+                    overdue.clear();
+                }
+            }
+            if (page.size() < REBUILD_PAGE_SIZE) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).id();
+        }
+        expireBatch(overdue);
+        log.info("Lease reaper scheduled {} outstanding leases", scheduled);
+    }
+
+    private void schedule(LeaseRecord lease) {
+        boolean scheduled;
+        synchronized (this) {
+            scheduled = wheel != null && wheel.schedule(lease.id(), lease.expiresAt().toEpochMilli());
+        }
+        if (!scheduled) {
+            log.debug("Lease {} is left to the database sweep", lease.id());
+        }
+    }
+
+    private void runReaper() {
+        long nextSweep = clock.millis() + sweepInterval.toMillis();
+        var due = new ArrayList<Long>();
+        while (running) {
+            try {
+                Thread.sleep(tick.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = clock.millis();
+            synchronized (this) {
+                wheel.advance(now, due::add);
+            }
+            try {
+                for (int from = 0; from < due.size(); from += batchSize) {
+                    expireBatch(due.subList(from, Math.min(due.size(), from + batchSize)));
+                }
+                if (now >= nextSweep) {
+                    sweep();
+                    nextSweep = now + sweepInterval.toMillis();
+                }
+            } catch (RManagerDataLayerException | RuntimeException e) {
+                log.error("Failed to expire leases, the database sweep will retry them", e);
+            } finally {
+                due.clear();
+            }
+        }
+    }
+
+    private void sweep() throws RManagerDataLayerException {
+        while (true) {
+            List<LeaseRecord> overdue = reaperService.getExpired(clock.instant(), batchSize);
+            if (overdue.isEmpty()) {
+                return;
+            }
+            List<Long> ids = overdue.stream().map(LeaseRecord::id).toList();
+            if (reaperService.expire(ids, clock.instant()) == 0 || overdue.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void expireBatch(List<Long> leaseIds) throws RManagerDataLayerException {
+        if (leaseIds.isEmpty()) {
+            return;
+        }
+        int expired = reaperService.expire(leaseIds, clock.instant());
+        log.debug("Expired {} leases, {} were already released", expired, leaseIds.size() - expired);
+    }
+}
@@ -0,0 +1,136 @@
+package com.alevel.rmanager.data.service.lease;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical hashed timing wheel of lease expirations, as described by Varghese and Lauck.
+ * <p>
+ * Time advances in ticks of {@code tickMillis}. Level {@code k} has {@value #SLOTS} slots of
+ * {@code SLOTS^k} ticks each; a lease is put in the coarsest level it does not fit below and moves one level
+ * down whenever its slot comes due, so it is touched at most {@value #LEVELS} times in its life.
+ * Scheduling is a constant number of steps regardless of how many leases are outstanding;
+ * each lease costs one small entry. Leases further than the top level spans wait in the top level
+ * and are re-placed on every rotation.
+ * <p>
+ * Cancellation is not supported: a lease released early stays in the wheel and is skipped on expiry.
+ * Not thread-safe.
+ */
+final class TimingWheel {
+
+    private static final int SLOT_BITS = 8;
+
+    static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    static final int LEVELS = 4;
+
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+
+    private final Entry[][] slots = new Entry[LEVELS][SLOTS];
+
+    private long currentTick;
+
+    private long size;
+
+    TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick should be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * @return {@code false} if the lease is already due, in which case it is not scheduled
+     */
+    boolean schedule(long leaseId, long expiresAtMillis) {
+        // rounded up, so that a lease never comes due before it expires
+        long tick = Math.floorDiv(expiresAtMillis + tickMillis - 1, tickMillis);
+        if (tick <= currentTick) {
+            return false;
+        }
+        place(new Entry(leaseId, tick));
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves the wheel to {@code nowMillis}, passing ids of leases that came due to {@code expired}.
+     * An empty wheel jumps straight to {@code nowMillis}.
+     */
+    void advance(long nowMillis, LongConsumer expired) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            cascade();
+
+            int slot = (int) (currentTick & SLOT_MASK);
+            Entry entry = slots[0][slot];
+            slots[0][slot] = null;
+            while (entry != null) {
+                Entry next = entry.next;
+                size--;
+                expired.accept(entry.leaseId);
+                entry = next;
+            }
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Redistributes the slots of the coarser levels that start at the current tick, coarsest first,
+     * so entries can fall through several levels at once.
+     */
+    private void cascade() {
+        int level = 1;
+        while (level < LEVELS && (currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+            level++;
+        }
+        for (int i = level - 1; i >= 1; i--) {
+            int slot = (int) ((currentTick >>> (SLOT_BITS * i)) & SLOT_MASK);
+            Entry entry = slots[i][slot];
+            slots[i][slot] = null;
+            while (entry != null) {
+                Entry next = entry.next;
+                place(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void place(Entry entry) {
+        long delta = Math.min(entry.tick - currentTick, MAX_DELTA);
+        long tick = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        entry.next = slots[level][slot];
+        slots[level][slot] = entry;
+    }
+
+    private static final class Entry {
+
+        private final long leaseId;
+
+        private final long tick;
+
+        private Entry next;
+
+        private Entry(long leaseId, long tick) {
+            this.leaseId = leaseId;
+            this.tick = tick;
+        }
+    }
+}
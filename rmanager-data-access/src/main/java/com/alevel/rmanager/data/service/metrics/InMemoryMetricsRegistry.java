@@ -0,0 +1,29 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean enabled() {
+        return true;
+    }
+
+    @Override
+    public OperationRecorder operation(String name) {
+        return operations.computeIfAbsent(name, ignored -> new OperationMetrics());
+    }
+
+    @Override
+    public MetricsSnapshot snapshot() {
+        Map<String, OperationSnapshot> snapshot = new TreeMap<>();
+        operations.forEach((name, metrics) -> snapshot.put(name, metrics.snapshot()));
+        return new MetricsSnapshot(Collections.unmodifiableMap(snapshot));
+    }
+}
@@ -0,0 +1,204 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Records latency, calls and errors of every operation, and accept/reject counts of allocations.
+ * Operations are named {@code managedResource.<method>}. When the registry is disabled every call goes
+ * straight to the delegate.
+ */
+public class InstrumentedManagedResourceService implements ManagedResourceService {
+
+    public static final String GET_BY_ID = "managedResource.getById";
+
+    public static final String GET_BY_IDS = "managedResource.getByIds";
+
+    public static final String SAVE = "managedResource.save";
+
+    public static final String SAVE_ALL = "managedResource.saveAll";
+
+    public static final String UPDATE = "managedResource.update";
+
+    public static final String DELETE = "managedResource.delete";
+
+    public static final String ALLOCATE = "managedResource.allocate";
+
+    public static final String ALLOCATE_ALL = "managedResource.allocateAll";
+
+    private final ManagedResourceService delegate;
+
+    private final boolean enabled;
+
+    private final OperationRecorder getById;
+
+    private final OperationRecorder getByIds;
+
+    private final OperationRecorder save;
+
+    private final OperationRecorder saveAll;
+
+    private final OperationRecorder update;
+
+    private final OperationRecorder delete;
+
+    private final OperationRecorder allocate;
+
+    private final OperationRecorder allocateAll;
+
+    public InstrumentedManagedResourceService(ManagedResourceService delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.enabled = registry.enabled();
+        this.getById = registry.operation(GET_BY_ID);
+        this.getByIds = registry.operation(GET_BY_IDS);
+        this.save = registry.operation(SAVE);
+        this.saveAll = registry.operation(SAVE_ALL);
+        this.update = registry.operation(UPDATE);
+        this.delete = registry.operation(DELETE);
+        this.allocate = registry.operation(ALLOCATE);
+        this.allocateAll = registry.operation(ALLOCATE_ALL);
+    }
+
+    @Override
+    public Optional<ManagedResourceRecord> getById(long id) {
+        if (!enabled) {
+            return delegate.getById(id);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Optional<ManagedResourceRecord> result = delegate.getById(id);
+            failed = false;
+            return result;
+        } finally {
+            getById.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<ManagedResourceRecord> getByIds(Collection<Long> ids) {
+        if (!enabled) {
+            return delegate.getByIds(ids);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<ManagedResourceRecord> result = delegate.getByIds(ids);
+            failed = false;
+            return result;
+        } finally {
+            getByIds.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public ManagedResourceRecord save(SaveManagedResourceRequest managedResource) throws RManagerDataLayerException {
+        if (!enabled) {
+            return delegate.save(managedResource);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ManagedResourceRecord result = delegate.save(managedResource);
+            failed = false;
+            return result;
+        } finally {
+            save.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public BulkImportResult saveAll(Stream<SaveManagedResourceRequest> managedResources) throws RManagerDataLayerException {
+        if (!enabled) {
+            return delegate.saveAll(managedResources);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            BulkImportResult result = delegate.saveAll(managedResources);
+            failed = false;
+            return result;
+        } finally {
+            saveAll.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public void update(long id, SaveManagedResourceRequest managedResource) throws RManagerDataLayerException, ManagedResourceNotFoundException {
+        if (!enabled) {
+            delegate.update(id, managedResource);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            delegate.update(id, managedResource);
+            failed = false;
+        } finally {
+            update.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public void delete(long id) throws ManagedResourceNotFoundException {
+        if (!enabled) {
+            delegate.delete(id);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            delegate.delete(id);
+            failed = false;
+        } finally {
+            delete.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public AllocationResultRecord allocate(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        if (!enabled) {
+            return delegate.allocate(id, units);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            AllocationResultRecord result = delegate.allocate(id, units);
+            failed = false;
+            allocate.recordAllocation(result, units);
+            return result;
+        } finally {
+            allocate.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<AllocationResultRecord> allocateAll(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        if (!enabled) {
+            return delegate.allocateAll(commands);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<AllocationResultRecord> results = delegate.allocateAll(commands);
+            failed = false;
+            for (int i = 0; i < results.size(); i++) {
+                allocateAll.recordAllocation(results.get(i), commands.get(i).units());
+            }
+            return results;
+        } finally {
+            allocateAll.record(System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.service.ResourceAllocationRequestService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Records latency, calls and errors of every operation, named {@code allocationRequest.<method>}.
+ * For {@link #streamByResourceId(long)} only opening the stream is measured, not consuming it.
+ */
+public class InstrumentedResourceAllocationRequestService implements ResourceAllocationRequestService {
+
+    public static final String GET_BY_RESOURCE_ID = "allocationRequest.getByResourceId";
+
+    public static final String GET_PAGE_BY_RESOURCE_ID = "allocationRequest.getPageByResourceId";
+
+    public static final String STREAM_BY_RESOURCE_ID = "allocationRequest.streamByResourceId";
+
+    public static final String GET_BY_ID = "allocationRequest.getById";
+
+    public static final String GET_BY_IDS = "allocationRequest.getByIds";
+
+    public static final String GET_AFTER_ID = "allocationRequest.getAfterId";
+
+    public static final String GET_LAST_ID = "allocationRequest.getLastId";
+
+    private final ResourceAllocationRequestService delegate;
+
+    private final boolean enabled;
+
+    private final OperationRecorder getByResourceId;
+
+    private final OperationRecorder getPageByResourceId;
+
+    private final OperationRecorder streamByResourceId;
+
+    private final OperationRecorder getById;
+
+    private final OperationRecorder getByIds;
+
+    private final OperationRecorder getAfterId;
+
+    private final OperationRecorder getLastId;
+
+    public InstrumentedResourceAllocationRequestService(ResourceAllocationRequestService delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.enabled = registry.enabled();
+        this.getByResourceId = registry.operation(GET_BY_RESOURCE_ID);
+        this.getPageByResourceId = registry.operation(GET_PAGE_BY_RESOURCE_ID);
+        this.streamByResourceId = registry.operation(STREAM_BY_RESOURCE_ID);
+        this.getById = registry.operation(GET_BY_ID);
+        this.getByIds = registry.operation(GET_BY_IDS);
+        this.getAfterId = registry.operation(GET_AFTER_ID);
+        this.getLastId = registry.operation(GET_LAST_ID);
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getByResourceId(long resourceId) throws ManagedResourceNotFoundException {
+        if (!enabled) {
+            return delegate.getByResourceId(resourceId);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<AllocationRequestRecord> result = delegate.getByResourceId(resourceId);
+            failed = false;
+            return result;
+        } finally {
+            getByResourceId.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getByResourceId(long resourceId, AllocationHistoryCursor after, int limit) throws ManagedResourceNotFoundException {
+        if (!enabled) {
+            return delegate.getByResourceId(resourceId, after, limit);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<AllocationRequestRecord> result = delegate.getByResourceId(resourceId, after, limit);
+            failed = false;
+            return result;
+        } finally {
+            getPageByResourceId.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Stream<AllocationRequestRecord> streamByResourceId(long resourceId) throws ManagedResourceNotFoundException {
+        if (!enabled) {
+            return delegate.streamByResourceId(resourceId);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Stream<AllocationRequestRecord> result = delegate.streamByResourceId(resourceId);
+            failed = false;
+            return result;
+        } finally {
+            streamByResourceId.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Optional<AllocationRequestRecord> getById(long id) {
+        if (!enabled) {
+            return delegate.getById(id);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Optional<AllocationRequestRecord> result = delegate.getById(id);
+            failed = false;
+            return result;
+        } finally {
+            getById.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getByIds(Collection<Long> ids) {
+        if (!enabled) {
+            return delegate.getByIds(ids);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<AllocationRequestRecord> result = delegate.getByIds(ids);
+            failed = false;
+            return result;
+        } finally {
+            getByIds.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getAfterId(long afterId, int limit) {
+        if (!enabled) {
+            return delegate.getAfterId(afterId, limit);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<AllocationRequestRecord> result = delegate.getAfterId(afterId, limit);
+            failed = false;
+            return result;
+        } finally {
+            getAfterId.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public long getLastId() {
+        if (!enabled) {
+            return delegate.getLastId();
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long result = delegate.getLastId();
+            failed = false;
+            return result;
+        } finally {
+            getLastId.record(System.nanoTime() - start, failed);
+        }
+    }
+}
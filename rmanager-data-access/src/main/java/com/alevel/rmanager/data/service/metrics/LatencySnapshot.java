@@ -0,0 +1,14 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import java.time.Duration;
+
+public record LatencySnapshot(
+        long count,
+        Duration mean,
+        Duration max,
+        Duration p50,
+        Duration p90,
+        Duration p99,
+        Duration p999
+) {
+}
@@ -0,0 +1,55 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+
+import java.util.Map;
+
+/**
+ * Pluggable destination of service metrics, e.g. {@link InMemoryMetricsRegistry} or a bridge to a monitoring system.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Instrumented services skip measuring altogether when this is {@code false}.
+     */
+    boolean enabled();
+
+    /**
+     * Returns the recorder of an operation, creating it on first use. Called once per operation
+     * when an instrumented service is created, never on the hot path.
+     */
+    OperationRecorder operation(String name);
+
+    MetricsSnapshot snapshot();
+
+    static MetricsRegistry disabled() {
+        return Disabled.INSTANCE;
+    }
+
+    enum Disabled implements MetricsRegistry, OperationRecorder {
+        INSTANCE;
+
+        @Override
+        public boolean enabled() {
+            return false;
+        }
+
+        @Override
+        public OperationRecorder operation(String name) {
+            return this;
+        }
+
+        @Override
+        public MetricsSnapshot snapshot() {
+            return new MetricsSnapshot(Map.of());
+        }
+
+        @Override
+        public void record(long latencyNanos, boolean failed) {
+        }
+
+        @Override
+        public void recordAllocation(AllocationResultRecord result, int units) {
+        }
+    }
+}
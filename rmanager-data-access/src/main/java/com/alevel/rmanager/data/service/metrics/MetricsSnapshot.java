@@ -0,0 +1,12 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import java.util.Map;
+
+public record MetricsSnapshot(
+        Map<String, OperationSnapshot> operations
+) {
+
+    public OperationSnapshot operation(String name) {
+        return operations.get(name);
+    }
+}
@@ -0,0 +1,59 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+
+import java.util.concurrent.atomic.LongAdder;
+
+final class OperationMetrics implements OperationRecorder {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder rejectedNotEnoughCapacity = new LongAdder();
+
+    private final LongAdder rejectedTotalCapacityExceeded = new LongAdder();
+
+    private final LongAdder rejectedOtherwise = new LongAdder();
+
+    @Override
+    public void record(long latencyNanos, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        latency.record(latencyNanos);
+    }
+
+    @Override
+    public void recordAllocation(AllocationResultRecord result, int units) {
+        if (result.status() == AllocationResult.Status.ACCEPTED) {
+            accepted.increment();
+        } else if (result.code() == AllocationResult.RejectionCode.TOTAL_CAPACITY_EXCEEDED) {
+            rejectedTotalCapacityExceeded.increment();
+        } else if (result.code() == AllocationResult.RejectionCode.NOT_ENOUGH_CAPACITY) {
+            rejectedNotEnoughCapacity.increment();
+        } else {
+            rejectedOtherwise.increment();
+        }
+    }
+
+    OperationSnapshot snapshot() {
+        long notEnoughCapacity = rejectedNotEnoughCapacity.sum();
+        long totalCapacityExceeded = rejectedTotalCapacityExceeded.sum();
+        return new OperationSnapshot(
+                calls.sum(),
+                errors.sum(),
+                accepted.sum(),
+                notEnoughCapacity + totalCapacityExceeded + rejectedOtherwise.sum(),
+                notEnoughCapacity,
+                totalCapacityExceeded,
+                latency.snapshot()
+        );
+    }
+}
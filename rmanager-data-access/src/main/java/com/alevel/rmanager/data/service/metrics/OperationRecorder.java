@@ -0,0 +1,15 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+
+/**
+ * Sink for measurements of a single operation. Implementations are called on the hot path
+ * from many threads, so they should be lock-free and must not allocate.
+ */
+public interface OperationRecorder {
+
+    void record(long latencyNanos, boolean failed);
+
+    void recordAllocation(AllocationResultRecord result, int units);
+
+}
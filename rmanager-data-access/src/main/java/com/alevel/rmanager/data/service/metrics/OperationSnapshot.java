@@ -0,0 +1,21 @@
+package com.alevel.rmanager.data.service.metrics;
+
+/**
+ * @param rejectedNotEnoughCapacity     allocations rejected because the resource had fewer units available than requested
+ * @param rejectedTotalCapacityExceeded releases rejected because they would raise capacity above the total
+ */
+public record OperationSnapshot(
+        long calls,
+        long errors,
+        long accepted,
+        long rejected,
+        long rejectedNotEnoughCapacity,
+        long rejectedTotalCapacityExceeded,
+        LatencySnapshot latency
+) {
+
+    public double acceptRatio() {
+        long decided = accepted + rejected;
+        return decided == 0 ? 0 : (double) accepted / decided;
+    }
+}
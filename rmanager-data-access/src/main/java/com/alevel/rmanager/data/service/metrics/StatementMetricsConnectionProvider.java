@@ -0,0 +1,178 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import com.zaxxer.hikari.hibernate.HikariConnectionProvider;
+import org.hibernate.HibernateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Hikari connection provider that counts and times every SQL statement sent to the database.
+ * A JDBC batch counts as one statement, as it is one round trip. Sequence calls are counted on their own too,
+ * since pooled sequences make them depend on how many ids were handed out before rather than on the call.
+ * <p>
+ * Every statement is logged at debug level with its latency. Statements slower than
+ * {@value #SLOW_STATEMENT_THRESHOLD} milliseconds, 100 by default, are logged as warnings to the
+ * {@code com.alevel.rmanager.data.service.metrics.StatementMetricsConnectionProvider.slow} logger,
+ * so the slow statement log can be routed on its own.
+ * <p>
+ * Enabled with {@code hibernate.connection.provider_class}; the instance is reachable through the service registry:
+ * {@code getService(ConnectionProvider.class).unwrap(StatementMetricsConnectionProvider.class)}.
+ */
+public class StatementMetricsConnectionProvider extends HikariConnectionProvider {
+
+    public static final String SLOW_STATEMENT_THRESHOLD = "rmanager.jdbc.slow_statement_threshold_ms";
+
+    private static final Logger log = LoggerFactory.getLogger(StatementMetricsConnectionProvider.class);
+
+    private static final Logger slowLog = LoggerFactory.getLogger(StatementMetricsConnectionProvider.class.getName() + ".slow");
+
+    private static final long DEFAULT_SLOW_THRESHOLD_MS = 100;
+
+    private static final Pattern SEQUENCE_CALL = Pattern.compile("next\\s+value\\s+for|nextval", Pattern.CASE_INSENSITIVE);
+
+    private final LongAdder statements = new LongAdder();
+
+    private final LongAdder sequenceCalls = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_THRESHOLD_MS);
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void configure(Map props) throws HibernateException {
+        super.configure(props);
+        Object threshold = props.get(SLOW_STATEMENT_THRESHOLD);
+        if (threshold != null) {
+            slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(threshold.toString().trim()));
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        return proxy(Connection.class, new ConnectionHandler(connection));
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return unwrapType.isInstance(this) || super.isUnwrappableAs(unwrapType);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> unwrapType) {
+        return unwrapType.isInstance(this) ? unwrapType.cast(this) : super.unwrap(unwrapType);
+    }
+
+    /**
+     * Number of statements executed through connections of this provider since it was started.
+     */
+    public long statements() {
+        return statements.sum();
+    }
+
+    /**
+     * Number of statements fetching sequence values, included in {@link #statements()}.
+     */
+    public long sequenceCalls() {
+        return sequenceCalls.sum();
+    }
+
+    public LatencySnapshot latency() {
+        return latency.snapshot();
+    }
+
+    private void record(String sql, long nanos) {
+        statements.increment();
+        if (sql != null && SEQUENCE_CALL.matcher(sql).find()) {
+            sequenceCalls.increment();
+        }
+        latency.record(nanos);
+        if (nanos >= slowThresholdNanos) {
+            slowLog.warn("Slow statement took {} ms: {}", TimeUnit.NANOSECONDS.toMillis(nanos), sql);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Statement took {} us: {}", TimeUnit.NANOSECONDS.toMicros(nanos), sql);
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(StatementMetricsConnectionProvider.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = StatementMetricsConnectionProvider.invoke(connection, method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> proxy(Statement.class, new StatementHandler((Statement) result, (Connection) proxy, null));
+                case "prepareStatement" -> proxy(PreparedStatement.class, new StatementHandler((Statement) result, (Connection) proxy, (String) args[0]));
+                case "prepareCall" -> proxy(CallableStatement.class, new StatementHandler((Statement) result, (Connection) proxy, (String) args[0]));
+                default -> result;
+            };
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+
+        private final Connection connection;
+
+        private final String sql;
+
+        private StatementHandler(Statement statement, Connection connection, String sql) {
+            this.statement = statement;
+            this.connection = connection;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection")) {
+                return connection;
+            }
+            if (!name.startsWith("execute")) {
+                return StatementMetricsConnectionProvider.invoke(statement, method, args);
+            }
+
+            long start = System.nanoTime();
+            try {
+                return StatementMetricsConnectionProvider.invoke(statement, method, args);
+            } finally {
+                String text = args != null && args.length > 0 && args[0] instanceof String executed ? executed : sql;
+                record(name.endsWith("Batch") ? "batch: " + text : text, System.nanoTime() - start);
+            }
+        }
+    }
+}
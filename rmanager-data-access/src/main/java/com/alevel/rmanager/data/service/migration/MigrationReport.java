@@ -0,0 +1,17 @@
+package com.alevel.rmanager.data.service.migration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @param applied   scripts run by the migration, in the order they ran
+ * @param baselined whether an existing schema was recorded as version 1 without running it
+ * @param upToDate  number of scripts that did not need to run
+ */
+public record MigrationReport(
+        List<String> applied,
+        boolean baselined,
+        int upToDate,
+        Duration elapsed
+) {
+}
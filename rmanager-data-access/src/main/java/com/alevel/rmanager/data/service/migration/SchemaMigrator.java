@@ -0,0 +1,276 @@
+package com.alevel.rmanager.data.service.migration;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Applies SQL scripts from a classpath location, named as Flyway names them: {@code V<version>__<description>.sql}
+ * scripts run once in version order, then {@code R__<description>.sql} scripts run again whenever they change.
+ * Applied scripts and their checksums are recorded in {@code schema_history}; a versioned script changed
+ * after it was applied fails the migration.
+ * <p>
+ * A database whose schema was created from the entity mappings, with {@code managed_resources} present
+ * but no history, is baselined: version 1, the schema of the first mappings, is recorded as applied without
+ * running it. Later versions then run as usual, so they are written to also apply to schemas created from
+ * later mappings.
+ * Statements are separated by a semicolon at the end of a line. Each script runs in its own transaction,
+ * which databases that commit DDL implicitly only partly honour, so a failed script may need manual cleanup.
+ */
+public class SchemaMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    public static final String DEFAULT_LOCATION = "db/migration";
+
+    private static final Pattern VERSIONED = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final Pattern REPEATABLE = Pattern.compile("R__(\\w+)\\.sql");
+
+    private static final Pattern STATEMENT_END = Pattern.compile(";\\s*$", Pattern.MULTILINE);
+
+    private static final int BASELINE_VERSION = 1;
+
+    private final String location;
+
+    private final ClassLoader classLoader;
+
+    public SchemaMigrator() {
+        this(DEFAULT_LOCATION, SchemaMigrator.class.getClassLoader());
+    }
+
+    public SchemaMigrator(String location, ClassLoader classLoader) {
+        this.location = location;
+        this.classLoader = Objects.requireNonNull(classLoader);
+    }
+
+    /**
+     * Brings the schema reachable through {@code connection} up to date. Auto-commit is restored afterwards.
+     */
+    public MigrationReport migrate(Connection connection) throws RManagerDataLayerException {
+        long start = System.nanoTime();
+        try {
+            List<Script> scripts = scan();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                Map<String, Integer> history = loadHistory(connection);
+
+                var applied = new ArrayList<String>();
+                boolean baselined = false;
+                for (Script script : scripts) {
+                    Integer checksum = history.get(script.name());
+                    if (script.version() != null) {
+                        if (checksum == null) {
+                            if (script.version() == BASELINE_VERSION && history.isEmpty() && tableExists(connection, "managed_resources")) {
+                                record(connection, script, true);
+                                baselined = true;
+                                log.info("Baselined existing schema at {}", script.name());
+                                continue;
+                            }
+                            apply(connection, script);
+                            applied.add(script.name());
+                        } else if (checksum != script.checksum()) {
+                            throw new IllegalStateException("Migration " + script.name() + " was changed after it was applied");
+                        }
+                    } else if (checksum == null || checksum != script.checksum()) {
+                        apply(connection, script);
+                        applied.add(script.name());
+                    }
+                }
+
+                var report = new MigrationReport(List.copyOf(applied), baselined, scripts.size() - applied.size(),
+                        Duration.ofNanos(System.nanoTime() - start));
+                log.info("Applied {} schema migrations, {} were up to date", applied.size(), report.upToDate());
+                return report;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            log.error("Schema migration failed", e);
+            throw new RManagerDataLayerException(e);
+        }
+    }
+
+    private Map<String, Integer> loadHistory(Connection connection) throws SQLException {
+        if (!tableExists(connection, "schema_history")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("""
+                        create table schema_history (
+                            script varchar(255) not null,
+                            version integer,
+                            checksum integer not null,
+                            baseline boolean not null,
+                            installed_on timestamp not null,
+                            constraint schema_history_pkey primary key (script)
+                        )""");
+            }
+            connection.commit();
+        }
+
+        Map<String, Integer> history = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("select script, checksum from schema_history")) {
+            while (rows.next()) {
+                history.put(rows.getString(1), rows.getInt(2));
+            }
+        }
+        connection.commit();
+        return history;
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : List.of(table, table.toUpperCase())) {
+            try (ResultSet tables = metaData.getTables(null, null, name, new String[]{"TABLE"})) {
+                if (tables.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void apply(Connection connection, Script script) throws SQLException {
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : script.statements()) {
+                statement.execute(sql);
+            }
+            record(connection, script, false);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration " + script.name() + " failed: " + e.getMessage(), e);
+        }
+        log.info("Applied schema migration {} in {} ms", script.name(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void record(Connection connection, Script script, boolean baseline) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("delete from schema_history where script = ?");
+             PreparedStatement insert = connection.prepareStatement("""
+                     insert into schema_history (script, version, checksum, baseline, installed_on)
+                     values (?, ?, ?, ?, ?)
+                     """)) {
+            delete.setString(1, script.name());
+            delete.executeUpdate();
+            insert.setString(1, script.name());
+            insert.setObject(2, script.version());
+            insert.setInt(3, script.checksum());
+            insert.setBoolean(4, baseline);
+            insert.setTimestamp(5, Timestamp.from(Instant.now()));
+            insert.executeUpdate();
+        }
+        connection.commit();
+    }
+
+    /**
+     * Lists scripts of the location, in a directory or a jar, versioned ones first in version order.
+     */
+    private List<Script> scan() throws IOException {
+        var scripts = new ArrayList<Script>();
+        for (URL url : Collections.list(classLoader.getResources(location))) {
+            for (String name : list(url)) {
+                Matcher versioned = VERSIONED.matcher(name);
+                Integer version = versioned.matches() ? Integer.valueOf(versioned.group(1)) : null;
+                if (version == null && !REPEATABLE.matcher(name).matches()) {
+                    continue;
+                }
+                try (InputStream in = classLoader.getResourceAsStream(location + "/" + name)) {
+                    if (in == null) {
+                        throw new IOException("Migration " + name + " is not readable");
+                    }
+                    scripts.add(Script.of(name, version, new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+                }
+            }
+        }
+        scripts.sort(Comparator
+                .comparing((Script script) -> script.version() == null)
+                .thenComparing(script -> script.version() == null ? 0 : script.version())
+                .thenComparing(Script::name));
+        for (int i = 1; i < scripts.size(); i++) {
+            Integer version = scripts.get(i).version();
+            if (version != null && version.equals(scripts.get(i - 1).version())) {
+                throw new IOException("Migrations " + scripts.get(i - 1).name() + " and " + scripts.get(i).name() + " share a version");
+            }
+        }
+        return scripts;
+    }
+
+    private List<String> list(URL url) throws IOException {
+        if ("jar".equals(url.getProtocol())) {
+            var connection = (JarURLConnection) url.openConnection();
+            connection.setUseCaches(false);
+            String prefix = connection.getEntryName() + "/";
+            var names = new ArrayList<String>();
+            try (JarFile jar = connection.getJarFile()) {
+                for (JarEntry entry : Collections.list(jar.entries())) {
+                    String name = entry.getName();
+                    if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0 && !entry.isDirectory()) {
+                        names.add(name.substring(prefix.length()));
+                    }
+                }
+            }
+            return names;
+        }
+        try (Stream<Path> files = Files.list(Path.of(url.toURI()))) {
+            return files.map(path -> path.getFileName().toString()).toList();
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record Script(String name, Integer version, List<String> statements, int checksum) {
+
+        static Script of(String name, Integer version, String text) {
+            var crc = new CRC32();
+            crc.update(text.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+
+            var statements = new ArrayList<String>();
+            for (String statement : STATEMENT_END.split(text)) {
+                String sql = statement.lines()
+                        .filter(line -> !line.strip().startsWith("--"))
+                        .reduce((first, second) -> first + "\n" + second)
+                        .orElse("")
+                        .strip();
+                if (!sql.isEmpty()) {
+                    statements.add(sql);
+                }
+            }
+            return new Script(name, version, List.copyOf(statements), (int) crc.getValue());
+        }
+    }
+}
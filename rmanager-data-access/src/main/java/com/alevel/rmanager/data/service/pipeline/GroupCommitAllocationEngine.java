@@ -0,0 +1,240 @@
+package com.alevel.rmanager.data.service.pipeline;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataAccessException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent allocations into batches applied by {@link ManagedResourceService#allocateAll(List)}.
+ * <p>
+ * Callers {@link #submit(long, int)} allocations and get a future back. A single committer thread takes
+ * whatever is queued, waiting up to {@code maxLinger} for up to {@code maxBatchSize} allocations,
+ * and applies them in one call, so all pending allocations of a resource share one transaction.
+ * Allocations are evaluated in the order they were submitted, each against the capacity left by the previous ones.
+ * An allocation of a missing resource fails on its own; the rest of its batch is retried without it.
+ */
+public class GroupCommitAllocationEngine implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitAllocationEngine.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final ManagedResourceService delegate;
+
+    private final int maxBatchSize;
+
+    private final Duration maxLinger;
+
+    private final BlockingQueue<PendingAllocation> queue;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder failedRequests = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private volatile boolean running;
+
+    private volatile long startedAt;
+
+    private Thread committer;
+
+    /**
+     * @param delegate      service applying batches; only the committer thread calls it
+     * @param maxBatchSize  maximal number of allocations applied in one transaction
+     * @param maxLinger     how long the committer waits for a batch to fill up
+     * @param queueCapacity maximal number of allocations waiting for the committer
+     */
+    public GroupCommitAllocationEngine(ManagedResourceService delegate, int maxBatchSize, Duration maxLinger, int queueCapacity) {
+        if (maxBatchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Batch size and queue capacity should be positive");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLinger = Objects.requireNonNull(maxLinger);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            throw new IllegalStateException("Engine is already running");
+        }
+        running = true;
+        startedAt = System.nanoTime();
+        committer = new Thread(this::runCommitter, "rmanager-group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * @return future completed with the allocation result, or exceptionally with
+     * {@link ManagedResourceNotFoundException}, {@link com.alevel.rmanager.data.exception.RManagerDataLayerException}
+     * or {@link RejectedExecutionException} if the queue is full
+     */
+    public CompletableFuture<AllocationResultRecord> submit(long resourceId, int units) {
+        if (units == 0) {
+            throw new IllegalArgumentException("Can't allocate zero units of a resource");
+        }
+        if (!running) {
+            throw new IllegalStateException("Engine is not running");
+        }
+        var pending = new PendingAllocation(new AllocationCommand(resourceId, units), System.nanoTime(), new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            pending.result().completeExceptionally(new RejectedExecutionException("Too many pending allocations"));
+        } else if (!running && queue.remove(pending)) {
+            // close() may have drained the queue between the check above and the offer;
+            // if the allocation is still queued nobody else will complete it
+            pending.result().completeExceptionally(new RejectedExecutionException("Engine is closed"));
+        }
+        return pending.result();
+    }
+
+    public GroupCommitStats stats() {
+        long completed = requests.sum();
+        long elapsed = startedAt == 0 ? 0 : System.nanoTime() - startedAt;
+        return new GroupCommitStats(
+                completed,
+                failedRequests.sum(),
+                batches.sum(),
+                Duration.ofNanos(completed == 0 ? 0 : totalLatencyNanos.sum() / completed),
+                Duration.ofNanos(maxLatencyNanos.get()),
+                Duration.ofNanos(elapsed)
+        );
+    }
+
+    /**
+     * Stops accepting allocations and waits for the queued ones to be applied.
+     */
+    @Override
+    public synchronized void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        committer.join();
+
+        var leftover = new ArrayList<PendingAllocation>();
+        queue.drainTo(leftover);
+        failAll(leftover, new RejectedExecutionException("Engine is closed"));
+    }
+
+    private void runCommitter() {
+        var batch = new ArrayList<PendingAllocation>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAllocation first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failAll(batch, e);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Group commit failed", e);
+                failAll(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void fillBatch(List<PendingAllocation> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxLinger.toNanos();
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingAllocation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<PendingAllocation> batch) {
+        List<PendingAllocation> remaining = new ArrayList<>(batch);
+        while (!remaining.isEmpty()) {
+            batches.increment();
+            List<AllocationCommand> commands = remaining.stream().map(PendingAllocation::command).toList();
+            try {
+                List<AllocationResultRecord> results = delegate.allocateAll(commands);
+                for (int i = 0; i < remaining.size(); i++) {
+                    complete(remaining.get(i), results.get(i), null);
+                }
+                return;
+            } catch (ManagedResourceNotFoundException e) {
+                Long missing = e.getId();
+                if (missing == null) {
+                    failAll(remaining, e);
+                    return;
+                }
+                var found = new ArrayList<PendingAllocation>(remaining.size());
+                for (PendingAllocation pending : remaining) {
+                    if (pending.command().resourceId() == missing) {
+                        complete(pending, null, new ManagedResourceNotFoundException(missing));
+                    } else {
+                        found.add(pending);
+                    }
+                }
+                remaining = found;
+            } catch (RManagerDataAccessException e) {
+                failAll(remaining, e);
+                return;
+            }
+        }
+    }
+
+    private void failAll(List<PendingAllocation> batch, Throwable error) {
+        for (PendingAllocation pending : batch) {
+            complete(pending, null, error);
+        }
+    }
+
+    private void complete(PendingAllocation pending, AllocationResultRecord result, Throwable error) {
+        if (pending.result().isDone()) {
+            return;
+        }
+        long latency = System.nanoTime() - pending.submittedAt();
+        requests.increment();
+        totalLatencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        if (error == null) {
+            pending.result().complete(result);
+        } else {
+            failedRequests.increment();
+            pending.result().completeExceptionally(error);
+        }
+    }
+
+    private record PendingAllocation(AllocationCommand command, long submittedAt, CompletableFuture<AllocationResultRecord> result) {
+    }
+}
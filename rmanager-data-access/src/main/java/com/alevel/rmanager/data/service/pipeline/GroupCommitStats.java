@@ -0,0 +1,30 @@
+package com.alevel.rmanager.data.service.pipeline;
+
+import java.time.Duration;
+
+/**
+ * @param requests        allocations completed, successfully or not
+ * @param failedRequests  allocations completed exceptionally
+ * @param batches         transactions attempted by the committer
+ * @param meanLatency     mean time from submission to completion
+ * @param maxLatency      longest time from submission to completion
+ * @param elapsed         time since the engine was started
+ */
+public record GroupCommitStats(
+        long requests,
+        long failedRequests,
+        long batches,
+        Duration meanLatency,
+        Duration maxLatency,
+        Duration elapsed
+) {
+
+    public double averageBatchSize() {
+        return batches == 0 ? 0 : (double) requests / batches;
+    }
+
+    public double throughputPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : requests * 1e9 / nanos;
+    }
+}
@@ -0,0 +1,136 @@
+package com.alevel.rmanager.data.service.replica;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.PersistenceException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Decides whether a read may go to the replica, shared by the routing services of one primary and replica pair.
+ * <p>
+ * Reads go to the primary:
+ * <ul>
+ *     <li>inside {@link #readFromPrimary(Read)}, the per-call read-your-writes override;</li>
+ *     <li>for a resource written through a routing service less than {@code replicationLag} ago;</li>
+ *     <li>for {@code retryInterval} after a replica read failed, after which the replica is tried again.</li>
+ * </ul>
+ */
+public class ReplicaRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    private static final int PURGE_THRESHOLD = 1024;
+
+    @FunctionalInterface
+    public interface Read<T, E extends Exception> {
+        T read() throws E;
+    }
+
+    private final long replicationLagNanos;
+
+    private final long retryIntervalNanos;
+
+    private final Map<Long, Long> recentWrites = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Integer> primaryReads = ThreadLocal.withInitial(() -> 0);
+
+    private volatile long downUntil;
+
+    private volatile boolean down;
+
+    public ReplicaRouter(Duration replicationLag, Duration retryInterval) {
+        this.replicationLagNanos = replicationLag.toNanos();
+        this.retryIntervalNanos = retryInterval.toNanos();
+    }
+
+    /**
+     * Runs {@code read} with all reads of the current thread going to the primary.
+     */
+    public <T, E extends Exception> T readFromPrimary(Read<T, E> read) throws E {
+        primaryReads.set(primaryReads.get() + 1);
+        try {
+            return read.read();
+        } finally {
+            int depth = primaryReads.get() - 1;
+            if (depth == 0) {
+                primaryReads.remove();
+            } else {
+                primaryReads.set(depth);
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} while reads fall back to the primary after a replica failure
+     */
+    public boolean isReplicaAvailable() {
+        return !down || System.nanoTime() - downUntil >= 0;
+    }
+
+    boolean useReplica() {
+        return primaryReads.get() == 0 && isReplicaAvailable();
+    }
+
+    boolean useReplica(long resourceId) {
+        if (!useReplica()) {
+            return false;
+        }
+        Long writtenUntil = recentWrites.get(resourceId);
+        if (writtenUntil == null) {
+            return true;
+        }
+        if (System.nanoTime() - writtenUntil < 0) {
+            return false;
+        }
+        recentWrites.remove(resourceId, writtenUntil);
+        return true;
+    }
+
+    void wrote(long resourceId) {
+        long now = System.nanoTime();
+        recentWrites.put(resourceId, now + replicationLagNanos);
+        if (recentWrites.size() > PURGE_THRESHOLD) {
+            recentWrites.values().removeIf(until -> now - until >= 0);
+        }
+    }
+
+    /**
+     * Reads from the replica if allowed and falls back to the primary if the replica fails,
+     * or if it {@code missed} what may not have been replicated yet.
+     */
+    <T, E extends Exception> T read(boolean replicaAllowed, Read<T, E> fromReplica, Predicate<T> missed, Read<T, E> fromPrimary) throws E {
+        if (replicaAllowed) {
+            T result;
+            try {
+                result = fromReplica.read();
+            } catch (PersistenceException e) {
+                replicaFailed(e);
+                return fromPrimary.read();
+            }
+            replicaSucceeded();
+            if (!missed.test(result)) {
+                return result;
+            }
+        }
+        return fromPrimary.read();
+    }
+
+    private void replicaFailed(PersistenceException e) {
+        downUntil = System.nanoTime() + retryIntervalNanos;
+        if (!down) {
+            down = true;
+            log.warn("Replica read failed, reading from the primary for {} ms", retryIntervalNanos / 1_000_000, e);
+        }
+    }
+
+    private void replicaSucceeded() {
+        if (down) {
+            down = false;
+            log.info("Replica is back, reading from it again");
+        }
+    }
+}
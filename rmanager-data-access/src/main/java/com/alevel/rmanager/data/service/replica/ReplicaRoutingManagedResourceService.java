@@ -0,0 +1,125 @@
+package com.alevel.rmanager.data.service.replica;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Sends writes to {@code primary} and reads to {@code replica}, which may lag behind, as {@link ReplicaRouter} decides.
+ * Resources the replica does not have are looked up on the primary, as they may have just been created.
+ */
+public class ReplicaRoutingManagedResourceService implements ManagedResourceService {
+
+    private final ManagedResourceService primary;
+
+    private final ManagedResourceService replica;
+
+    private final ReplicaRouter router;
+
+    public ReplicaRoutingManagedResourceService(ManagedResourceService primary, ManagedResourceService replica, ReplicaRouter router) {
+        this.primary = primary;
+        this.replica = replica;
+        this.router = router;
+    }
+
+    @Override
+    public Optional<ManagedResourceRecord> getById(long id) {
+        return router.read(router.useReplica(id), () -> replica.getById(id), Optional::isEmpty, () -> primary.getById(id));
+    }
+
+    @Override
+    public List<ManagedResourceRecord> getByIds(Collection<Long> ids) {
+        if (!router.useReplica()) {
+            return primary.getByIds(ids);
+        }
+
+        var distinct = new LinkedHashSet<>(ids);
+        List<Long> fromReplica = distinct.stream().filter(router::useReplica).toList();
+        Map<Long, ManagedResourceRecord> found = new HashMap<>();
+        List<ManagedResourceRecord> replicated = router.read(!fromReplica.isEmpty(),
+                () -> replica.getByIds(fromReplica), resources -> false, List::of);
+        for (ManagedResourceRecord resource : replicated) {
+            found.put(resource.id(), resource);
+        }
+
+        List<Long> missing = distinct.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (ManagedResourceRecord resource : primary.getByIds(missing)) {
+                found.put(resource.id(), resource);
+            }
+        }
+
+        var resources = new ArrayList<ManagedResourceRecord>(found.size());
+        for (Long id : distinct) {
+            ManagedResourceRecord resource = found.get(id);
+            if (resource != null) {
+                resources.add(resource);
+            }
+        }
+        return resources;
+    }
+
+    @Override
+    public ManagedResourceRecord save(SaveManagedResourceRequest managedResource) throws RManagerDataLayerException {
+        ManagedResourceRecord saved = primary.save(managedResource);
+        router.wrote(saved.id());
+        return saved;
+    }
+
+    @Override
+    public BulkImportResult saveAll(Stream<SaveManagedResourceRequest> managedResources) throws RManagerDataLayerException {
+        return primary.saveAll(managedResources);
+    }
+
+    @Override
+    public void update(long id, SaveManagedResourceRequest managedResource) throws RManagerDataLayerException, ManagedResourceNotFoundException {
+        try {
+            primary.update(id, managedResource);
+        } finally {
+            router.wrote(id);
+        }
+    }
+
+    @Override
+    public void delete(long id) throws ManagedResourceNotFoundException {
+        try {
+            primary.delete(id);
+        } finally {
+            router.wrote(id);
+        }
+    }
+
+    @Override
+    public AllocationResultRecord allocate(long id, int units) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        try {
+            return primary.allocate(id, units);
+        } finally {
+            router.wrote(id);
+        }
+    }
+
+    @Override
+    public List<AllocationResultRecord> allocateAll(List<AllocationCommand> commands) throws ManagedResourceNotFoundException, RManagerDataLayerException {
+        try {
+            return primary.allocateAll(commands);
+        } finally {
+            for (AllocationCommand command : commands) {
+                router.wrote(command.resourceId());
+            }
+        }
+    }
+}
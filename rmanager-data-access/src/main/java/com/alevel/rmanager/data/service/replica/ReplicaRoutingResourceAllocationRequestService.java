@@ -0,0 +1,117 @@
+package com.alevel.rmanager.data.service.replica;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.service.ResourceAllocationRequestService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Reads allocation requests from {@code replica}, or from {@code primary} as {@link ReplicaRouter} decides.
+ * History of a resource allocated through a {@link ReplicaRoutingManagedResourceService} sharing the router
+ * is read from the primary until the replication lag passes. Requests and resources the replica
+ * does not have are looked up on the primary.
+ */
+public class ReplicaRoutingResourceAllocationRequestService implements ResourceAllocationRequestService {
+
+    private final ResourceAllocationRequestService primary;
+
+    private final ResourceAllocationRequestService replica;
+
+    private final ReplicaRouter router;
+
+    public ReplicaRoutingResourceAllocationRequestService(ResourceAllocationRequestService primary,
+                                                          ResourceAllocationRequestService replica,
+                                                          ReplicaRouter router) {
+        this.primary = primary;
+        this.replica = replica;
+        this.router = router;
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getByResourceId(long resourceId) throws ManagedResourceNotFoundException {
+        return router.read(router.useReplica(resourceId), () -> {
+            try {
+                return replica.getByResourceId(resourceId);
+            } catch (ManagedResourceNotFoundException e) {
+                return null;
+            }
+        }, Objects::isNull, () -> primary.getByResourceId(resourceId));
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getByResourceId(long resourceId, AllocationHistoryCursor after, int limit) throws ManagedResourceNotFoundException {
+        return router.read(router.useReplica(resourceId), () -> {
+            try {
+                return replica.getByResourceId(resourceId, after, limit);
+            } catch (ManagedResourceNotFoundException e) {
+                return null;
+            }
+        }, Objects::isNull, () -> primary.getByResourceId(resourceId, after, limit));
+    }
+
+    /**
+     * The stream is opened on the replica, so a replica failing while the stream is consumed is not retried on the primary.
+     */
+    @Override
+    public Stream<AllocationRequestRecord> streamByResourceId(long resourceId) throws ManagedResourceNotFoundException {
+        return router.read(router.useReplica(resourceId), () -> {
+            try {
+                return replica.streamByResourceId(resourceId);
+            } catch (ManagedResourceNotFoundException e) {
+                return null;
+            }
+        }, Objects::isNull, () -> primary.streamByResourceId(resourceId));
+    }
+
+    @Override
+    public Optional<AllocationRequestRecord> getById(long id) {
+        return router.read(router.useReplica(), () -> replica.getById(id), Optional::isEmpty, () -> primary.getById(id));
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getByIds(Collection<Long> ids) {
+        var distinct = new LinkedHashSet<>(ids);
+        Map<Long, AllocationRequestRecord> found = new HashMap<>();
+        List<AllocationRequestRecord> replicated = router.read(router.useReplica(),
+                () -> replica.getByIds(distinct), requests -> false, List::of);
+        for (AllocationRequestRecord request : replicated) {
+            found.put(request.id(), request);
+        }
+
+        List<Long> missing = distinct.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (AllocationRequestRecord request : primary.getByIds(missing)) {
+                found.put(request.id(), request);
+            }
+        }
+
+        var requests = new ArrayList<AllocationRequestRecord>(found.size());
+        for (Long id : distinct) {
+            AllocationRequestRecord request = found.get(id);
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    @Override
+    public List<AllocationRequestRecord> getAfterId(long afterId, int limit) {
+        return router.read(router.useReplica(), () -> replica.getAfterId(afterId, limit), page -> false, () -> primary.getAfterId(afterId, limit));
+    }
+
+    @Override
+    public long getLastId() {
+        return router.read(router.useReplica(), replica::getLastId, lastId -> false, primary::getLastId);
+    }
+}
@@ -0,0 +1,84 @@
+package com.alevel.rmanager.data.service.retention;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.service.AllocationHistoryRetentionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a {@link RetentionPolicy} periodically on a single background thread,
+ * so at most one compaction runs at a time.
+ */
+public class RetentionJob implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionJob.class);
+
+    private final AllocationHistoryRetentionService retentionService;
+
+    private final RetentionPolicy policy;
+
+    private final Duration interval;
+
+    private final Clock clock;
+
+    private ScheduledExecutorService scheduler;
+
+    public RetentionJob(AllocationHistoryRetentionService retentionService, RetentionPolicy policy, Duration interval, Clock clock) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Interval should be positive");
+        }
+        this.retentionService = retentionService;
+        this.policy = Objects.requireNonNull(policy);
+        this.interval = interval;
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("Retention job is already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "rmanager-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runScheduled, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compacts everything the policy no longer keeps raw as of now.
+     */
+    public RetentionReport runOnce() throws RManagerDataLayerException {
+        return retentionService.compactBefore(policy.cutoff(clock.instant()));
+    }
+
+    private void runScheduled() {
+        try {
+            runOnce();
+        } catch (RManagerDataLayerException | RuntimeException e) {
+            log.error("Allocation history compaction failed, retrying in {}", interval, e);
+        }
+    }
+
+    /**
+     * Cancels further runs and waits for a running compaction to finish its current chunks.
+     */
+    @Override
+    public synchronized void close() throws InterruptedException {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Allocation history compaction did not stop in time");
+        }
+        scheduler = null;
+    }
+}
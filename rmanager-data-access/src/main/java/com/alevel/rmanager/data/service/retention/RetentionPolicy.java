@@ -0,0 +1,45 @@
+package com.alevel.rmanager.data.service.retention;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * @param keepRaw      how long allocation requests are kept as they are
+ * @param rollupPeriod length of the periods older requests are summarized by, aligned to the epoch
+ * @param chunkSize    maximal number of requests folded and deleted in one transaction
+ */
+public record RetentionPolicy(
+        Duration keepRaw,
+        Duration rollupPeriod,
+        int chunkSize
+) {
+
+    public RetentionPolicy {
+        Objects.requireNonNull(keepRaw);
+        Objects.requireNonNull(rollupPeriod);
+        if (keepRaw.isNegative() || rollupPeriod.getSeconds() < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Retention period should not be negative, rollup period and chunk size should be positive");
+        }
+    }
+
+    public static RetentionPolicy keepDays(int days) {
+        return new RetentionPolicy(Duration.ofDays(days), Duration.ofDays(1), 500);
+    }
+
+    /**
+     * Start of the rollup period containing {@code instant}.
+     */
+    public Instant periodStart(Instant instant) {
+        long periodSeconds = rollupPeriod.getSeconds();
+        return Instant.ofEpochSecond(Math.floorDiv(instant.getEpochSecond(), periodSeconds) * periodSeconds);
+    }
+
+    /**
+     * Requests issued before the returned instant are due for compaction. It is aligned to a period boundary,
+     * so a period is always rolled up whole.
+     */
+    public Instant cutoff(Instant now) {
+        return periodStart(now.minus(keepRaw));
+    }
+}
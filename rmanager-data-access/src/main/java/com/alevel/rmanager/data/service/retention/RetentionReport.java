@@ -0,0 +1,18 @@
+package com.alevel.rmanager.data.service.retention;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * @param compactedRequests number of raw requests folded into rollups and deleted
+ * @param rollups           number of rollup rows created or updated
+ * @param chunks            number of transactions the work was split into
+ */
+public record RetentionReport(
+        Instant cutoff,
+        long compactedRequests,
+        long rollups,
+        int chunks,
+        Duration elapsed
+) {
+}
@@ -0,0 +1,107 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+final class BinarySnapshotReader implements SnapshotReader {
+
+    private static final AllocationResult.Status[] STATUSES = AllocationResult.Status.values();
+
+    private final ChannelInput input;
+
+    private boolean started;
+
+    private boolean grouped;
+
+    private boolean finished;
+
+    BinarySnapshotReader(ReadableByteChannel channel) {
+        this.input = new ChannelInput(channel);
+    }
+
+    @Override
+    public boolean readNext(SnapshotHandler handler) throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!started) {
+            int magic = input.getInt();
+            if (magic != BinarySnapshotWriter.MAGIC && magic != BinarySnapshotWriter.MAGIC_V1) {
+                throw new IOException("Not a binary snapshot");
+            }
+            grouped = magic == BinarySnapshotWriter.MAGIC;
+            started = true;
+        }
+
+        byte type = input.get();
+        switch (type) {
+            case BinarySnapshotWriter.END -> {
+                finished = true;
+                return false;
+            }
+            case BinarySnapshotWriter.RESOURCE -> handler.resource(new ManagedResourceRecord(
+                    input.getVarLong(),
+                    getString(),
+                    getString(),
+                    getInt(),
+                    getInt()
+            ));
+            case BinarySnapshotWriter.ALLOCATION_REQUEST -> handler.allocationRequest(new AllocationRequestRecord(
+                    input.getVarLong(),
+                    input.getVarLong(),
+                    getInt(),
+                    getInt(),
+                    Instant.ofEpochSecond(input.getVarLong(), getInt()),
+                    getStatus(),
+                    getString(),
+                    getGroupId()
+            ));
+            default -> throw new IOException("Unknown row type " + type);
+        }
+        return true;
+    }
+
+    @Override
+    public long bytesRead() {
+        return input.bytesRead();
+    }
+
+    private int getInt() throws IOException {
+        return Math.toIntExact(input.getVarLong());
+    }
+
+    private Long getGroupId() throws IOException {
+        if (!grouped) {
+            return null;
+        }
+        return switch (input.get()) {
+            case 0 -> null;
+            case 1 -> input.getVarLong();
+            default -> throw new IOException("Malformed group id");
+        };
+    }
+
+    private AllocationResult.Status getStatus() throws IOException {
+        byte ordinal = input.get();
+        if (ordinal < 0 || ordinal >= STATUSES.length) {
+            throw new IOException("Unknown allocation status " + ordinal);
+        }
+        return STATUSES[ordinal];
+    }
+
+    private String getString() throws IOException {
+        int length = getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+final class BinarySnapshotWriter implements SnapshotWriter {
+
+    static final int MAGIC = 0x524D5332;
+
+    /**
+     * Header of snapshots written before allocation requests carried their group id.
+     */
+    static final int MAGIC_V1 = 0x524D5331;
+
+    static final byte END = 0;
+
+    static final byte RESOURCE = 1;
+
+    static final byte ALLOCATION_REQUEST = 2;
+
+    private final ChannelOutput output;
+
+    private boolean started;
+
+    BinarySnapshotWriter(WritableByteChannel channel) {
+        this.output = new ChannelOutput(channel);
+    }
+
+    @Override
+    public void writeResource(ManagedResourceRecord resource) throws IOException {
+        start();
+        output.put(RESOURCE);
+        output.putVarLong(resource.id());
+        putString(resource.name());
+        putString(resource.description());
+        output.putVarLong(resource.capacity());
+        output.putVarLong(resource.totalCapacity());
+    }
+
+    @Override
+    public void writeAllocationRequest(AllocationRequestRecord allocationRequest) throws IOException {
+        start();
+        output.put(ALLOCATION_REQUEST);
+        output.putVarLong(allocationRequest.id());
+        output.putVarLong(allocationRequest.resourceId());
+        output.putVarLong(allocationRequest.capacity());
+        output.putVarLong(allocationRequest.previousResourceCapacity());
+        output.putVarLong(allocationRequest.issuedAt().getEpochSecond());
+        output.putVarLong(allocationRequest.issuedAt().getNano());
+        output.put((byte) allocationRequest.result().status().ordinal());
+        putString(allocationRequest.result().reason());
+        if (allocationRequest.groupId() == null) {
+            output.put((byte) 0);
+        } else {
+            output.put((byte) 1);
+            output.putVarLong(allocationRequest.groupId());
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        start();
+        output.put(END);
+        output.flush();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return output.bytesWritten();
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            output.putInt(MAGIC);
+            started = true;
+        }
+    }
+
+    private void putString(String value) throws IOException {
+        if (value == null) {
+            output.putVarLong(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.putVarLong(bytes.length);
+        output.put(bytes);
+    }
+}
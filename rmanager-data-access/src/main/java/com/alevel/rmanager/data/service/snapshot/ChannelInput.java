@@ -0,0 +1,98 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Fixed-size buffer refilled from a channel on demand.
+ */
+final class ChannelInput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+
+    private boolean endOfStream;
+
+    private long received;
+
+    ChannelInput(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @return next byte as an unsigned value, or {@code -1} at the end of the channel
+     */
+    int read() throws IOException {
+        if (!fill(Byte.BYTES)) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    byte get() throws IOException {
+        require(Byte.BYTES);
+        return buffer.get();
+    }
+
+    int getInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long getVarLong() throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte next = get();
+            zigZag |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed variable-length number");
+    }
+
+    void get(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            require(Byte.BYTES);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    long bytesRead() {
+        return received - buffer.remaining();
+    }
+
+    private void require(int bytes) throws IOException {
+        if (!fill(bytes)) {
+            throw new EOFException("Snapshot is truncated");
+        }
+    }
+
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        try {
+            while (!endOfStream && buffer.position() < bytes) {
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    endOfStream = true;
+                } else {
+                    received += read;
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+        return buffer.remaining() >= bytes;
+    }
+}
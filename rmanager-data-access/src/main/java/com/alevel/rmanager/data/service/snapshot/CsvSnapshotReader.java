@@ -0,0 +1,149 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses rows byte by byte: separators and quotes are ASCII and never occur inside a multibyte UTF-8 sequence,
+ * so fields can be decoded once they are complete.
+ */
+final class CsvSnapshotReader implements SnapshotReader {
+
+    private static final int RESOURCE_FIELDS = 6;
+
+    private static final int ALLOCATION_REQUEST_FIELDS = 9;
+
+    /**
+     * Allocation request rows written before the group id was added.
+     */
+    private static final int UNGROUPED_ALLOCATION_REQUEST_FIELDS = 8;
+
+    private final ChannelInput input;
+
+    private final List<String> fields = new ArrayList<>(ALLOCATION_REQUEST_FIELDS);
+
+    private byte[] field = new byte[256];
+
+    private int fieldLength;
+
+    private long row;
+
+    CsvSnapshotReader(ReadableByteChannel channel) {
+        this.input = new ChannelInput(channel);
+    }
+
+    @Override
+    public boolean readNext(SnapshotHandler handler) throws IOException {
+        if (!readRow()) {
+            return false;
+        }
+        row++;
+        try {
+            switch (fields.get(0)) {
+                case CsvSnapshotWriter.RESOURCE -> {
+                    requireFields(RESOURCE_FIELDS);
+                    handler.resource(new ManagedResourceRecord(
+                            Long.parseLong(fields.get(1)),
+                            fields.get(2),
+                            fields.get(3),
+                            Integer.parseInt(fields.get(4)),
+                            Integer.parseInt(fields.get(5))
+                    ));
+                }
+                case CsvSnapshotWriter.ALLOCATION_REQUEST -> {
+                    if (fields.size() != UNGROUPED_ALLOCATION_REQUEST_FIELDS) {
+                        requireFields(ALLOCATION_REQUEST_FIELDS);
+                    }
+                    handler.allocationRequest(new AllocationRequestRecord(
+                            Long.parseLong(fields.get(1)),
+                            Long.parseLong(fields.get(2)),
+                            Integer.parseInt(fields.get(3)),
+                            Integer.parseInt(fields.get(4)),
+                            Instant.parse(fields.get(5)),
+                            AllocationResult.Status.valueOf(fields.get(6)),
+                            fields.get(7),
+                            fields.size() == ALLOCATION_REQUEST_FIELDS && fields.get(8) != null ? Long.valueOf(fields.get(8)) : null
+                    ));
+                }
+                default -> throw new IOException("Unknown row type " + fields.get(0) + " in row " + row);
+            }
+        } catch (IllegalArgumentException | NullPointerException | DateTimeParseException e) {
+            throw new IOException("Malformed row " + row, e);
+        }
+        return true;
+    }
+
+    @Override
+    public long bytesRead() {
+        return input.bytesRead();
+    }
+
+    private void requireFields(int count) throws IOException {
+        if (fields.size() != count) {
+            throw new IOException("Expected " + count + " fields in row " + row + ", got " + fields.size());
+        }
+    }
+
+    private boolean readRow() throws IOException {
+        fields.clear();
+        int next = input.read();
+        if (next == -1) {
+            return false;
+        }
+        while (true) {
+            fieldLength = 0;
+            boolean quoted = next == '"';
+            if (quoted) {
+                while (true) {
+                    next = input.read();
+                    if (next == -1) {
+                        throw new EOFException("Unterminated quoted field in row " + (row + 1));
+                    }
+                    if (next == '"') {
+                        next = input.read();
+                        if (next != '"') {
+                            break;
+                        }
+                    }
+                    append(next);
+                }
+            } else {
+                while (next != ',' && next != '\n' && next != '\r' && next != -1) {
+                    append(next);
+                    next = input.read();
+                }
+            }
+            fields.add(quoted || fieldLength > 0 ? new String(field, 0, fieldLength, StandardCharsets.UTF_8) : null);
+
+            if (next == ',') {
+                next = input.read();
+                continue;
+            }
+            if (next == '\r') {
+                next = input.read();
+            }
+            if (next == '\n' || next == -1) {
+                return true;
+            }
+            throw new IOException("Unexpected character after quoted field in row " + (row + 1));
+        }
+    }
+
+    private void append(int value) {
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, field.length * 2);
+        }
+        field[fieldLength++] = (byte) value;
+    }
+}
@@ -0,0 +1,99 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+final class CsvSnapshotWriter implements SnapshotWriter {
+
+    static final String RESOURCE = "resource";
+
+    static final String ALLOCATION_REQUEST = "allocation_request";
+
+    private static final byte SEPARATOR = ',';
+
+    private static final byte QUOTE = '"';
+
+    private static final byte NEW_LINE = '\n';
+
+    private static final byte[] RESOURCE_BYTES = RESOURCE.getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] ALLOCATION_REQUEST_BYTES = ALLOCATION_REQUEST.getBytes(StandardCharsets.US_ASCII);
+
+    private final ChannelOutput output;
+
+    CsvSnapshotWriter(WritableByteChannel channel) {
+        this.output = new ChannelOutput(channel);
+    }
+
+    @Override
+    public void writeResource(ManagedResourceRecord resource) throws IOException {
+        output.put(RESOURCE_BYTES);
+        number(resource.id());
+        text(resource.name());
+        text(resource.description());
+        number(resource.capacity());
+        number(resource.totalCapacity());
+        output.put(NEW_LINE);
+    }
+
+    @Override
+    public void writeAllocationRequest(AllocationRequestRecord allocationRequest) throws IOException {
+        output.put(ALLOCATION_REQUEST_BYTES);
+        number(allocationRequest.id());
+        number(allocationRequest.resourceId());
+        number(allocationRequest.capacity());
+        number(allocationRequest.previousResourceCapacity());
+        text(allocationRequest.issuedAt().toString());
+        text(allocationRequest.result().status().name());
+        text(allocationRequest.result().reason());
+        if (allocationRequest.groupId() != null) {
+            number(allocationRequest.groupId());
+        } else {
+            output.put(SEPARATOR);
+        }
+        output.put(NEW_LINE);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return output.bytesWritten();
+    }
+
+    private void number(long value) throws IOException {
+        output.put(SEPARATOR);
+        output.put(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void text(String value) throws IOException {
+        output.put(SEPARATOR);
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && !requiresQuotes(value)) {
+            output.put(value.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        output.put(QUOTE);
+        output.put(value.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+        output.put(QUOTE);
+    }
+
+    private static boolean requiresQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == NEW_LINE || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
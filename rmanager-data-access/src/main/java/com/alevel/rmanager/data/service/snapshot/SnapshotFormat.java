@@ -0,0 +1,46 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+public enum SnapshotFormat {
+
+    /**
+     * RFC 4180 text, one row per line, led by the row type: {@code resource} or {@code allocation_request}.
+     * An empty field is {@code null}, while an empty string is written as {@code ""}.
+     * Allocation request rows without the trailing group id, as written before it was added, are read as ungrouped.
+     */
+    CSV {
+        @Override
+        public SnapshotWriter newWriter(WritableByteChannel channel) {
+            return new CsvSnapshotWriter(channel);
+        }
+
+        @Override
+        public SnapshotReader newReader(ReadableByteChannel channel) {
+            return new CsvSnapshotReader(channel);
+        }
+    },
+
+    /**
+     * Variable-length numbers and length-prefixed UTF-8 strings behind a magic header.
+     * More compact than CSV and cheaper to decode. Snapshots under the header used before allocation requests
+     * carried their group id are read as ungrouped.
+     */
+    BINARY {
+        @Override
+        public SnapshotWriter newWriter(WritableByteChannel channel) {
+            return new BinarySnapshotWriter(channel);
+        }
+
+        @Override
+        public SnapshotReader newReader(ReadableByteChannel channel) {
+            return new BinarySnapshotReader(channel);
+        }
+    };
+
+    public abstract SnapshotWriter newWriter(WritableByteChannel channel);
+
+    public abstract SnapshotReader newReader(ReadableByteChannel channel);
+
+}
@@ -0,0 +1,16 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+
+/**
+ * Receives rows of a snapshot in the order they were written:
+ * every resource is followed by its allocation requests.
+ */
+public interface SnapshotHandler {
+
+    void resource(ManagedResourceRecord resource);
+
+    void allocationRequest(AllocationRequestRecord allocationRequest);
+
+}
@@ -0,0 +1,16 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import java.io.IOException;
+
+public interface SnapshotReader {
+
+    /**
+     * Decodes the next row and passes it to the handler.
+     *
+     * @return {@code false} once the snapshot is exhausted
+     */
+    boolean readNext(SnapshotHandler handler) throws IOException;
+
+    long bytesRead();
+
+}
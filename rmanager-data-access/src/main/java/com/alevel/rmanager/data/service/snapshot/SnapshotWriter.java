@@ -0,0 +1,25 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+
+import java.io.IOException;
+
+/**
+ * Encodes snapshot rows into a channel through a fixed-size buffer.
+ * Allocation requests must follow the resource they belong to.
+ */
+public interface SnapshotWriter {
+
+    void writeResource(ManagedResourceRecord resource) throws IOException;
+
+    void writeAllocationRequest(AllocationRequestRecord allocationRequest) throws IOException;
+
+    /**
+     * Marks the end of the snapshot and flushes buffered bytes. Does not close the channel.
+     */
+    void finish() throws IOException;
+
+    long bytesWritten();
+
+}
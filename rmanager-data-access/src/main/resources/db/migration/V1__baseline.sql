@@ -0,0 +1,25 @@
+-- Schema as created from the entity mappings before migrations were introduced.
+
+create sequence alloc_request_id_seq start with 1 increment by 10;
+
+create table managed_resources (
+    id bigint generated by default as identity,
+    name varchar(255) not null,
+    description varchar(255),
+    capacity integer not null,
+    total_capacity integer not null,
+    constraint managed_resources_pkey primary key (id),
+    constraint managed_resources_name_key unique (name)
+);
+
+create table alloc_requests (
+    id bigint not null,
+    resource_id bigint not null,
+    previous_resource_capacity integer not null,
+    capacity integer not null,
+    issued_at timestamp not null,
+    status integer not null,
+    reason varchar(255),
+    constraint alloc_requests_pkey primary key (id),
+    constraint alloc_requests_resource_fkey foreign key (resource_id) references managed_resources (id)
+);
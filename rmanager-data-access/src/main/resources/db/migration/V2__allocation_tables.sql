@@ -0,0 +1,62 @@
+-- Resource ids, allocation reasons and groups, and the tables of rollups, leases, statistics and journal checkpoints.
+-- Schemas created from later entity mappings are baselined at version 1 and already have some of these objects.
+
+-- Resource ids come from a pooled sequence instead of the identity column. Hibernate hands out the block
+-- ending at the value it reads, so the sequence starts one block above the existing ids.
+create sequence if not exists managed_resource_id_seq start with 1 increment by 50;
+alter sequence managed_resource_id_seq restart with (select coalesce(max(id), 0) + 50 from managed_resources);
+alter table managed_resources alter column id set default null;
+
+create sequence if not exists alloc_rollup_id_seq start with 1 increment by 50;
+create sequence if not exists alloc_lease_id_seq start with 1 increment by 50;
+
+alter table alloc_requests add column if not exists reason_code integer;
+alter table alloc_requests add column if not exists reason_first bigint;
+alter table alloc_requests add column if not exists reason_second integer;
+alter table alloc_requests add column if not exists group_id bigint;
+
+create index if not exists alloc_requests_issued_at_idx on alloc_requests (issued_at);
+create index if not exists alloc_requests_group_id_idx on alloc_requests (group_id);
+create index if not exists managed_resources_capacity_idx on managed_resources (capacity, id);
+
+create table if not exists alloc_request_rollups (
+    id bigint not null,
+    resource_id bigint not null,
+    period_start timestamp not null,
+    accepted bigint not null,
+    rejected bigint not null,
+    units_allocated bigint not null,
+    min_capacity integer not null,
+    max_capacity integer not null,
+    constraint alloc_request_rollups_pkey primary key (id),
+    constraint alloc_request_rollups_period_key unique (resource_id, period_start),
+    constraint alloc_request_rollups_resource_fkey foreign key (resource_id) references managed_resources (id) on delete cascade
+);
+
+create table if not exists alloc_leases (
+    id bigint not null,
+    resource_id bigint not null,
+    units integer not null,
+    expires_at timestamp not null,
+    constraint alloc_leases_pkey primary key (id),
+    constraint alloc_leases_resource_fkey foreign key (resource_id) references managed_resources (id) on delete cascade
+);
+
+create index if not exists alloc_leases_expires_at_idx on alloc_leases (expires_at);
+
+-- Existing resources get their rows from ResourceStatisticsService.backfill, which also counts their history.
+create table if not exists resource_stats (
+    resource_id bigint not null,
+    accepted bigint not null,
+    rejected bigint not null,
+    units_allocated bigint not null,
+    peak_units_in_use integer not null,
+    constraint resource_stats_pkey primary key (resource_id),
+    constraint resource_stats_resource_fkey foreign key (resource_id) references managed_resources (id) on delete cascade
+);
+
+create table if not exists journal_checkpoints (
+    name varchar(64) not null,
+    sequence bigint not null,
+    constraint journal_checkpoints_pkey primary key (name)
+);
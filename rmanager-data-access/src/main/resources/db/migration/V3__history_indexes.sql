@@ -0,0 +1,12 @@
+-- Serves allocation history of a resource, newest first, as a range scan from the page cursor:
+-- where resource_id = ? and issued_at <= ? ... order by issued_at desc, id desc.
+-- Its leading column also backs the foreign key, so deleting a resource no longer scans the table.
+-- Indexes are also declared on the entities, so schemas created from the mappings may already have them.
+create index if not exists alloc_requests_resource_history_idx on alloc_requests (resource_id, issued_at desc, id desc);
+
+-- Backs the cascading foreign key of leases.
+create index if not exists alloc_leases_resource_id_idx on alloc_leases (resource_id);
+
+alter table alloc_requests add constraint alloc_requests_status_check check (status in (0, 1));
+alter table alloc_requests add constraint alloc_requests_reason_code_check check (reason_code is null or status = 1);
+alter table managed_resources add constraint managed_resources_total_capacity_check check (total_capacity >= 0);
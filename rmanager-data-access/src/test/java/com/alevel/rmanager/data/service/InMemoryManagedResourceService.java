@@ -0,0 +1,144 @@
+package com.alevel.rmanager.data.service;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Test double for decorators of {@link ManagedResourceService}, counting reads that reach it.
+ */
+public class InMemoryManagedResourceService implements ManagedResourceService {
+
+    private final Map<Long, ManagedResourceRecord> resources = new ConcurrentHashMap<>();
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private volatile Runnable onRead = () -> {
+    };
+
+    public int reads() {
+        return reads.get();
+    }
+
+    /**
+     * Runs {@code action} while the next {@link #getById(long)} is in flight, after the record has been read.
+     */
+    public void onNextRead(Runnable action) {
+        onRead = () -> {
+            onRead = () -> {
+            };
+            action.run();
+        };
+    }
+
+    @Override
+    public Optional<ManagedResourceRecord> getById(long id) {
+        reads.incrementAndGet();
+        Optional<ManagedResourceRecord> record = Optional.ofNullable(resources.get(id));
+        onRead.run();
+        return record;
+    }
+
+    @Override
+    public List<ManagedResourceRecord> getByIds(Collection<Long> ids) {
+        reads.incrementAndGet();
+        return ids.stream()
+                .distinct()
+                .map(resources::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public ManagedResourceRecord save(SaveManagedResourceRequest managedResource) {
+        long id = ids.incrementAndGet();
+        var record = new ManagedResourceRecord(
+                id,
+                managedResource.name(),
+                managedResource.description(),
+                managedResource.totalCapacity(),
+                managedResource.totalCapacity());
+        resources.put(id, record);
+        return record;
+    }
+
+    @Override
+    public BulkImportResult saveAll(Stream<SaveManagedResourceRequest> managedResources) {
+        return new BulkImportResult(managedResources.map(this::save).count(), List.of());
+    }
+
+    @Override
+    public void update(long id, SaveManagedResourceRequest managedResource) throws ManagedResourceNotFoundException {
+        ManagedResourceRecord existing = require(id);
+        resources.put(id, new ManagedResourceRecord(
+                id,
+                managedResource.name(),
+                managedResource.description(),
+                existing.capacity(),
+                managedResource.totalCapacity()));
+    }
+
+    @Override
+    public void delete(long id) throws ManagedResourceNotFoundException {
+        require(id);
+        resources.remove(id);
+    }
+
+    @Override
+    public synchronized AllocationResultRecord allocate(long id, int units) throws ManagedResourceNotFoundException {
+        if (units == 0) {
+            throw new IllegalArgumentException("Can't allocate zero units of a resource");
+        }
+        ManagedResourceRecord resource = require(id);
+        int newCapacity = resource.capacity() - units;
+        if (newCapacity > resource.totalCapacity()) {
+            return AllocationResultRecord.totalCapacityExceeded(resource.totalCapacity(), newCapacity);
+        }
+        if (newCapacity < 0) {
+            return AllocationResultRecord.notEnoughCapacity(resource.capacity(), units);
+        }
+        resources.put(id, new ManagedResourceRecord(
+                id,
+                resource.name(),
+                resource.description(),
+                newCapacity,
+                resource.totalCapacity()));
+        return AllocationResultRecord.accepted();
+    }
+
+    @Override
+    public synchronized List<AllocationResultRecord> allocateAll(List<AllocationCommand> commands) throws ManagedResourceNotFoundException {
+        for (AllocationCommand command : commands) {
+            require(command.resourceId());
+        }
+        var results = new ArrayList<AllocationResultRecord>(commands.size());
+        for (AllocationCommand command : commands) {
+            results.add(allocate(command.resourceId(), command.units()));
+        }
+        return results;
+    }
+
+    private ManagedResourceRecord require(long id) throws ManagedResourceNotFoundException {
+        ManagedResourceRecord resource = resources.get(id);
+        if (resource == null) {
+            throw new ManagedResourceNotFoundException(id);
+        }
+        return resource;
+    }
+}
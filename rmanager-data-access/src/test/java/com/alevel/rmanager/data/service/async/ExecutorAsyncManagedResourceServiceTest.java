@@ -0,0 +1,137 @@
+package com.alevel.rmanager.data.service.async;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.InMemoryManagedResourceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ExecutorAsyncManagedResourceServiceTest {
+
+    private InMemoryManagedResourceService delegate;
+
+    private DataAccessExecutor executor;
+
+    private ExecutorAsyncManagedResourceService subject;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new InMemoryManagedResourceService();
+        executor = DataAccessExecutor.platformThreads(1, 1);
+        subject = new ExecutorAsyncManagedResourceService(delegate, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    @DisplayName("when called asynchronously - should complete futures with delegate results")
+    void testCompletion() {
+        ManagedResourceRecord saved = subject.save(new SaveManagedResourceRequest("testCompletion", null, 10)).join();
+
+        assertEquals(Optional.of(saved), subject.getById(saved.id()).join());
+
+        AllocationResultRecord result = subject.allocate(saved.id(), 4).join();
+        assertEquals(AllocationResult.Status.ACCEPTED, result.status());
+        assertEquals(6, subject.getById(saved.id()).join().orElseThrow().capacity());
+
+        ExecutionException notFound = assertThrows(ExecutionException.class, () -> subject.allocate(-1, 4).get());
+        assertTrue(notFound.getCause() instanceof ManagedResourceNotFoundException);
+    }
+
+    @Test
+    @DisplayName("when queue is full - should reject calls instead of blocking")
+    void testBoundedQueue() throws InterruptedException {
+        var running = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        CompletableFuture<Object> blocking = executor.submit(() -> {
+            running.countDown();
+            release.await();
+            return null;
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Optional<ManagedResourceRecord>> queued = subject.getById(1);
+        CompletableFuture<Optional<ManagedResourceRecord>> rejected = subject.getById(1);
+
+        ExecutionException error = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(error.getCause() instanceof RejectedExecutionException);
+
+        release.countDown();
+        assertDoesNotThrow(() -> blocking.get(5, TimeUnit.SECONDS));
+        assertEquals(Optional.empty(), assertDoesNotThrow(() -> queued.get(5, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    @DisplayName("when future is cancelled - should interrupt the running call")
+    void testCancellation() throws InterruptedException {
+        var running = new CountDownLatch(1);
+        var interrupted = new CountDownLatch(1);
+        CompletableFuture<Object> call = executor.submit(() -> {
+            running.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        assertTrue(call.cancel(true));
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(call.isCancelled());
+    }
+
+    @Test
+    @DisplayName("when queued future is cancelled - should free its place in the queue")
+    void testQueuedCancellation() throws InterruptedException {
+        var running = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        CompletableFuture<Object> blocking = executor.submit(() -> {
+            running.countDown();
+            release.await();
+            return null;
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Optional<ManagedResourceRecord>> cancelled = subject.getById(1);
+        assertTrue(cancelled.cancel(true));
+        CompletableFuture<Optional<ManagedResourceRecord>> queued = subject.getById(1);
+        assertFalse(queued.isCompletedExceptionally());
+
+        release.countDown();
+        assertDoesNotThrow(() -> blocking.get(5, TimeUnit.SECONDS));
+        assertEquals(Optional.empty(), assertDoesNotThrow(() -> queued.get(5, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    @DisplayName("when virtual threads are available - should run calls on them")
+    void testVirtualThreads() {
+        assumeTrue(DataAccessExecutor.virtualThreadsAvailable());
+
+        try (var virtual = DataAccessExecutor.virtualThreads(2, 10)) {
+            var async = new ExecutorAsyncManagedResourceService(delegate, virtual);
+            ManagedResourceRecord saved = async.save(new SaveManagedResourceRequest("testVirtualThreads", null, 10)).join();
+            assertEquals(Optional.of(saved), async.getById(saved.id()).join());
+        }
+    }
+}
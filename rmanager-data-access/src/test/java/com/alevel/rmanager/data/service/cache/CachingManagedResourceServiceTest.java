@@ -0,0 +1,112 @@
+package com.alevel.rmanager.data.service.cache;
+
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.InMemoryManagedResourceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingManagedResourceServiceTest {
+
+    private InMemoryManagedResourceService delegate;
+
+    private CachingManagedResourceService subject;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new InMemoryManagedResourceService();
+        subject = new CachingManagedResourceService(delegate, 4);
+    }
+
+    @Test
+    @DisplayName("when resource is read repeatedly - should load it once")
+    void testReadThrough() {
+        assertEquals(Optional.empty(), subject.getById(-1));
+        assertEquals(Optional.empty(), subject.getById(-1));
+        assertEquals(2, delegate.reads());
+
+        ManagedResourceRecord saved = delegate.save(new SaveManagedResourceRequest("testReadThrough", null, 10));
+
+        assertEquals(Optional.of(saved), subject.getById(saved.id()));
+        assertEquals(Optional.of(saved), subject.getById(saved.id()));
+        assertEquals(Optional.of(saved), subject.getById(saved.id()));
+        assertEquals(3, delegate.reads());
+
+        CacheStats stats = subject.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(3, stats.misses());
+        assertEquals(1, stats.size());
+    }
+
+    @Test
+    @DisplayName("when resources are read by ids - should load only the missing ones with one call")
+    void testReadThroughByIds() {
+        ManagedResourceRecord first = delegate.save(new SaveManagedResourceRequest("testReadThroughByIds-1", null, 10));
+        ManagedResourceRecord second = delegate.save(new SaveManagedResourceRequest("testReadThroughByIds-2", null, 10));
+        assertEquals(Optional.of(first), subject.getById(first.id()));
+
+        assertEquals(List.of(second, first), subject.getByIds(List.of(second.id(), -1L, first.id(), second.id())));
+        assertEquals(List.of(first, second), subject.getByIds(List.of(first.id(), second.id())));
+        assertEquals(2, delegate.reads());
+
+        CacheStats stats = subject.stats();
+        assertEquals(3, stats.hits());
+        assertEquals(3, stats.misses());
+    }
+
+    @Test
+    @DisplayName("when resource is changed through cache - should serve fresh state")
+    void testInvalidation() {
+        long id = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest("testInvalidation", null, 10))).id();
+        assertEquals(10, subject.getById(id).orElseThrow().capacity());
+        assertEquals(0, delegate.reads());
+
+        assertDoesNotThrow(() -> subject.allocate(id, 3));
+        assertEquals(7, subject.getById(id).orElseThrow().capacity());
+
+        assertDoesNotThrow(() -> subject.allocateAll(List.of(new AllocationCommand(id, 2), new AllocationCommand(id, 1))));
+        assertEquals(4, subject.getById(id).orElseThrow().capacity());
+
+        assertDoesNotThrow(() -> subject.update(id, new SaveManagedResourceRequest("testInvalidation - updated", null, 20)));
+        assertEquals("testInvalidation - updated", subject.getById(id).orElseThrow().name());
+
+        assertDoesNotThrow(() -> subject.delete(id));
+        assertEquals(Optional.empty(), subject.getById(id));
+    }
+
+    @Test
+    @DisplayName("when allocation completes while resource is being loaded - should not cache loaded state")
+    void testLoadRacingWithAllocation() {
+        long id = delegate.save(new SaveManagedResourceRequest("testLoadRacingWithAllocation", null, 10)).id();
+
+        delegate.onNextRead(() -> assertDoesNotThrow(() -> subject.allocate(id, 4)));
+
+        assertEquals(10, subject.getById(id).orElseThrow().capacity());
+        assertEquals(6, subject.getById(id).orElseThrow().capacity());
+    }
+
+    @Test
+    @DisplayName("when cache is full - should evict least recently used entries")
+    void testEviction() {
+        var single = new CachingManagedResourceService(delegate, 1);
+        long first = delegate.save(new SaveManagedResourceRequest("testEviction - 1", null, 10)).id();
+        long second = delegate.save(new SaveManagedResourceRequest("testEviction - 2", null, 10)).id();
+
+        single.getById(first);
+        single.getById(second);
+        single.getById(first);
+
+        CacheStats stats = single.stats();
+        assertEquals(0, stats.hits());
+        assertEquals(3, stats.misses());
+        assertEquals(2, stats.evictions());
+        assertEquals(1, stats.size());
+    }
+}
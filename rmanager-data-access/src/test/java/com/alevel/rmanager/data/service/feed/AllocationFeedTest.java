@@ -0,0 +1,239 @@
+package com.alevel.rmanager.data.service.feed;
+
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.ResourceAllocationRequestService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationFeedTest {
+
+    private InMemoryAllocationRequests requests;
+
+    private ExecutorService executor;
+
+    private AllocationFeed subject;
+
+    @BeforeEach
+    void setUp() {
+        requests = new InMemoryAllocationRequests();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        subject.close();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("when subscribed live - should receive only requests committed after subscription")
+    void testLive() throws InterruptedException {
+        requests.add(1, 3);
+        subject = feed(16, Duration.ofSeconds(1));
+        subject.start();
+
+        var subscriber = new CollectingSubscriber();
+        subject.subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+        requests.add(4, 5);
+        subject.wakeUp();
+
+        assertEquals(List.of(4L, 5L), subscriber.take(2));
+    }
+
+    @Test
+    @DisplayName("when resuming after an id - should catch up on history and continue live without gaps or repeats")
+    void testResume() throws InterruptedException {
+        requests.add(1, 50);
+        subject = feed(8, Duration.ofSeconds(1));
+        subject.start();
+
+        var subscriber = new CollectingSubscriber();
+        subject.subscribe(subscriber, 10);
+        subscriber.request(Long.MAX_VALUE);
+        requests.add(51, 55);
+        subject.wakeUp();
+
+        assertEquals(LongStream.rangeClosed(11, 55).boxed().toList(), subscriber.take(45));
+        requests.add(56, 56);
+        subject.wakeUp();
+        assertEquals(List.of(56L), subscriber.take(1));
+    }
+
+    @Test
+    @DisplayName("when subscriber doesn't request - should buffer no more than its buffer and deliver the rest later")
+    void testBackpressure() throws InterruptedException {
+        subject = feed(4, Duration.ofSeconds(1));
+        subject.start();
+
+        var subscriber = new CollectingSubscriber();
+        subject.subscribe(subscriber);
+        subscriber.request(2);
+        requests.add(1, 30);
+        subject.wakeUp();
+
+        assertEquals(List.of(1L, 2L), subscriber.take(2));
+        assertNull(subscriber.records.poll(100, TimeUnit.MILLISECONDS));
+
+        subscriber.request(Long.MAX_VALUE);
+        assertEquals(LongStream.rangeClosed(3, 30).boxed().toList(), subscriber.take(28));
+    }
+
+    @Test
+    @DisplayName("when an id is missing - should wait for it before publishing greater ids")
+    void testGap() throws InterruptedException {
+        subject = feed(16, Duration.ofSeconds(30));
+        subject.start();
+
+        var subscriber = new CollectingSubscriber();
+        subject.subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+        requests.add(1, 1);
+        requests.add(3, 3);
+        subject.wakeUp();
+
+        assertEquals(List.of(1L), subscriber.take(1));
+        assertNull(subscriber.records.poll(100, TimeUnit.MILLISECONDS));
+
+        requests.add(2, 2);
+        subject.wakeUp();
+        assertEquals(List.of(2L, 3L), subscriber.take(2));
+    }
+
+    @Test
+    @DisplayName("when feed is closed or request is not positive - should terminate subscriptions")
+    void testTermination() throws InterruptedException {
+        subject = feed(16, Duration.ofSeconds(1));
+        subject.start();
+
+        var invalid = new CollectingSubscriber();
+        subject.subscribe(invalid);
+        invalid.request(0);
+        assertTrue(invalid.terminated.poll(5, TimeUnit.SECONDS) instanceof IllegalArgumentException);
+
+        var completed = new CollectingSubscriber();
+        subject.subscribe(completed);
+        subject.close();
+        assertEquals("complete", completed.terminated.poll(5, TimeUnit.SECONDS));
+
+        var late = new CollectingSubscriber();
+        subject.subscribe(late);
+        assertTrue(late.terminated.poll(5, TimeUnit.SECONDS) instanceof IllegalStateException);
+    }
+
+    private AllocationFeed feed(int bufferSize, Duration gapTimeout) {
+        return new AllocationFeed(requests, executor, bufferSize, 5, Duration.ofMillis(10), gapTimeout);
+    }
+
+    private static final class CollectingSubscriber implements Flow.Subscriber<AllocationRequestRecord> {
+
+        private final BlockingQueue<Long> records = new LinkedBlockingQueue<>();
+
+        private final BlockingQueue<Object> terminated = new LinkedBlockingQueue<>();
+
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(AllocationRequestRecord item) {
+            records.add(item.id());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            terminated.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            terminated.add("complete");
+        }
+
+        void request(long n) {
+            subscription.request(n);
+        }
+
+        List<Long> take(int count) throws InterruptedException {
+            var taken = new ArrayList<Long>(count);
+            for (int i = 0; i < count; i++) {
+                Long id = records.poll(5, TimeUnit.SECONDS);
+                assertNotNull(id, "Received only " + taken);
+                taken.add(id);
+            }
+            return taken;
+        }
+    }
+
+    private static final class InMemoryAllocationRequests implements ResourceAllocationRequestService {
+
+        private final ConcurrentSkipListMap<Long, AllocationRequestRecord> records = new ConcurrentSkipListMap<>();
+
+        void add(long fromId, long toId) {
+            for (long id = fromId; id <= toId; id++) {
+                records.put(id, new AllocationRequestRecord(id, 1L, 1, 10, Instant.now(), AllocationResult.Status.ACCEPTED, null));
+            }
+        }
+
+        @Override
+        public List<AllocationRequestRecord> getAfterId(long afterId, int limit) {
+            return records.tailMap(afterId, false).values().stream().limit(limit).toList();
+        }
+
+        @Override
+        public long getLastId() {
+            return records.isEmpty() ? 0 : records.lastKey();
+        }
+
+        @Override
+        public List<AllocationRequestRecord> getByResourceId(long resourceId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<AllocationRequestRecord> getByResourceId(long resourceId, AllocationHistoryCursor after, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Stream<AllocationRequestRecord> streamByResourceId(long resourceId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<AllocationRequestRecord> getById(long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<AllocationRequestRecord> getByIds(Collection<Long> ids) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
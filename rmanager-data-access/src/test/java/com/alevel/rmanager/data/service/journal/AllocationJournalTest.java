@@ -0,0 +1,159 @@
+package com.alevel.rmanager.data.service.journal;
+
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private static final int ENTRY_SIZE = 8 + 58;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("when journal is reopened - should replay appended entries in order")
+    void testReopen() throws IOException {
+        List<JournalEntry> entries = List.of(
+                entry(1, 4, null),
+                new JournalEntry(2, -20, 6, 10, new AllocationResultRecord(AllocationResult.Status.REJECTED,
+                        "Total capacity exceeded. Total = 10, got = 26"), Instant.parse("2021-10-01T10:15:30.123456789Z")),
+                new JournalEntry(1, 7, 3, 10, AllocationResultRecord.notEnoughCapacity(3, 7), Instant.ofEpochSecond(1633083330)));
+
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(i + 1, journal.append(entries.get(i)));
+            }
+        }
+
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, true)) {
+            assertEquals(3, journal.lastSequence());
+            assertEquals(entries, replay(journal, 0));
+            assertEquals(entries.subList(2, 3), replay(journal, 2));
+            assertEquals(4, journal.append(entries.get(0)));
+        }
+    }
+
+    @Test
+    @DisplayName("when segment is full - should continue in a new one and release checkpointed segments")
+    void testRotation() throws IOException {
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            int perSegment = (SEGMENT_SIZE - 16 - 4) / ENTRY_SIZE;
+            for (int i = 0; i < perSegment * 3; i++) {
+                journal.append(entry(i, 1, null));
+            }
+            assertEquals(3, journal.segmentCount());
+            assertEquals(perSegment * 3, replay(journal, 0).size());
+
+            assertEquals(0, journal.releaseThrough(perSegment - 1));
+            assertEquals(1, journal.releaseThrough(perSegment));
+            assertEquals(1, journal.releaseThrough(perSegment * 3));
+            assertEquals(1, journal.segmentCount());
+            assertEquals(1, segmentFiles().size());
+            assertEquals(List.of(), replay(journal, perSegment * 3));
+        }
+
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            int perSegment = (SEGMENT_SIZE - 16 - 4) / ENTRY_SIZE;
+            assertEquals(perSegment * 3, journal.lastSequence());
+            assertEquals(perSegment, replay(journal, 0).size());
+        }
+    }
+
+    @Test
+    @DisplayName("when last entry is torn - should discard it and append in its place")
+    void testTornTail() throws IOException {
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(entry(i, 1, null));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 16 + 2 * ENTRY_SIZE + 8 + 10);
+        }
+
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            assertEquals(2, journal.lastSequence());
+            assertEquals(3, journal.append(entry(7, 7, "replacement")));
+            assertEquals(List.of(entry(7, 7, "replacement")), replay(journal, 2));
+        }
+    }
+
+    @Test
+    @DisplayName("when process died while starting a segment - should discard the unfinished segment")
+    void testUnfinishedSegment() throws IOException {
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(entry(i, 1, null));
+            }
+        }
+        Path unfinished = directory.resolve("journal-00000000000000000004.seg.tmp");
+        try (FileChannel channel = FileChannel.open(unfinished, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(SEGMENT_SIZE));
+        }
+
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            assertEquals(3, journal.lastSequence());
+            assertEquals(1, segmentFiles().size());
+            assertEquals(4, journal.append(entry(1, 1, null)));
+        }
+    }
+
+    @Test
+    @DisplayName("when journal is behind a checkpoint - should continue after the checkpoint")
+    void testAdvanceTo() throws IOException {
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            journal.append(entry(1, 1, null));
+            journal.advanceTo(1);
+            assertEquals(1, journal.segmentCount());
+
+            journal.advanceTo(10);
+            assertEquals(11, journal.append(entry(1, 1, null)));
+            assertEquals(1, journal.releaseThrough(10));
+        }
+
+        try (var journal = AllocationJournal.open(directory, SEGMENT_SIZE, false)) {
+            assertEquals(11, journal.lastSequence());
+            assertEquals(1, replay(journal, 0).size());
+        }
+    }
+
+    private static JournalEntry entry(long resourceId, int units, String reason) {
+        return new JournalEntry(
+                resourceId,
+                units,
+                10,
+                10,
+                new AllocationResultRecord(reason == null ? AllocationResult.Status.ACCEPTED : AllocationResult.Status.REJECTED, reason),
+                Instant.ofEpochSecond(1633083330, 5));
+    }
+
+    private static List<JournalEntry> replay(AllocationJournal journal, long afterSequence) {
+        var entries = new ArrayList<JournalEntry>();
+        journal.replay(afterSequence, (sequence, entry) -> entries.add(entry));
+        return entries;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapacityIndexTest {
+
+    @Test
+    @DisplayName("when resources change at random - should answer like a scan of all resources")
+    void testAgainstScan() {
+        var random = new Random(42);
+        var index = new CapacityIndex();
+        var expected = new TreeMap<Long, Integer>();
+        var seen = new HashSet<Long>(List.of(5L, 2L));
+        index.load(List.of(new CapacityIndex.Entry(5, 3), new CapacityIndex.Entry(2, 7)), index.nextVersion());
+        expected.put(5L, 3);
+        expected.put(2L, 7);
+
+        for (int step = 0; step < 50_000; step++) {
+            long id = random.nextInt(2_000);
+            int capacity = random.nextInt(100);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    index.put(id, capacity, index.nextVersion());
+                    expected.put(id, capacity);
+                }
+                case 2 -> {
+                    index.remove(id, index.nextVersion());
+                    expected.remove(id);
+                }
+                default -> {
+                    // a read started before all the changes above finishes now
+                    index.put(id, capacity, 0);
+                    if (!seen.contains(id)) {
+                        expected.put(id, capacity);
+                    }
+                }
+            }
+            seen.add(id);
+
+            int units = 1 + random.nextInt(110);
+            assertEquals(firstFit(expected, units), index.firstFit(units), "first fit at step " + step);
+            assertEquals(bestFit(expected, units), index.bestFit(units), "best fit at step " + step);
+        }
+        assertEquals(expected.size(), index.size());
+    }
+
+    @Test
+    @DisplayName("when reads finish out of order - should keep state of the latest read")
+    void testVersions() {
+        var index = new CapacityIndex();
+        long rebuild = index.nextVersion();
+        long read = index.nextVersion();
+        index.put(1, 4, read);
+        index.remove(2, read);
+
+        index.load(List.of(new CapacityIndex.Entry(1, 9), new CapacityIndex.Entry(2, 9), new CapacityIndex.Entry(3, 9)), rebuild);
+        assertEquals(2, index.size());
+        assertEquals(OptionalLong.of(1), index.bestFit(4));
+
+        index.put(1, 9, rebuild);
+        index.put(2, 9, rebuild);
+        assertEquals(OptionalLong.of(1), index.bestFit(1));
+        assertEquals(OptionalLong.of(3), index.bestFit(5));
+        assertEquals(2, index.size());
+    }
+
+    private static OptionalLong firstFit(TreeMap<Long, Integer> capacities, int units) {
+        return capacities.entrySet().stream()
+                .filter(entry -> entry.getValue() >= units)
+                .mapToLong(Map.Entry::getKey)
+                .findFirst();
+    }
+
+    private static OptionalLong bestFit(TreeMap<Long, Integer> capacities, int units) {
+        return capacities.entrySet().stream()
+                .filter(entry -> entry.getValue() >= units)
+                .min(Map.Entry.<Long, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> OptionalLong.of(entry.getKey()))
+                .orElse(OptionalLong.empty());
+    }
+}
@@ -0,0 +1,150 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.ManagedResourceService;
+import com.alevel.rmanager.data.service.PlacementService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedPlacementServiceTest extends JPATest {
+
+    private JPAManagedResourceService resourceService;
+
+    private IndexedPlacementService subject;
+
+    @BeforeEach
+    void setUp() {
+        var transaction = session.beginTransaction();
+        session.createQuery("delete from AllocationRequest").executeUpdate();
+        session.createQuery("delete from ResourceStatistics").executeUpdate();
+        session.createQuery("delete from ManagedResource").executeUpdate();
+        transaction.commit();
+
+        resourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        subject = new IndexedPlacementService(resourceService, () -> session);
+    }
+
+    @Test
+    @DisplayName("when placing - should pick by strategy from the database, then from the index")
+    void testFind() {
+        long small = save("testFind-small", 4);
+        long large = save("testFind-large", 10);
+        long medium = save("testFind-medium", 6);
+
+        for (boolean indexed : List.of(false, true)) {
+            if (indexed) {
+                subject.rebuild();
+                assertEquals(3, subject.indexedResources());
+            }
+            assertEquals(Optional.of(small), find(3, PlacementService.Strategy.FIRST_FIT));
+            assertEquals(Optional.of(large), find(5, PlacementService.Strategy.FIRST_FIT));
+            assertEquals(Optional.of(medium), find(5, PlacementService.Strategy.BEST_FIT));
+            assertEquals(Optional.of(large), find(7, PlacementService.Strategy.BEST_FIT));
+            assertEquals(Optional.empty(), find(11, PlacementService.Strategy.BEST_FIT));
+        }
+        assertThrows(IllegalArgumentException.class, () -> subject.find(0, PlacementService.Strategy.FIRST_FIT));
+    }
+
+    @Test
+    @DisplayName("when resources change through the service - index should follow them")
+    void testIndexFollowsChanges() {
+        long first = save("testIndexFollowsChanges-first", 5);
+        subject.rebuild();
+        long second = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest(
+                "testIndexFollowsChanges-second", null, 8))).id();
+
+        assertEquals(Optional.of(second), find(6, PlacementService.Strategy.FIRST_FIT));
+        assertDoesNotThrow(() -> subject.allocate(second, 3));
+        assertEquals(Optional.empty(), find(6, PlacementService.Strategy.FIRST_FIT));
+
+        assertDoesNotThrow(() -> subject.update(first, new SaveManagedResourceRequest(
+                "testIndexFollowsChanges-first", null, 20)));
+        assertDoesNotThrow(() -> subject.allocate(first, -15));
+        assertEquals(Optional.of(first), find(6, PlacementService.Strategy.FIRST_FIT));
+
+        assertDoesNotThrow(() -> subject.delete(first));
+        assertEquals(Optional.of(second), find(5, PlacementService.Strategy.BEST_FIT));
+        assertEquals(1, subject.indexedResources());
+    }
+
+    @Test
+    @DisplayName("when index is stale - find and allocate should skip drained resources")
+    void testAllocateStale() {
+        long first = save("testAllocateStale-first", 5);
+        long second = save("testAllocateStale-second", 5);
+        subject.rebuild();
+
+        assertDoesNotThrow(() -> resourceService.allocate(first, 5));
+
+        assertEquals(Optional.of(second), assertDoesNotThrow(() -> subject.allocate(4, PlacementService.Strategy.FIRST_FIT)));
+        assertEquals(0, resourceService.getById(first).orElseThrow().capacity());
+        assertEquals(1, resourceService.getById(second).orElseThrow().capacity());
+        assertEquals(Optional.empty(), assertDoesNotThrow(() -> subject.allocate(2, PlacementService.Strategy.BEST_FIT)));
+    }
+
+    @Test
+    @DisplayName("when resource is read between its allocation and the index update - should not count the units twice")
+    void testReadDuringAllocation() {
+        long id = save("testReadDuringAllocation", 10);
+        var placement = new AtomicReference<IndexedPlacementService>();
+        // runs the read a concurrent caller could make once the allocation is committed, before it returns
+        var interleaved = (ManagedResourceService) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{ManagedResourceService.class},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(resourceService, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (method.getName().startsWith("allocate")) {
+                        placement.get().getById(id);
+                    }
+                    return result;
+                });
+        placement.set(new IndexedPlacementService(interleaved, () -> session));
+        placement.get().rebuild();
+
+        assertDoesNotThrow(() -> placement.get().allocate(id, 4));
+        assertEquals(Optional.of(id), placement.get().find(6, PlacementService.Strategy.BEST_FIT).map(ManagedResourceRecord::id));
+
+        assertDoesNotThrow(() -> placement.get().allocateAll(List.of(new AllocationCommand(id, 2))));
+        assertEquals(Optional.of(id), assertDoesNotThrow(() -> placement.get().allocate(4, PlacementService.Strategy.FIRST_FIT)));
+        assertEquals(0, resourceService.getById(id).orElseThrow().capacity());
+    }
+
+    @Test
+    @DisplayName("when placing from the database - should claim capacity of the chosen resource")
+    void testDatabaseAllocate() {
+        var placement = new JPAPlacementService(() -> session);
+        long first = save("testDatabaseAllocate-first", 3);
+        long second = save("testDatabaseAllocate-second", 9);
+
+        assertEquals(Optional.of(second), assertDoesNotThrow(() -> placement.allocate(4, PlacementService.Strategy.FIRST_FIT)));
+        assertEquals(Optional.of(first), assertDoesNotThrow(() -> placement.allocate(3, PlacementService.Strategy.BEST_FIT)));
+        assertEquals(Optional.empty(), assertDoesNotThrow(() -> placement.allocate(6, PlacementService.Strategy.BEST_FIT)));
+        assertEquals(List.of(0, 5), resourceService.getByIds(List.of(first, second)).stream()
+                .map(ManagedResourceRecord::capacity)
+                .toList());
+    }
+
+    private long save(String name, int capacity) {
+        return assertDoesNotThrow(() -> resourceService.save(new SaveManagedResourceRequest(name, null, capacity))).id();
+    }
+
+    private Optional<Long> find(int units, PlacementService.Strategy strategy) {
+        return subject.find(units, strategy).map(ManagedResourceRecord::id);
+    }
+}
@@ -0,0 +1,123 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationRollupRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.retention.RetentionJob;
+import com.alevel.rmanager.data.service.retention.RetentionPolicy;
+import com.alevel.rmanager.data.service.retention.RetentionReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JPAAllocationHistoryRetentionServiceTest extends JPATest {
+
+    private static final RetentionPolicy POLICY = new RetentionPolicy(Duration.ofDays(30), Duration.ofDays(1), 2);
+
+    private JPAManagedResourceService managedResourceService;
+
+    private JPAResourceAllocationRequestService allocationRequestService;
+
+    private JPAAllocationHistoryRetentionService subject;
+
+    @BeforeEach
+    void setUp() {
+        managedResourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        allocationRequestService = new JPAResourceAllocationRequestService(() -> session);
+        subject = new JPAAllocationHistoryRetentionService(() -> session, POLICY);
+    }
+
+    @Test
+    @DisplayName("when history is older than retention period - should fold it into rollups in chunks")
+    void testCompaction() {
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testCompaction", null, 10))).id();
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, 4));
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, 7));
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, 5));
+
+        var job = new RetentionJob(subject, POLICY, Duration.ofHours(1), Clock.fixed(Instant.now().plus(Duration.ofDays(31)), ZoneOffset.UTC));
+
+        RetentionReport report = assertDoesNotThrow(job::runOnce);
+
+        assertEquals(3, report.compactedRequests());
+        assertEquals(2, report.chunks());
+        assertEquals(List.of(), assertDoesNotThrow(() -> allocationRequestService.getByResourceId(id)));
+
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, -9));
+        assertEquals(1, assertDoesNotThrow(job::runOnce).compactedRequests());
+
+        List<AllocationRollupRecord> rollups = assertDoesNotThrow(() -> subject.getRollupsByResourceId(id));
+        assertEquals(1, rollups.size());
+        AllocationRollupRecord rollup = rollups.get(0);
+        assertEquals(POLICY.periodStart(Instant.now()), rollup.periodStart());
+        assertEquals(3, rollup.accepted());
+        assertEquals(1, rollup.rejected());
+        assertEquals(0, rollup.unitsAllocated());
+        assertEquals(1, rollup.minCapacity());
+        assertEquals(10, rollup.maxCapacity());
+    }
+
+    @Test
+    @DisplayName("when atomic allocations are compacted - should compact or keep each group whole")
+    void testGroups() {
+        long memory = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testGroups - memory", null, 10))).id();
+        long cpu = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testGroups - cpu", null, 10))).id();
+        var atomicAllocationService = new JPAAtomicAllocationService(() -> session);
+        assertDoesNotThrow(() -> managedResourceService.allocate(memory, 1));
+        long compacted = assertDoesNotThrow(() -> atomicAllocationService.allocate(List.of(
+                new AllocationCommand(memory, 2),
+                new AllocationCommand(cpu, 2)))).groupId();
+        long kept = assertDoesNotThrow(() -> atomicAllocationService.allocate(List.of(
+                new AllocationCommand(memory, 1),
+                new AllocationCommand(cpu, 1)))).groupId();
+
+        Instant now = Instant.now();
+        session.beginTransaction();
+        session.createQuery("update AllocationRequest ar set ar.issuedAt = :issuedAt where ar.groupId = :groupId and ar.resource.id = :id")
+                .setParameter("issuedAt", now.plus(Duration.ofDays(40)))
+                .setParameter("groupId", kept)
+                .setParameter("id", cpu)
+                .executeUpdate();
+        session.getTransaction().commit();
+
+        var job = new RetentionJob(subject, POLICY, Duration.ofHours(1), Clock.fixed(now.plus(Duration.ofDays(31)), ZoneOffset.UTC));
+        assertDoesNotThrow(job::runOnce);
+
+        assertEquals(List.of(), atomicAllocationService.getByGroupId(compacted));
+        assertEquals(1, assertDoesNotThrow(() -> allocationRequestService.getByResourceId(memory)).size());
+        assertEquals(2, atomicAllocationService.getByGroupId(kept).size());
+    }
+
+    @Test
+    @DisplayName("when history is within retention period - should keep it raw")
+    void testRetention() {
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testRetention", null, 10))).id();
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, 4));
+
+        RetentionReport report = assertDoesNotThrow(() -> subject.compactBefore(POLICY.cutoff(Instant.now())));
+
+        assertEquals(0, report.compactedRequests());
+        assertEquals(1, assertDoesNotThrow(() -> allocationRequestService.getByResourceId(id)).size());
+        assertEquals(List.of(), assertDoesNotThrow(() -> subject.getRollupsByResourceId(id)));
+        assertThrows(ManagedResourceNotFoundException.class, () -> subject.getRollupsByResourceId(-1));
+    }
+
+    @Test
+    @DisplayName("when cutoff is computed - should align it to rollup period")
+    void testCutoff() {
+        Instant now = Instant.parse("2021-10-20T15:30:00Z");
+
+        assertEquals(Instant.parse("2021-09-20T00:00:00Z"), POLICY.cutoff(now));
+        assertEquals(Instant.parse("2021-10-20T12:00:00Z"),
+                new RetentionPolicy(Duration.ZERO, Duration.ofHours(6), 1).cutoff(now));
+    }
+}
@@ -0,0 +1,137 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.LeaseResultRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.lease.LeaseReaper;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JPAAllocationLeaseServiceTest extends JPATest {
+
+    private Session reaperSession;
+
+    private JPAManagedResourceService managedResourceService;
+
+    private JPAResourceAllocationRequestService allocationRequestService;
+
+    private JPAAllocationLeaseService subject;
+
+    @BeforeEach
+    void setUp() {
+        reaperSession = sessionFactory.openSession();
+        managedResourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        allocationRequestService = new JPAResourceAllocationRequestService(() -> session);
+        subject = new JPAAllocationLeaseService(() -> session);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reaperSession.close();
+    }
+
+    @Test
+    @DisplayName("when lease is released or expires - should give its units back once")
+    void testLease() {
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testLease", null, 10))).id();
+
+        LeaseResultRecord first = assertDoesNotThrow(() -> subject.allocate(id, 6, Duration.ofMinutes(1)));
+        LeaseResultRecord second = assertDoesNotThrow(() -> subject.allocate(id, 3, Duration.ofMinutes(1)));
+        LeaseResultRecord rejected = assertDoesNotThrow(() -> subject.allocate(id, 2, Duration.ofMinutes(1)));
+        assertEquals(AllocationResult.Status.ACCEPTED, first.result().status());
+        assertEquals(AllocationResult.Status.REJECTED, rejected.result().status());
+        assertNull(rejected.lease());
+        assertEquals(1, capacity(id));
+
+        assertTrue(assertDoesNotThrow(() -> subject.release(first.lease().id())));
+        assertFalse(assertDoesNotThrow(() -> subject.release(first.lease().id())));
+        assertEquals(7, capacity(id));
+
+        List<Long> ids = List.of(first.lease().id(), second.lease().id());
+        assertEquals(0, assertDoesNotThrow(() -> subject.expire(ids, Instant.now())));
+        assertEquals(List.of(second.lease()), subject.getExpired(Instant.now().plus(Duration.ofMinutes(2)), 10));
+        assertEquals(1, assertDoesNotThrow(() -> subject.expire(ids, Instant.now().plus(Duration.ofMinutes(2)))));
+        assertEquals(10, capacity(id));
+
+        List<AllocationRequestRecord> history = assertDoesNotThrow(() -> allocationRequestService.getByResourceId(id));
+        assertEquals(5, history.size());
+        assertEquals(-3, history.get(0).capacity());
+        assertEquals(7, history.get(0).previousResourceCapacity());
+
+        assertThrows(ManagedResourceNotFoundException.class, () -> subject.allocate(-1, 1, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> subject.allocate(id, 1, Duration.ZERO));
+    }
+
+    @Test
+    @DisplayName("when total capacity was lowered during the lease - should return and record only the units that fit")
+    void testLoweredTotalCapacity() {
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testLoweredTotalCapacity", null, 10))).id();
+        LeaseResultRecord first = assertDoesNotThrow(() -> subject.allocate(id, 6, Duration.ofMinutes(1)));
+        LeaseResultRecord second = assertDoesNotThrow(() -> subject.allocate(id, 3, Duration.ofMinutes(1)));
+        assertDoesNotThrow(() -> managedResourceService.update(id, new SaveManagedResourceRequest("testLoweredTotalCapacity", null, 5)));
+        session.clear();
+
+        assertTrue(assertDoesNotThrow(() -> subject.release(first.lease().id())));
+        assertEquals(5, capacity(id));
+        assertTrue(assertDoesNotThrow(() -> subject.release(second.lease().id())));
+        assertEquals(5, capacity(id));
+
+        List<AllocationRequestRecord> history = assertDoesNotThrow(() -> allocationRequestService.getByResourceId(id));
+        assertEquals(3, history.size());
+        assertEquals(-4, history.get(0).capacity());
+        assertEquals(1, history.get(0).previousResourceCapacity());
+        assertEquals(List.of(), subject.getActive(null, 10));
+    }
+
+    @Test
+    @DisplayName("when reaper runs - should expire scheduled leases and leases found on rebuild")
+    void testReaper() throws InterruptedException {
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testReaper", null, 10))).id();
+
+        // granted before the reaper starts, so only the rebuild can find it
+        assertDoesNotThrow(() -> subject.allocate(id, 4, Duration.ofMillis(300)));
+
+        var reaper = new LeaseReaper(
+                subject,
+                new JPAAllocationLeaseService(() -> reaperSession),
+                Duration.ofMillis(10),
+                Duration.ofHours(1),
+                100,
+                Clock.systemUTC());
+        try {
+            assertDoesNotThrow(reaper::start);
+            assertEquals(1, reaper.scheduledLeases());
+
+            assertDoesNotThrow(() -> reaper.allocate(id, 5, Duration.ofMillis(300)));
+            assertDoesNotThrow(() -> reaper.allocate(id, 1, Duration.ofHours(1)));
+            assertEquals(0, capacity(id));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (capacity(id) != 9 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(9, capacity(id));
+            assertEquals(1, reaper.scheduledLeases());
+        } finally {
+            reaper.close();
+        }
+    }
+
+    private int capacity(long id) {
+        return session.createQuery("select r.capacity from ManagedResource r where r.id = :id", Integer.class)
+                .setParameter("id", id)
+                .getSingleResult();
+    }
+}
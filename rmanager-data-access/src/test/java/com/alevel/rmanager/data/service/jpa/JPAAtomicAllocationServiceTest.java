@@ -0,0 +1,144 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.AtomicAllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JPAAtomicAllocationServiceTest extends JPATest {
+
+    private JPAManagedResourceService managedResourceService;
+
+    private JPAAtomicAllocationService subject;
+
+    @BeforeEach
+    void setUp() {
+        managedResourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        subject = new JPAAtomicAllocationService(() -> session);
+    }
+
+    @Test
+    @DisplayName("when every resource has capacity - should grant all commands and link their requests")
+    void testAllGranted() {
+        long cpu = save("testAllGranted-cpu", 8);
+        long memory = save("testAllGranted-memory", 16);
+
+        AtomicAllocationResultRecord result = assertDoesNotThrow(() -> subject.allocate(List.of(
+                new AllocationCommand(memory, 4),
+                new AllocationCommand(cpu, 2))));
+
+        assertTrue(result.accepted());
+        assertEquals(List.of(AllocationResultRecord.accepted(), AllocationResultRecord.accepted()), result.results());
+        assertEquals(6, managedResourceService.getById(cpu).orElseThrow().capacity());
+        assertEquals(12, managedResourceService.getById(memory).orElseThrow().capacity());
+
+        List<AllocationRequestRecord> linked = subject.getByGroupId(result.groupId());
+        assertEquals(List.of(cpu, memory), linked.stream().map(AllocationRequestRecord::resourceId).toList());
+        assertEquals(List.of(2, 4), linked.stream().map(AllocationRequestRecord::capacity).toList());
+    }
+
+    @Test
+    @DisplayName("when one resource lacks capacity - should grant nothing and record linked rejections")
+    void testNoneGranted() {
+        long cpu = save("testNoneGranted-cpu", 8);
+        long seats = save("testNoneGranted-seats", 2);
+
+        AtomicAllocationResultRecord result = assertDoesNotThrow(() -> subject.allocate(List.of(
+                new AllocationCommand(cpu, 4),
+                new AllocationCommand(seats, 3))));
+
+        assertFalse(result.accepted());
+        assertEquals(List.of(
+                AllocationResultRecord.linkedAllocationRejected(seats),
+                AllocationResultRecord.notEnoughCapacity(2, 3)), result.results());
+        assertEquals(8, managedResourceService.getById(cpu).orElseThrow().capacity());
+        assertEquals(2, managedResourceService.getById(seats).orElseThrow().capacity());
+
+        List<AllocationRequestRecord> linked = subject.getByGroupId(result.groupId());
+        assertEquals(2, linked.size());
+        assertTrue(linked.stream().allMatch(request -> request.result().status() == AllocationResult.Status.REJECTED));
+    }
+
+    @Test
+    @DisplayName("when commands are invalid or resource is missing - should fail without recording anything")
+    void testInvalidCommands() {
+        long cpu = save("testInvalidCommands", 8);
+
+        assertThrows(IllegalArgumentException.class, () -> subject.allocate(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> subject.allocate(List.of(
+                new AllocationCommand(cpu, 1),
+                new AllocationCommand(cpu, 1))));
+        assertThrows(ManagedResourceNotFoundException.class, () -> subject.allocate(List.of(
+                new AllocationCommand(cpu, 1),
+                new AllocationCommand(-1, 1))));
+
+        assertEquals(8, managedResourceService.getById(cpu).orElseThrow().capacity());
+        assertEquals(0L, session.createQuery(
+                        "select count(ar) from AllocationRequest ar where ar.resource.id = :id", Long.class)
+                .setParameter("id", cpu)
+                .getSingleResult());
+    }
+
+    @Test
+    @DisplayName("when many threads allocate overlapping resources - should never grant partially or overcommit")
+    void testContention() throws InterruptedException {
+        long[] ids = {save("testContention-a", 100), save("testContention-b", 100), save("testContention-c", 50)};
+
+        var unitOfWork = new UnitOfWork(sessionFactory);
+        var concurrent = new JPAAtomicAllocationService(unitOfWork, 4);
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            var random = new Random(17);
+            List<Future<AtomicAllocationResultRecord>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                var commands = new ArrayList<AllocationCommand>();
+                for (long id : ids) {
+                    commands.add(new AllocationCommand(id, 1));
+                }
+                Collections.shuffle(commands, random);
+                results.add(clients.submit(() -> {
+                    try {
+                        return concurrent.allocate(commands);
+                    } finally {
+                        unitOfWork.release();
+                    }
+                }));
+            }
+
+            long accepted = results.stream()
+                    .map(result -> assertDoesNotThrow(() -> result.get(30, TimeUnit.SECONDS)))
+                    .filter(AtomicAllocationResultRecord::accepted)
+                    .count();
+
+            assertEquals(50, accepted);
+            session.clear();
+            assertEquals(50, managedResourceService.getById(ids[0]).orElseThrow().capacity());
+            assertEquals(50, managedResourceService.getById(ids[1]).orElseThrow().capacity());
+            assertEquals(0, managedResourceService.getById(ids[2]).orElseThrow().capacity());
+        } finally {
+            clients.shutdown();
+            assertTrue(clients.awaitTermination(30, TimeUnit.SECONDS));
+        }
+    }
+
+    private long save(String name, int totalCapacity) {
+        return assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest(name, null, totalCapacity))).id();
+    }
+}
@@ -1,7 +1,10 @@
 package com.alevel.rmanager.data.service.jpa;
 
 import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
 import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.BulkImportFailure;
+import com.alevel.rmanager.data.model.dto.BulkImportResult;
 import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
 import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
 import com.alevel.rmanager.data.model.entity.AllocationResult;
@@ -11,7 +14,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -100,6 +107,29 @@ class JPAManagedResourceServiceTest extends JPATest {
         assertEquals(record, present.get());
     }
 
+    @Test
+    @DisplayName("when resources are retrieved by ids - should load them in chunks without managing them")
+    void testGetResourcesByIds() {
+        BulkImportResult imported = assertDoesNotThrow(() -> subject.saveAll(IntStream.range(0, IdChunks.CHUNK_SIZE + 20)
+                .mapToObj(i -> new SaveManagedResourceRequest("testGetResourcesByIds-" + i, null, 10))));
+        assertEquals(IdChunks.CHUNK_SIZE + 20, imported.imported());
+
+        List<Long> ids = session.createQuery(
+                        "select r.id from ManagedResource r where r.name like 'testGetResourcesByIds-%' order by r.id desc", Long.class)
+                .getResultList();
+        var requested = new ArrayList<>(ids);
+        requested.add(1, -1L);
+        requested.add(ids.get(0));
+
+        session.clear();
+        List<ManagedResourceRecord> records = subject.getByIds(requested);
+
+        assertEquals(ids, records.stream().map(ManagedResourceRecord::id).toList());
+        assertEquals("testGetResourcesByIds-0", records.get(records.size() - 1).name());
+        assertEquals(0, session.getStatistics().getEntityCount());
+        assertEquals(List.of(), subject.getByIds(List.of()));
+    }
+
     @Test
     @DisplayName("when resource is present - should update it by id")
     void testUpdateResource() {
@@ -207,4 +237,138 @@ class JPAManagedResourceServiceTest extends JPATest {
         assertTrue(resource.isPresent());
         assertEquals(10, resource.get().capacity());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("when batch allocation requested - should apply commands in order against running capacity")
+    void testAllocateAll() {
+        long first = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest(
+                "testAllocateAll - 1",
+                null,
+                10))).id();
+        long second = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest(
+                "testAllocateAll - 2",
+                null,
+                5))).id();
+
+        assertEquals(List.of(), assertDoesNotThrow(() -> subject.allocateAll(List.of())));
+        assertThrows(IllegalArgumentException.class, () -> subject.allocateAll(List.of(
+                new AllocationCommand(first, 1),
+                new AllocationCommand(second, 0))));
+
+        List<AllocationResultRecord> results = assertDoesNotThrow(() -> subject.allocateAll(List.of(
+                new AllocationCommand(first, 6),
+                new AllocationCommand(second, 5),
+                new AllocationCommand(first, 6),
+                new AllocationCommand(first, -2),
+                new AllocationCommand(second, -6),
+                new AllocationCommand(first, 6))));
+
+        assertEquals(
+                List.of(
+                        AllocationResult.Status.ACCEPTED,
+                        AllocationResult.Status.ACCEPTED,
+                        AllocationResult.Status.REJECTED,
+                        AllocationResult.Status.ACCEPTED,
+                        AllocationResult.Status.REJECTED,
+                        AllocationResult.Status.ACCEPTED),
+                results.stream().map(AllocationResultRecord::status).toList());
+        assertNotNull(results.get(2).reason());
+        assertNotNull(results.get(4).reason());
+
+        assertEquals(0, subject.getById(first).orElseThrow().capacity());
+        assertEquals(0, subject.getById(second).orElseThrow().capacity());
+
+        assertEquals(6L, session.createQuery("select count(ar) from AllocationRequest ar where ar.resource.id in :ids", Long.class)
+                .setParameter("ids", List.of(first, second))
+                .getSingleResult());
+    }
+
+    @Test
+    @DisplayName("when batch references missing resource - should apply nothing")
+    void testAllocateAllMissingResource() {
+        long id = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest(
+                "testAllocateAllMissingResource",
+                null,
+                10))).id();
+
+        assertThrows(ManagedResourceNotFoundException.class, () -> subject.allocateAll(List.of(
+                new AllocationCommand(id, 3),
+                new AllocationCommand(-1, 3))));
+
+        assertEquals(10, subject.getById(id).orElseThrow().capacity());
+        assertEquals(0L, session.createQuery("select count(ar) from AllocationRequest ar where ar.resource.id = :id", Long.class)
+                .setParameter("id", id)
+                .getSingleResult());
+    }
+
+    @Test
+    @DisplayName("when allocating with conditional update - should claim capacity with the same outcomes")
+    void testAllocateConditionalUpdate() {
+        var conditional = new JPAManagedResourceService(
+                () -> session,
+                validatorFactory,
+                JPAManagedResourceService.AllocationMode.CONDITIONAL_UPDATE);
+
+        assertThrows(ManagedResourceNotFoundException.class, () -> conditional.allocate(-1, 3));
+
+        long id = assertDoesNotThrow(() -> conditional.save(new SaveManagedResourceRequest(
+                "testAllocateConditionalUpdate",
+                null,
+                10))).id();
+
+        assertThrows(IllegalArgumentException.class, () -> conditional.allocate(id, 0));
+
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> conditional.allocate(id, 4)).status());
+        assertEquals(6, conditional.getById(id).orElseThrow().capacity());
+
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> conditional.allocate(id, 6)).status());
+        assertEquals(0, conditional.getById(id).orElseThrow().capacity());
+
+        AllocationResultRecord rejected = assertDoesNotThrow(() -> conditional.allocate(id, 1));
+        assertEquals(AllocationResult.Status.REJECTED, rejected.status());
+        assertNotNull(rejected.reason());
+        assertEquals(0, conditional.getById(id).orElseThrow().capacity());
+
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> conditional.allocate(id, -10)).status());
+        assertEquals(10, conditional.getById(id).orElseThrow().capacity());
+
+        AllocationResultRecord overReleased = assertDoesNotThrow(() -> conditional.allocate(id, -1));
+        assertEquals(AllocationResult.Status.REJECTED, overReleased.status());
+        assertNotNull(overReleased.reason());
+        assertEquals(10, conditional.getById(id).orElseThrow().capacity());
+
+        List<Integer> previousCapacities = session.createQuery("""
+                        select ar.previousResourceCapacity from AllocationRequest ar
+                        where ar.resource.id = :id order by ar.id
+                        """, Integer.class)
+                .setParameter("id", id)
+                .getResultList();
+        assertEquals(List.of(10, 6, 0, 0, 10), previousCapacities);
+    }
+
+    @Test
+    @DisplayName("when resources are imported in bulk - should persist valid ones and report failures")
+    void testSaveAll() {
+        assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest("testSaveAll - existing", null, 1)));
+
+        Stream<SaveManagedResourceRequest> requests = IntStream.range(0, 120)
+                .mapToObj(i -> switch (i) {
+                    case 7 -> new SaveManagedResourceRequest(" ", null, 10);
+                    case 64 -> new SaveManagedResourceRequest("testSaveAll - existing", null, 10);
+                    case 100 -> new SaveManagedResourceRequest("testSaveAll - 100", null, 0);
+                    default -> new SaveManagedResourceRequest("testSaveAll - " + i, null, 10 + i);
+                });
+
+        BulkImportResult result = assertDoesNotThrow(() -> subject.saveAll(requests));
+
+        assertEquals(117, result.imported());
+        assertEquals(List.of(7L, 64L, 100L), result.failures().stream().map(BulkImportFailure::index).toList());
+        assertEquals("testSaveAll - existing", result.failures().get(1).name());
+        assertEquals(0, session.getStatistics().getEntityCount());
+
+        Long imported = session.createQuery(
+                        "select count(r) from ManagedResource r where r.name like 'testSaveAll - %' and r.capacity = r.totalCapacity", Long.class)
+                .getSingleResult();
+        assertEquals(118, imported);
+    }
+}
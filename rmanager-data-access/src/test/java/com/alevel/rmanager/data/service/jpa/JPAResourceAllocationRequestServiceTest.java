@@ -1,6 +1,7 @@
 package com.alevel.rmanager.data.service.jpa;
 
 import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
 import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
 import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
 import com.alevel.rmanager.data.model.entity.AllocationResult;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,8 +48,11 @@ class JPAResourceAllocationRequestServiceTest extends JPATest {
                 .setParameter("id", resourceId)
                 .getSingleResult();
 
+        session.clear();
         Optional<AllocationRequestRecord> result = subject.getById(requestId);
         assertTrue(result.isPresent());
+        assertEquals(0, session.getStatistics().getEntityCount());
+        assertEquals(List.of(result.get()), subject.getByIds(List.of(-1L, requestId, requestId)));
 
         var allocationRequest = result.get();
 
@@ -98,4 +103,100 @@ class JPAResourceAllocationRequestServiceTest extends JPATest {
 
         assertFalse(result2.get(0).issuedAt().isBefore(result2.get(1).issuedAt()));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("when paging through alloc requests - should return whole history newest first without overlaps")
+    void testGetAllocationRequestsPage() {
+
+        assertThrows(ManagedResourceNotFoundException.class, () -> subject.getByResourceId(-1, null, 10));
+
+        Long resourceId = assertDoesNotThrow(() -> resourceService.save(new SaveManagedResourceRequest(
+                "testGetAllocationRequestsPage",
+                null,
+                100
+        ))).id();
+
+        assertEquals(List.of(), assertDoesNotThrow(() -> subject.getByResourceId(resourceId, null, 10)));
+        assertThrows(IllegalArgumentException.class, () -> subject.getByResourceId(resourceId, null, 0));
+
+        for (int units = 1; units <= 5; units++) {
+            int allocated = units;
+            assertDoesNotThrow(() -> resourceService.allocate(resourceId, allocated));
+        }
+
+        List<AllocationRequestRecord> history = assertDoesNotThrow(() -> subject.getByResourceId(resourceId));
+
+        List<AllocationRequestRecord> page1 = assertDoesNotThrow(() -> subject.getByResourceId(resourceId, null, 2));
+        List<AllocationRequestRecord> page2 = assertDoesNotThrow(() -> subject.getByResourceId(
+                resourceId, AllocationHistoryCursor.after(page1.get(1)), 2));
+        List<AllocationRequestRecord> page3 = assertDoesNotThrow(() -> subject.getByResourceId(
+                resourceId, AllocationHistoryCursor.after(page2.get(1)), 2));
+        List<AllocationRequestRecord> page4 = assertDoesNotThrow(() -> subject.getByResourceId(
+                resourceId, AllocationHistoryCursor.after(page3.get(0)), 2));
+
+        assertEquals(2, page1.size());
+        assertEquals(2, page2.size());
+        assertEquals(1, page3.size());
+        assertEquals(List.of(), page4);
+
+        assertEquals(history, Stream.of(page1, page2, page3).flatMap(List::stream).toList());
+    }
+
+    @Test
+    @DisplayName("when streaming alloc requests - should return whole history newest first")
+    void testStreamAllocationRequests() {
+
+        assertThrows(ManagedResourceNotFoundException.class, () -> subject.streamByResourceId(-1));
+
+        Long resourceId = assertDoesNotThrow(() -> resourceService.save(new SaveManagedResourceRequest(
+                "testStreamAllocationRequests",
+                null,
+                100
+        ))).id();
+
+        try (Stream<AllocationRequestRecord> empty = assertDoesNotThrow(() -> subject.streamByResourceId(resourceId))) {
+            assertEquals(List.of(), empty.toList());
+        }
+
+        for (int units = 1; units <= 5; units++) {
+            int allocated = units;
+            assertDoesNotThrow(() -> resourceService.allocate(resourceId, allocated));
+        }
+
+        List<AllocationRequestRecord> history = assertDoesNotThrow(() -> subject.getByResourceId(resourceId));
+
+        try (Stream<AllocationRequestRecord> stream = assertDoesNotThrow(() -> subject.streamByResourceId(resourceId))) {
+            assertEquals(history, stream.toList());
+        }
+
+        assertFalse(session.getTransaction().isActive());
+    }
+
+    @Test
+    @DisplayName("when reading after an id - should return requests of all resources in id order")
+    void testGetAfterId() {
+        long lastId = subject.getLastId();
+        assertEquals(List.of(), subject.getAfterId(lastId, 10));
+
+        Long first = assertDoesNotThrow(() -> resourceService.save(new SaveManagedResourceRequest(
+                "testGetAfterId-1",
+                null,
+                10
+        ))).id();
+        Long second = assertDoesNotThrow(() -> resourceService.save(new SaveManagedResourceRequest(
+                "testGetAfterId-2",
+                null,
+                10
+        ))).id();
+        assertDoesNotThrow(() -> resourceService.allocate(first, 1));
+        assertDoesNotThrow(() -> resourceService.allocate(second, 2));
+        assertDoesNotThrow(() -> resourceService.allocate(first, 3));
+
+        List<AllocationRequestRecord> all = subject.getAfterId(lastId, 10);
+        assertEquals(List.of(first, second, first), all.stream().map(AllocationRequestRecord::resourceId).toList());
+        assertEquals(all.get(2).id(), subject.getLastId());
+        assertEquals(all.subList(1, 3), subject.getAfterId(all.get(0).id(), 10));
+        assertEquals(all.subList(1, 2), subject.getAfterId(all.get(0).id(), 1));
+        assertThrows(IllegalArgumentException.class, () -> subject.getAfterId(lastId, 0));
+    }
+}
@@ -0,0 +1,96 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.ResourceStatisticsRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JPAResourceStatisticsServiceTest extends JPATest {
+
+    private JPAManagedResourceService managedResourceService;
+
+    private JPAResourceStatisticsService subject;
+
+    @BeforeEach
+    void setUp() {
+        managedResourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        subject = new JPAResourceStatisticsService(() -> session);
+    }
+
+    @Test
+    @DisplayName("when resources are allocated - should keep counters and peak usage up to date")
+    void testIncrementalCounters() {
+        var conditional = new JPAManagedResourceService(() -> session, validatorFactory, JPAManagedResourceService.AllocationMode.CONDITIONAL_UPDATE);
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testIncrementalCounters", null, 10))).id();
+
+        assertEquals(Optional.of(new ResourceStatisticsRecord(id, 0, 0, 0, 0, 10, 10)), subject.getByResourceId(id));
+
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, 6));
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, 6));
+        assertDoesNotThrow(() -> conditional.allocate(id, 3));
+        assertDoesNotThrow(() -> managedResourceService.allocateAll(List.of(
+                new AllocationCommand(id, -5),
+                new AllocationCommand(id, 20),
+                new AllocationCommand(id, 1))));
+
+        ResourceStatisticsRecord statistics = subject.getByResourceId(id).orElseThrow();
+        assertEquals(new ResourceStatisticsRecord(id, 4, 2, 5, 9, 5, 10), statistics);
+        assertEquals(0.5, statistics.utilization());
+        assertEquals(0.9, statistics.peakUtilization());
+
+        assertEquals(Optional.empty(), subject.getByResourceId(-1));
+    }
+
+    @Test
+    @DisplayName("when statistics are missing - should backfill the same counters from history")
+    void testBackfill() {
+        long first = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testBackfill-1", null, 10))).id();
+        long second = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testBackfill-2", null, 5))).id();
+        long third = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testBackfill-3", null, 5))).id();
+        assertDoesNotThrow(() -> managedResourceService.allocate(first, 8));
+        assertDoesNotThrow(() -> managedResourceService.allocate(first, 4));
+        assertDoesNotThrow(() -> managedResourceService.allocate(first, -3));
+        assertDoesNotThrow(() -> managedResourceService.allocate(second, 5));
+
+        List<ResourceStatisticsRecord> incremental = List.of(
+                subject.getByResourceId(first).orElseThrow(),
+                subject.getByResourceId(second).orElseThrow(),
+                subject.getByResourceId(third).orElseThrow());
+
+        session.getTransaction().begin();
+        session.createQuery("delete from ResourceStatistics").executeUpdate();
+        session.getTransaction().commit();
+        assertEquals(0, subject.getByResourceId(first).orElseThrow().accepted());
+
+        assertTrue(assertDoesNotThrow(() -> subject.backfill(2)) >= 3);
+
+        assertEquals(incremental, List.of(
+                subject.getByResourceId(first).orElseThrow(),
+                subject.getByResourceId(second).orElseThrow(),
+                subject.getByResourceId(third).orElseThrow()));
+        assertEquals(new ResourceStatisticsRecord(first, 2, 1, 5, 8, 5, 10), incremental.get(0));
+    }
+
+    @Test
+    @DisplayName("when statistics of all resources are paged - should return them in id order")
+    void testGetAll() {
+        long first = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testGetAll-1", null, 10))).id();
+        long second = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testGetAll-2", null, 10))).id();
+        assertDoesNotThrow(() -> managedResourceService.allocate(second, 2));
+
+        List<ResourceStatisticsRecord> page = subject.getAll(first - 1, 2);
+
+        assertEquals(List.of(first, second), page.stream().map(ResourceStatisticsRecord::resourceId).toList());
+        assertEquals(1, page.get(1).accepted());
+        assertEquals(List.of(), subject.getAll(second, 10).stream()
+                .filter(statistics -> statistics.resourceId() <= second)
+                .toList());
+    }
+}
@@ -0,0 +1,171 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.dto.SnapshotStats;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.snapshot.SnapshotFormat;
+import com.alevel.rmanager.data.service.snapshot.SnapshotHandler;
+import com.alevel.rmanager.data.service.snapshot.SnapshotReader;
+import com.alevel.rmanager.data.service.snapshot.SnapshotWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JPASnapshotServiceTest extends JPATest {
+
+    private JPAManagedResourceService managedResourceService;
+
+    private JPAResourceAllocationRequestService allocationRequestService;
+
+    private JPASnapshotService subject;
+
+    @BeforeEach
+    void setUp() {
+        managedResourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        allocationRequestService = new JPAResourceAllocationRequestService(() -> session);
+        subject = new JPASnapshotService(() -> session);
+    }
+
+    @Test
+    @DisplayName("when database is exported - should write every resource followed by its history")
+    void testExport() {
+        ManagedResourceRecord first = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testExport - 1", null, 10)));
+        ManagedResourceRecord second = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testExport - 2", "second", 5)));
+        assertDoesNotThrow(() -> managedResourceService.allocate(first.id(), 4));
+        assertDoesNotThrow(() -> managedResourceService.allocate(second.id(), 6));
+        assertDoesNotThrow(() -> managedResourceService.allocate(first.id(), 3));
+
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            var bytes = new ByteArrayOutputStream();
+            SnapshotStats stats = assertDoesNotThrow(() -> subject.exportTo(Channels.newChannel(bytes), format));
+
+            List<Object> rows = read(format, bytes.toByteArray());
+            assertEquals(stats.rows(), rows.size());
+            assertEquals(bytes.size(), stats.bytes());
+
+            int firstIndex = rows.indexOf(managedResourceService.getById(first.id()).orElseThrow());
+            int secondIndex = rows.indexOf(managedResourceService.getById(second.id()).orElseThrow());
+            assertTrue(firstIndex >= 0 && secondIndex == firstIndex + 3, format.name());
+
+            List<AllocationRequestRecord> history = assertDoesNotThrow(() -> allocationRequestService.getByResourceId(first.id()));
+            assertEquals(history.get(1), rows.get(firstIndex + 1));
+            assertEquals(history.get(0), rows.get(firstIndex + 2));
+            assertEquals(AllocationResult.Status.REJECTED, ((AllocationRequestRecord) rows.get(secondIndex + 1)).result().status());
+        }
+    }
+
+    @Test
+    @DisplayName("when ids do not follow issue time - should export history in issue order")
+    void testExportIssueOrder() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        SnapshotWriter writer = SnapshotFormat.CSV.newWriter(Channels.newChannel(bytes));
+        writer.writeResource(new ManagedResourceRecord(-100L, "testExportIssueOrder", null, 7, 10));
+        writer.writeAllocationRequest(new AllocationRequestRecord(-1L, -100L, 2, 9, Instant.parse("2021-10-01T11:00:00Z"), AllocationResult.Status.ACCEPTED, null));
+        writer.writeAllocationRequest(new AllocationRequestRecord(-2L, -100L, 1, 10, Instant.parse("2021-10-01T10:00:00Z"), AllocationResult.Status.ACCEPTED, null));
+        writer.finish();
+        assertDoesNotThrow(() -> subject.importFrom(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), SnapshotFormat.CSV));
+
+        var exported = new ByteArrayOutputStream();
+        assertDoesNotThrow(() -> subject.exportTo(Channels.newChannel(exported), SnapshotFormat.CSV));
+
+        List<Object> rows = read(SnapshotFormat.CSV, exported.toByteArray());
+        int index = rows.indexOf(managedResourceService.getById(importedId("testExportIssueOrder")).orElseThrow());
+        assertEquals(Instant.parse("2021-10-01T10:00:00Z"), ((AllocationRequestRecord) rows.get(index + 1)).issuedAt());
+        assertEquals(Instant.parse("2021-10-01T11:00:00Z"), ((AllocationRequestRecord) rows.get(index + 2)).issuedAt());
+    }
+
+    @Test
+    @DisplayName("when snapshot is imported - should recreate resources and history under new ids")
+    void testImport() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        SnapshotWriter writer = SnapshotFormat.BINARY.newWriter(Channels.newChannel(bytes));
+        writer.writeResource(new ManagedResourceRecord(-100L, "testImport", "imported", 3, 10));
+        writer.writeAllocationRequest(new AllocationRequestRecord(-1L, -100L, 5, 10, Instant.parse("2021-10-01T10:00:00Z"), AllocationResult.Status.ACCEPTED, null));
+        writer.writeAllocationRequest(new AllocationRequestRecord(-2L, -100L, 2, 5, Instant.parse("2021-10-01T11:00:00Z"), AllocationResult.Status.ACCEPTED, null));
+        writer.finish();
+
+        SnapshotStats stats = assertDoesNotThrow(() -> subject.importFrom(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), SnapshotFormat.BINARY));
+
+        assertEquals(1, stats.resources());
+        assertEquals(2, stats.allocationRequests());
+        assertEquals(bytes.size(), stats.bytes());
+
+        ManagedResourceRecord imported = session.createQuery(
+                        "select new com.alevel.rmanager.data.model.dto.ManagedResourceRecord(r.id, r.name, r.description, r.capacity, r.totalCapacity) " +
+                                "from ManagedResource r where r.name = 'testImport'", ManagedResourceRecord.class)
+                .getSingleResult();
+        assertEquals(3, imported.capacity());
+        assertEquals(10, imported.totalCapacity());
+
+        List<AllocationRequestRecord> history = assertDoesNotThrow(() -> allocationRequestService.getByResourceId(imported.id()));
+        assertEquals(2, history.size());
+        assertEquals(Instant.parse("2021-10-01T11:00:00Z"), history.get(0).issuedAt());
+        assertEquals(5, history.get(1).capacity());
+    }
+
+    @Test
+    @DisplayName("when snapshot with atomic allocations is imported - should keep each group together under a new id")
+    void testImportGroups() throws IOException {
+        Instant issuedAt = Instant.parse("2021-10-01T10:00:00Z");
+        var bytes = new ByteArrayOutputStream();
+        SnapshotWriter writer = SnapshotFormat.CSV.newWriter(Channels.newChannel(bytes));
+        writer.writeResource(new ManagedResourceRecord(-100L, "testImportGroups - 1", null, 6, 10));
+        writer.writeAllocationRequest(new AllocationRequestRecord(-2L, -100L, 4, 10, issuedAt, AllocationResult.Status.ACCEPTED, null, -1L));
+        writer.writeAllocationRequest(new AllocationRequestRecord(-3L, -100L, 1, 6, issuedAt, AllocationResult.Status.REJECTED, "linked", null));
+        writer.writeResource(new ManagedResourceRecord(-200L, "testImportGroups - 2", null, 3, 5));
+        writer.writeAllocationRequest(new AllocationRequestRecord(-1L, -200L, 2, 5, issuedAt, AllocationResult.Status.ACCEPTED, null, -1L));
+        writer.finish();
+
+        assertDoesNotThrow(() -> subject.importFrom(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), SnapshotFormat.CSV));
+
+        List<AllocationRequestRecord> first = assertDoesNotThrow(() -> allocationRequestService.getByResourceId(importedId("testImportGroups - 1")));
+        List<AllocationRequestRecord> second = assertDoesNotThrow(() -> allocationRequestService.getByResourceId(importedId("testImportGroups - 2")));
+        AllocationRequestRecord grouped = first.stream().filter(request -> request.capacity() == 4).findFirst().orElseThrow();
+        AllocationRequestRecord ungrouped = first.stream().filter(request -> request.capacity() == 1).findFirst().orElseThrow();
+
+        assertEquals(grouped.id(), grouped.groupId());
+        assertEquals(grouped.groupId(), second.get(0).groupId());
+        assertNull(ungrouped.groupId());
+        assertEquals(List.of(grouped, second.get(0)), new JPAAtomicAllocationService(() -> session).getByGroupId(grouped.groupId()));
+    }
+
+    private long importedId(String name) {
+        return session.createQuery("select r.id from ManagedResource r where r.name = :name", Long.class)
+                .setParameter("name", name)
+                .getSingleResult();
+    }
+
+    private static List<Object> read(SnapshotFormat format, byte[] snapshot) {
+        SnapshotReader reader = format.newReader(Channels.newChannel(new ByteArrayInputStream(snapshot)));
+        var rows = new ArrayList<Object>();
+        SnapshotHandler handler = new SnapshotHandler() {
+            @Override
+            public void resource(ManagedResourceRecord resource) {
+                rows.add(resource);
+            }
+
+            @Override
+            public void allocationRequest(AllocationRequestRecord allocationRequest) {
+                rows.add(allocationRequest);
+            }
+        };
+        assertDoesNotThrow(() -> {
+            while (reader.readNext(handler)) {
+            }
+        });
+        return rows;
+    }
+}
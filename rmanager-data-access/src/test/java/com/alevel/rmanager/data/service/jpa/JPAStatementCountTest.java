@@ -0,0 +1,140 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationHistoryCursor;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the number of round trips of every service method. The session is cleared before each measured call,
+ * so counts do not depend on what earlier calls left in the persistence context.
+ */
+class JPAStatementCountTest extends JPATest {
+
+    private JPAManagedResourceService resources;
+
+    private JPAManagedResourceService conditionalResources;
+
+    private JPAResourceAllocationRequestService requests;
+
+    private long resourceId;
+
+    private long otherResourceId;
+
+    @BeforeEach
+    void setUp() throws Throwable {
+        resources = new JPAManagedResourceService(() -> session, validatorFactory);
+        conditionalResources = new JPAManagedResourceService(() -> session, validatorFactory,
+                JPAManagedResourceService.AllocationMode.CONDITIONAL_UPDATE);
+        requests = new JPAResourceAllocationRequestService(() -> session);
+
+        resourceId = resources.save(new SaveManagedResourceRequest(name(), null, 10)).id();
+        otherResourceId = resources.save(new SaveManagedResourceRequest(name(), null, 10)).id();
+        resources.allocate(resourceId, 2);
+        resources.allocate(resourceId, 3);
+        session.clear();
+    }
+
+    @Test
+    @DisplayName("when resources are read - should issue one select per call")
+    void testResourceReads() throws Throwable {
+        assertTrue(assertStatements(1, 0, () -> resources.getById(resourceId)).isPresent());
+        session.clear();
+        assertTrue(assertStatements(1, 0, () -> resources.getById(-1)).isEmpty());
+        session.clear();
+        assertEquals(2, assertStatements(1, 0, () -> resources.getByIds(List.of(resourceId, otherResourceId, -1L))).size());
+    }
+
+    @Test
+    @DisplayName("when resources are written - should insert or update each row once")
+    void testResourceWrites() throws Throwable {
+        assertStatements(2, 1, () -> resources.save(new SaveManagedResourceRequest(name(), null, 5)));
+        session.clear();
+        assertEquals(3, assertStatements(2, 1, () -> resources.saveAll(Stream.of(
+                new SaveManagedResourceRequest(name(), null, 1),
+                new SaveManagedResourceRequest(name(), null, 2),
+                new SaveManagedResourceRequest(name(), null, 3)))).imported());
+        session.clear();
+        assertStatements(2, 1, () -> {
+            resources.update(otherResourceId, new SaveManagedResourceRequest(name(), "updated", 20));
+            return null;
+        });
+        session.clear();
+        assertStatements(1, 0, () -> assertThrows(ManagedResourceNotFoundException.class,
+                () -> resources.update(-1, new SaveManagedResourceRequest(name(), null, 20))));
+    }
+
+    @Test
+    @DisplayName("when resource with history is deleted - should not delete its requests one by one")
+    void testResourceDelete() throws Throwable {
+        assertStatements(3, 0, () -> {
+            resources.delete(resourceId);
+            return null;
+        });
+        session.clear();
+        assertStatements(1, 0, () -> assertThrows(ManagedResourceNotFoundException.class, () -> resources.delete(-1)));
+    }
+
+    @Test
+    @DisplayName("when allocating - should not load allocation history")
+    void testAllocate() throws Throwable {
+        assertStatements(4, 1, () -> resources.allocate(resourceId, 1));
+        session.clear();
+        assertStatements(3, 1, () -> resources.allocate(resourceId, 100));
+        session.clear();
+        // the guarded update, the request inserted from the updated row and the statistics update
+        assertStatements(3, 0, () -> conditionalResources.allocate(resourceId, 1));
+        session.clear();
+        // a rejection also reads the locked row to tell why
+        assertStatements(4, 1, () -> conditionalResources.allocate(resourceId, 100));
+        session.clear();
+        // one select, one statistics update per resource, one batch of requests and one of capacities
+        assertStatements(5, 1, () -> resources.allocateAll(List.of(
+                new AllocationCommand(resourceId, 1),
+                new AllocationCommand(otherResourceId, 1),
+                new AllocationCommand(resourceId, 1))));
+    }
+
+    @Test
+    @DisplayName("when history is read - should issue one select per call, and one more only for empty history")
+    void testHistoryReads() throws Throwable {
+        List<AllocationRequestRecord> history = assertStatements(1, 0, () -> requests.getByResourceId(resourceId));
+        assertEquals(2, history.size());
+        assertStatements(2, 0, () -> requests.getByResourceId(otherResourceId));
+        assertStatements(2, 0, () -> assertThrows(ManagedResourceNotFoundException.class, () -> requests.getByResourceId(-1)));
+
+        var cursor = new AllocationHistoryCursor(history.get(0).issuedAt(), history.get(0).id());
+        assertEquals(1, assertStatements(1, 0, () -> requests.getByResourceId(resourceId, null, 1)).size());
+        assertEquals(1, assertStatements(1, 0, () -> requests.getByResourceId(resourceId, cursor, 10)).size());
+
+        assertStatements(1, 0, () -> {
+            try (Stream<AllocationRequestRecord> stream = requests.streamByResourceId(resourceId)) {
+                return stream.count();
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("when requests are read by id - should issue one select per call")
+    void testRequestReads() throws Throwable {
+        long lastId = assertStatements(1, 0, () -> requests.getLastId());
+        assertTrue(assertStatements(1, 0, () -> requests.getById(lastId)).isPresent());
+        assertEquals(1, assertStatements(1, 0, () -> requests.getByIds(List.of(lastId, -1L))).size());
+        assertEquals(List.of(), assertStatements(1, 0, () -> requests.getAfterId(lastId, 10)));
+    }
+
+    private static int names;
+
+    private static String name() {
+        return "statements-" + ++names;
+    }
+}
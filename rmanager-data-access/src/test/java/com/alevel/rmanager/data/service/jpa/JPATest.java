@@ -1,14 +1,20 @@
 package com.alevel.rmanager.data.service.jpa;
 
+import com.alevel.rmanager.data.service.metrics.StatementMetricsConnectionProvider;
 import jakarta.validation.Validation;
 import jakarta.validation.ValidatorFactory;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.function.ThrowingSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 abstract class JPATest {
 
@@ -40,4 +46,24 @@ abstract class JPATest {
         validatorFactory.close();
         sessionFactory.close();
     }
+
+    /**
+     * Runs {@code call} and asserts how many SQL statements it sent and how many times it flushed the session.
+     * Sequence calls are not counted, as pooled ids make them depend on earlier tests.
+     * Any exception thrown by the call is rethrown.
+     */
+    static <T> T assertStatements(int statements, int flushes, ThrowingSupplier<T> call) throws Throwable {
+        StatementMetricsConnectionProvider provider = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(ConnectionProvider.class)
+                .unwrap(StatementMetricsConnectionProvider.class);
+        long statementsBefore = provider.statements() - provider.sequenceCalls();
+        long flushesBefore = sessionFactory.getStatistics().getFlushCount();
+        try {
+            return call.get();
+        } finally {
+            assertEquals(statements, provider.statements() - provider.sequenceCalls() - statementsBefore, "SQL statements");
+            assertEquals(flushes, sessionFactory.getStatistics().getFlushCount() - flushesBefore, "Session flushes");
+        }
+    }
 }
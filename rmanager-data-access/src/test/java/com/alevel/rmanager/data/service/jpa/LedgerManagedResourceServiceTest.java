@@ -0,0 +1,301 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.journal.AllocationJournal;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerManagedResourceServiceTest extends JPATest {
+
+    private Session writerSession;
+
+    private JPAManagedResourceService resourceService;
+
+    private LedgerManagedResourceService subject;
+
+    @BeforeEach
+    void setUp() {
+        writerSession = sessionFactory.openSession();
+        resourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        subject = ledger(LedgerManagedResourceService.Durability.WRITE_BEHIND);
+        subject.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        assertDoesNotThrow(() -> subject.close());
+        writerSession.close();
+    }
+
+    @Test
+    @DisplayName("when allocating through ledger - should decide in memory and write history behind")
+    void testAllocateWriteBehind() {
+        assertThrows(ManagedResourceNotFoundException.class, () -> subject.allocate(-1, 3));
+
+        long id = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest(
+                "testAllocateWriteBehind",
+                null,
+                10))).id();
+
+        assertThrows(IllegalArgumentException.class, () -> subject.allocate(id, 0));
+
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> subject.allocate(id, 4)).status());
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> subject.allocate(id, 6)).status());
+        AllocationResultRecord rejected = assertDoesNotThrow(() -> subject.allocate(id, 1));
+        assertEquals(AllocationResult.Status.REJECTED, rejected.status());
+        assertNotNull(rejected.reason());
+        assertEquals(0, subject.getById(id).orElseThrow().capacity());
+
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> subject.allocate(id, -10)).status());
+        assertEquals(AllocationResult.Status.REJECTED, assertDoesNotThrow(() -> subject.allocate(id, -1)).status());
+
+        assertDoesNotThrow(() -> subject.flush());
+
+        assertEquals(10, persistedCapacity(id));
+        assertEquals(List.of(10, 6, 0, 0, 10), persistedPreviousCapacities(id));
+    }
+
+    @Test
+    @DisplayName("when awaiting flush - allocation should be persisted once it returns")
+    void testAllocateAwaitFlush() {
+        assertDoesNotThrow(() -> subject.close());
+        subject = ledger(LedgerManagedResourceService.Durability.AWAIT_FLUSH);
+        subject.start();
+
+        long id = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest(
+                "testAllocateAwaitFlush",
+                null,
+                10))).id();
+
+        List<AllocationResultRecord> results = assertDoesNotThrow(() -> subject.allocateAll(List.of(
+                new AllocationCommand(id, 7),
+                new AllocationCommand(id, 7),
+                new AllocationCommand(id, 3))));
+
+        assertEquals(
+                List.of(AllocationResult.Status.ACCEPTED, AllocationResult.Status.REJECTED, AllocationResult.Status.ACCEPTED),
+                results.stream().map(AllocationResultRecord::status).toList());
+        assertEquals(0, persistedCapacity(id));
+        assertEquals(List.of(10, 3, 3), persistedPreviousCapacities(id));
+    }
+
+    @Test
+    @DisplayName("when started - should rebuild ledger from persisted resources")
+    void testRebuild() {
+        long id = assertDoesNotThrow(() -> resourceService.save(new SaveManagedResourceRequest(
+                "testRebuild",
+                null,
+                10))).id();
+        assertDoesNotThrow(() -> resourceService.allocate(id, 8));
+
+        assertDoesNotThrow(() -> subject.close());
+        subject = ledger(LedgerManagedResourceService.Durability.WRITE_BEHIND);
+        subject.start();
+
+        assertEquals(2, subject.getById(id).orElseThrow().capacity());
+        assertEquals(AllocationResult.Status.REJECTED, assertDoesNotThrow(() -> subject.allocate(id, 3)).status());
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> subject.allocate(id, 2)).status());
+    }
+
+    @Test
+    @DisplayName("when total capacity is updated - ledger should pick up the new total")
+    void testUpdateTotalCapacity() {
+        long id = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest(
+                "testUpdateTotalCapacity",
+                null,
+                10))).id();
+        assertDoesNotThrow(() -> subject.allocate(id, 10));
+
+        assertDoesNotThrow(() -> subject.update(id, new SaveManagedResourceRequest(
+                "testUpdateTotalCapacity",
+                null,
+                20)));
+
+        assertEquals(20, subject.getById(id).orElseThrow().totalCapacity());
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> subject.allocate(id, -15)).status());
+        assertEquals(AllocationResult.Status.REJECTED, assertDoesNotThrow(() -> subject.allocate(id, -6)).status());
+        assertEquals(15, subject.getById(id).orElseThrow().capacity());
+
+        assertDoesNotThrow(() -> subject.flush());
+        assertEquals(15, persistedCapacity(id));
+    }
+
+    @Test
+    @DisplayName("when resource is updated while it is allocated - capacity should never drop below zero")
+    void testConcurrentUpdate() throws Exception {
+        long id = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest(
+                "testConcurrentUpdate",
+                null,
+                10))).id();
+
+        var done = new AtomicBoolean();
+        var allocators = new ArrayList<Thread>();
+        var failures = new ConcurrentLinkedQueue<Throwable>();
+        for (int i = 0; i < 4; i++) {
+            var allocator = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        if (subject.allocate(id, 3).status() == AllocationResult.Status.ACCEPTED) {
+                            subject.allocate(id, -3);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            allocator.start();
+            allocators.add(allocator);
+        }
+        try {
+            for (int i = 0; i < 50; i++) {
+                for (int totalCapacity : new int[]{20, 10}) {
+                    try {
+                        subject.update(id, new SaveManagedResourceRequest("testConcurrentUpdate", null, totalCapacity));
+                    } catch (RManagerDataLayerException e) {
+                        // total capacity below claimed capacity is rejected
+                    }
+                }
+            }
+        } finally {
+            done.set(true);
+            for (Thread allocator : allocators) {
+                allocator.join();
+            }
+        }
+        assertEquals(List.of(), List.copyOf(failures));
+
+        assertDoesNotThrow(() -> subject.flush());
+        session.clear();
+        int capacity = persistedCapacity(id);
+        assertTrue(capacity >= 0, "capacity " + capacity);
+        assertEquals(capacity, subject.getById(id).orElseThrow().capacity());
+        assertEquals(0, session.createQuery("""
+                        select count(ar) from AllocationRequest ar
+                        where ar.resource.id = :id and ar.previousResourceCapacity - ar.capacity < 0
+                        and ar.result.status = com.alevel.rmanager.data.model.entity.AllocationResult$Status.ACCEPTED
+                        """, Long.class)
+                .setParameter("id", id)
+                .getSingleResult());
+    }
+
+    @Test
+    @DisplayName("when process dies before writing - journaled allocations should be written on next start")
+    void testJournalReplay(@TempDir Path directory) throws Exception {
+        assertDoesNotThrow(() -> subject.close());
+
+        var journal = AllocationJournal.open(directory, 4096, false);
+        var crashed = new LedgerManagedResourceService(resourceService, () -> writerSession, journal, 100, Duration.ofHours(1));
+        crashed.start();
+        long id = assertDoesNotThrow(() -> crashed.save(new SaveManagedResourceRequest(
+                "testJournalReplay",
+                null,
+                10))).id();
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> crashed.allocate(id, 4)).status());
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> crashed.allocate(id, 6)).status());
+        assertEquals(AllocationResult.Status.REJECTED, assertDoesNotThrow(() -> crashed.allocate(id, 1)).status());
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("rmanager-ledger-writer")) {
+                thread.interrupt();
+                thread.join();
+            }
+        }
+        journal.close();
+        assertEquals(10, persistedCapacity(id));
+
+        try (var reopened = AllocationJournal.open(directory, 4096, false)) {
+            subject = new LedgerManagedResourceService(resourceService, () -> writerSession, reopened, 100, Duration.ofMillis(5));
+            subject.start();
+            assertEquals(0, persistedCapacity(id));
+            assertEquals(List.of(10, 6, 0), persistedPreviousCapacities(id));
+            assertEquals(0, subject.getById(id).orElseThrow().capacity());
+
+            assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> subject.allocate(id, -5)).status());
+            assertDoesNotThrow(() -> subject.close());
+            assertEquals(4, reopened.lastSequence());
+        }
+
+        try (var reopened = AllocationJournal.open(directory, 4096, false)) {
+            subject = new LedgerManagedResourceService(resourceService, () -> writerSession, reopened, 100, Duration.ofMillis(5));
+            subject.start();
+            assertDoesNotThrow(() -> subject.close());
+        }
+        assertEquals(5, persistedCapacity(id));
+        assertEquals(List.of(10, 6, 0, 0), persistedPreviousCapacities(id));
+    }
+
+    @Test
+    @DisplayName("when journaled allocation fails to be written - should retry it instead of handing its units back")
+    void testJournaledWriteRetry(@TempDir Path directory) throws Exception {
+        assertDoesNotThrow(() -> subject.close());
+
+        var failing = new AtomicBoolean();
+        Session brokenSession = sessionFactory.openSession();
+        brokenSession.close();
+        try (var journal = AllocationJournal.open(directory, 4096, false)) {
+            subject = new LedgerManagedResourceService(resourceService, () -> failing.get() ? brokenSession : writerSession,
+                    journal, 100, Duration.ofMillis(5));
+            subject.start();
+            long id = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest("testJournaledWriteRetry", null, 10))).id();
+
+            failing.set(true);
+            assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> subject.allocate(id, 4)).status());
+            assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> subject.allocate(id, 6)).status());
+            Thread.sleep(200);
+            assertEquals(0, subject.getById(id).orElseThrow().capacity());
+
+            failing.set(false);
+            assertDoesNotThrow(() -> subject.flush());
+            assertEquals(0, persistedCapacity(id));
+            assertEquals(List.of(10, 6), persistedPreviousCapacities(id));
+            assertEquals(AllocationResult.Status.REJECTED, assertDoesNotThrow(() -> subject.allocate(id, 1)).status());
+            assertDoesNotThrow(() -> subject.close());
+        } finally {
+            // the checkpoint belongs to this journal only
+            session.beginTransaction();
+            session.createQuery("delete from JournalCheckpoint").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    private LedgerManagedResourceService ledger(LedgerManagedResourceService.Durability durability) {
+        return new LedgerManagedResourceService(
+                resourceService,
+                () -> writerSession,
+                durability,
+                100,
+                Duration.ofMillis(5));
+    }
+
+    private int persistedCapacity(long id) {
+        return session.createQuery("select r.capacity from ManagedResource r where r.id = :id", Integer.class)
+                .setParameter("id", id)
+                .getSingleResult();
+    }
+
+    private List<Integer> persistedPreviousCapacities(long id) {
+        return session.createQuery("""
+                        select ar.previousResourceCapacity from AllocationRequest ar
+                        where ar.resource.id = :id order by ar.id
+                        """, Integer.class)
+                .setParameter("id", id)
+                .getResultList();
+    }
+}
@@ -0,0 +1,79 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.model.entity.ManagedResource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RejectionReasonMigrationTest extends JPATest {
+
+    private static final List<String> LEGACY_REASONS = List.of(
+            "Total capacity exceeded. Total = 10, got = 26",
+            "Not enough capacity. Was available = 0, requested = 3",
+            "Linked allocation of resource 9223372036854775807 was rejected",
+            "Rejected by an operator");
+
+    @Test
+    @DisplayName("when requests have text reasons - should move known formats into codes and keep the rest")
+    void testMigrate() {
+        var resourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        var requestService = new JPAResourceAllocationRequestService(() -> session);
+        long id = assertDoesNotThrow(() -> resourceService.save(new SaveManagedResourceRequest("testMigrate", null, 10))).id();
+
+        var transaction = session.beginTransaction();
+        for (String reason : LEGACY_REASONS) {
+            var request = new AllocationRequest();
+            request.setResource(session.getReference(ManagedResource.class, id));
+            request.setCapacity(3);
+            request.setPreviousResourceCapacity(0);
+            request.setResult(new AllocationResult(AllocationResult.Status.REJECTED, reason));
+            session.persist(request);
+        }
+        transaction.commit();
+        session.clear();
+
+        long migrated = assertDoesNotThrow(() -> new RejectionReasonMigration(() -> session).migrate(2));
+        assertEquals(3, migrated);
+        assertEquals(0, assertDoesNotThrow(() -> new RejectionReasonMigration(() -> session).migrate(2)));
+
+        List<AllocationResultRecord> results = assertDoesNotThrow(() -> requestService.getByResourceId(id)).stream()
+                .map(AllocationRequestRecord::result)
+                .toList();
+        assertEquals(LEGACY_REASONS, results.stream().map(AllocationResultRecord::reason).sorted(this::byLegacyOrder).toList());
+        assertEquals(3, results.stream().filter(result -> result.code() != null && result.legacyReason() == null).count());
+        assertTrue(results.stream().anyMatch(result -> "Rejected by an operator".equals(result.legacyReason())));
+    }
+
+    @Test
+    @DisplayName("when allocation is rejected - should store the code and build the reason only when read")
+    void testRejectionCode() {
+        var resourceService = new JPAManagedResourceService(() -> session, validatorFactory);
+        var requestService = new JPAResourceAllocationRequestService(() -> session);
+        long id = assertDoesNotThrow(() -> resourceService.save(new SaveManagedResourceRequest("testRejectionCode", null, 2))).id();
+
+        AllocationResultRecord rejected = assertDoesNotThrow(() -> resourceService.allocate(id, 3));
+        assertEquals(AllocationResultRecord.notEnoughCapacity(2, 3), rejected);
+        assertNull(rejected.legacyReason());
+
+        AllocationResultRecord stored = assertDoesNotThrow(() -> requestService.getByResourceId(id)).get(0).result();
+        assertEquals(rejected, stored);
+        assertEquals("Not enough capacity. Was available = 2, requested = 3", stored.reason());
+        assertEquals(stored, AllocationResultRecord.parse(AllocationResult.Status.REJECTED, stored.reason()));
+
+        AllocationResultRecord unknown = AllocationResultRecord.parse(AllocationResult.Status.REJECTED, "Total capacity exceeded. Total = 1, got = x");
+        assertNull(unknown.code());
+        assertEquals("Total capacity exceeded. Total = 1, got = x", unknown.reason());
+    }
+
+    private int byLegacyOrder(String first, String second) {
+        return Integer.compare(LEGACY_REASONS.indexOf(first), LEGACY_REASONS.indexOf(second));
+    }
+}
@@ -0,0 +1,87 @@
+package com.alevel.rmanager.data.service.jpa;
+
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnitOfWorkTest extends JPATest {
+
+    private UnitOfWork unitOfWork;
+
+    private JPAManagedResourceService managedResourceService;
+
+    private JPAResourceAllocationRequestService allocationRequestService;
+
+    @BeforeEach
+    void setUp() {
+        unitOfWork = new UnitOfWork(sessionFactory);
+        managedResourceService = new JPAManagedResourceService(unitOfWork, validatorFactory);
+        allocationRequestService = new JPAResourceAllocationRequestService(unitOfWork);
+    }
+
+    @AfterEach
+    void tearDown() {
+        unitOfWork.release();
+    }
+
+    @Test
+    @DisplayName("when operations run outside a scope - should keep the persistence context at the size of one operation")
+    void testContextPerOperation() {
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testContextPerOperation", null, 10))).id();
+        EntityManager jpa = unitOfWork.get();
+
+        int largestContext = 0;
+        for (int i = 0; i < 20_000; i++) {
+            int units = i % 2 == 0 ? 1 : -1;
+            assertDoesNotThrow(() -> managedResourceService.allocate(id, units));
+            largestContext = Math.max(largestContext, jpa.unwrap(Session.class).getStatistics().getEntityCount());
+        }
+
+        assertSame(jpa, unitOfWork.get());
+        assertEquals(0, jpa.unwrap(Session.class).getStatistics().getEntityCount());
+        assertTrue(largestContext <= 2, "persistence context grew to " + largestContext + " entities");
+        assertEquals(10, managedResourceService.getById(id).orElseThrow().capacity());
+    }
+
+    @Test
+    @DisplayName("when operations run in a scope - should share the context until the outermost scope closes")
+    void testScope() {
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testScope", null, 10))).id();
+
+        EntityManager jpa;
+        try (UnitOfWork.Scope scope = unitOfWork.begin()) {
+            jpa = unitOfWork.get();
+            assertDoesNotThrow(() -> managedResourceService.allocate(id, 1));
+            try (UnitOfWork.Scope nested = unitOfWork.begin()) {
+                assertDoesNotThrow(() -> managedResourceService.allocate(id, 1));
+            }
+            assertSame(jpa, unitOfWork.get());
+            assertEquals(3, jpa.unwrap(Session.class).getStatistics().getEntityCount());
+        }
+
+        assertEquals(0, jpa.unwrap(Session.class).getStatistics().getEntityCount());
+        assertEquals(8, managedResourceService.getById(id).orElseThrow().capacity());
+    }
+
+    @Test
+    @DisplayName("when a stream holds a transaction - should not clear its context for the next operation")
+    void testOpenStream() {
+        long id = assertDoesNotThrow(() -> managedResourceService.save(new SaveManagedResourceRequest("testOpenStream", null, 10))).id();
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, 1));
+        assertDoesNotThrow(() -> managedResourceService.allocate(id, 1));
+
+        try (Stream<?> history = assertDoesNotThrow(() -> allocationRequestService.streamByResourceId(id))) {
+            assertTrue(unitOfWork.get().getTransaction().isActive());
+            assertEquals(2, history.count());
+        }
+        assertFalse(unitOfWork.get().getTransaction().isActive());
+    }
+}
@@ -0,0 +1,64 @@
+package com.alevel.rmanager.data.service.lease;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    @DisplayName("when leases span several levels - should expire each once, never before its time")
+    void testExpiration() {
+        var random = new Random(42);
+        long start = 1_000_003;
+        var wheel = new TimingWheel(1, start);
+        Map<Long, Long> expirations = new HashMap<>();
+        for (long id = 0; id < 20_000; id++) {
+            long expiresAt = start + 1 + (long) Math.pow(2, random.nextDouble() * 20);
+            expirations.put(id, expiresAt);
+            assertTrue(wheel.schedule(id, expiresAt));
+        }
+        assertEquals(20_000, wheel.size());
+
+        long now = start;
+        var fired = new HashMap<Long, Long>();
+        while (wheel.size() > 0) {
+            now += 1 + random.nextInt(700);
+            long at = now;
+            wheel.advance(now, id -> assertNull(fired.put(id, at), "lease fired twice"));
+        }
+
+        assertEquals(expirations.keySet(), fired.keySet());
+        for (Map.Entry<Long, Long> expiration : expirations.entrySet()) {
+            assertTrue(fired.get(expiration.getKey()) >= expiration.getValue(), "lease fired early");
+        }
+    }
+
+    @Test
+    @DisplayName("when wheel advances step by step - should expire leases exactly at their tick")
+    void testPrecision() {
+        var wheel = new TimingWheel(10, 0);
+        assertTrue(wheel.schedule(1, 15));
+        assertTrue(wheel.schedule(2, 2_560));
+        assertTrue(wheel.schedule(3, 655_361));
+        assertFalse(wheel.schedule(4, 0));
+
+        List<long[]> fired = new ArrayList<>();
+        for (long now = 0; now <= 700_000; now += 10) {
+            long at = now;
+            wheel.advance(now, id -> fired.add(new long[]{id, at}));
+        }
+
+        assertEquals(3, fired.size());
+        assertArrayEquals(new long[]{1, 20}, fired.get(0));
+        assertArrayEquals(new long[]{2, 2_560}, fired.get(1));
+        assertArrayEquals(new long[]{3, 655_370}, fired.get(2));
+    }
+}
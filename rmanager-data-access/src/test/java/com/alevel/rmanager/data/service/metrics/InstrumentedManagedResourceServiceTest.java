@@ -0,0 +1,90 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationCommand;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.InMemoryManagedResourceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedManagedResourceServiceTest {
+
+    private InMemoryManagedResourceService delegate;
+
+    private InMemoryMetricsRegistry registry;
+
+    private InstrumentedManagedResourceService subject;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new InMemoryManagedResourceService();
+        registry = new InMemoryMetricsRegistry();
+        subject = new InstrumentedManagedResourceService(delegate, registry);
+    }
+
+    @Test
+    @DisplayName("when allocations are made - should count calls, errors and rejection reasons")
+    void testAllocationMetrics() {
+        long id = assertDoesNotThrow(() -> subject.save(new SaveManagedResourceRequest("testAllocationMetrics", null, 10))).id();
+
+        assertDoesNotThrow(() -> subject.allocate(id, 6));
+        assertDoesNotThrow(() -> subject.allocate(id, 6));
+        assertDoesNotThrow(() -> subject.allocate(id, -10));
+        assertThrows(ManagedResourceNotFoundException.class, () -> subject.allocate(-1, 1));
+        assertDoesNotThrow(() -> subject.allocateAll(List.of(new AllocationCommand(id, 1), new AllocationCommand(id, 20))));
+
+        MetricsSnapshot snapshot = registry.snapshot();
+
+        OperationSnapshot allocate = snapshot.operation(InstrumentedManagedResourceService.ALLOCATE);
+        assertEquals(4, allocate.calls());
+        assertEquals(1, allocate.errors());
+        assertEquals(1, allocate.accepted());
+        assertEquals(2, allocate.rejected());
+        assertEquals(1, allocate.rejectedNotEnoughCapacity());
+        assertEquals(1, allocate.rejectedTotalCapacityExceeded());
+        assertEquals(4, allocate.latency().count());
+        assertEquals(1.0 / 3, allocate.acceptRatio(), 1e-9);
+
+        OperationSnapshot allocateAll = snapshot.operation(InstrumentedManagedResourceService.ALLOCATE_ALL);
+        assertEquals(1, allocateAll.calls());
+        assertEquals(1, allocateAll.accepted());
+        assertEquals(1, allocateAll.rejectedNotEnoughCapacity());
+
+        assertEquals(1, snapshot.operation(InstrumentedManagedResourceService.SAVE).calls());
+        assertEquals(0, snapshot.operation(InstrumentedManagedResourceService.GET_BY_ID).calls());
+        assertEquals(snapshot.operations().keySet().stream().sorted().toList(), List.copyOf(snapshot.operations().keySet()));
+    }
+
+    @Test
+    @DisplayName("when rejection has no capacity code - should count it as rejected only")
+    void testRejectionCodes() {
+        OperationRecorder recorder = registry.operation("testRejectionCodes");
+
+        recorder.recordAllocation(AllocationResultRecord.linkedAllocationRejected(1L), 2);
+        recorder.recordAllocation(new AllocationResultRecord(AllocationResult.Status.REJECTED, "legacy reason"), -2);
+
+        OperationSnapshot snapshot = registry.snapshot().operation("testRejectionCodes");
+        assertEquals(2, snapshot.rejected());
+        assertEquals(0, snapshot.rejectedNotEnoughCapacity());
+        assertEquals(0, snapshot.rejectedTotalCapacityExceeded());
+    }
+
+    @Test
+    @DisplayName("when registry is disabled - should delegate without recording")
+    void testDisabled() {
+        var disabled = new InstrumentedManagedResourceService(delegate, MetricsRegistry.disabled());
+
+        long id = assertDoesNotThrow(() -> disabled.save(new SaveManagedResourceRequest("testDisabled", null, 10))).id();
+        assertDoesNotThrow(() -> disabled.allocate(id, 4));
+
+        assertEquals(6, disabled.getById(id).orElseThrow().capacity());
+        assertTrue(MetricsRegistry.disabled().snapshot().operations().isEmpty());
+    }
+}
@@ -0,0 +1,54 @@
+package com.alevel.rmanager.data.service.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("when latencies are recorded - should report percentiles within bucket precision")
+    void testPercentiles() {
+        var histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(10_000, snapshot.count());
+        assertEquals(Duration.ofMillis(10), snapshot.max());
+        assertWithinPrecision(5_000_000, snapshot.p50());
+        assertWithinPrecision(9_000_000, snapshot.p90());
+        assertWithinPrecision(9_900_000, snapshot.p99());
+        assertWithinPrecision(9_990_000, snapshot.p999());
+        assertWithinPrecision(5_000_500, snapshot.mean());
+    }
+
+    @Test
+    @DisplayName("when value is bucketed - should not exceed its bucket upper bound")
+    void testBuckets() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 65, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+    }
+
+    @Test
+    @DisplayName("when nothing is recorded - should report zeros")
+    void testEmpty() {
+        LatencySnapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.count());
+        assertEquals(Duration.ZERO, snapshot.p99());
+        assertEquals(Duration.ZERO, snapshot.mean());
+    }
+
+    private static void assertWithinPrecision(long expectedNanos, Duration actual) {
+        assertEquals(expectedNanos, actual.toNanos(), expectedNanos * 0.035);
+    }
+}
@@ -0,0 +1,195 @@
+package com.alevel.rmanager.data.service.migration;
+
+import com.alevel.rmanager.data.exception.RManagerDataLayerException;
+import com.alevel.rmanager.data.model.entity.ManagedResource;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    private String url;
+
+    private Connection connection;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        url = "jdbc:h2:mem:migrations-" + databases.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        connection = DriverManager.getConnection(url, "sa", "sa");
+    }
+
+    @AfterEach
+    void dropDatabase() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        connection.close();
+    }
+
+    @Test
+    @DisplayName("when database is empty - should apply all versions once and match the entity mappings")
+    void testMigrate() throws SQLException {
+        var migrator = new SchemaMigrator();
+
+        MigrationReport first = assertDoesNotThrow(() -> migrator.migrate(connection));
+        assertEquals(List.of("V1__baseline.sql", "V2__allocation_tables.sql", "V3__history_indexes.sql"), first.applied());
+        assertFalse(first.baselined());
+
+        MigrationReport second = assertDoesNotThrow(() -> migrator.migrate(connection));
+        assertEquals(List.of(), second.applied());
+        assertEquals(3, second.upToDate());
+        assertTrue(connection.getAutoCommit());
+
+        var config = new Configuration().configure()
+                .setProperty("hibernate.connection.url", url)
+                .setProperty("hibernate.hbm2ddl.auto", "validate");
+        assertDoesNotThrow(() -> config.buildSessionFactory().close());
+    }
+
+    @Test
+    @DisplayName("when history page of a resource is queried - should range scan the history index")
+    void testHistoryPlan() throws SQLException {
+        assertDoesNotThrow(() -> new SchemaMigrator().migrate(connection));
+
+        String plan = explain("""
+                select id, capacity, issued_at from alloc_requests
+                where resource_id = 1 and issued_at <= timestamp '2021-10-01 10:00:00'
+                and (issued_at < timestamp '2021-10-01 10:00:00' or (issued_at = timestamp '2021-10-01 10:00:00' and id < 100))
+                order by issued_at desc, id desc
+                """);
+        assertTrue(plan.contains("ALLOC_REQUESTS_RESOURCE_HISTORY_IDX: RESOURCE_ID = 1"), plan);
+        assertTrue(plan.contains("AND ISSUED_AT <="), plan);
+
+        String byName = explain("select id from managed_resources where name = 'cpu'");
+        assertTrue(byName.contains("MANAGED_RESOURCES_NAME_KEY"), byName);
+    }
+
+    @Test
+    @DisplayName("when rows violate new constraints - should reject them")
+    void testConstraints() {
+        assertDoesNotThrow(() -> new SchemaMigrator().migrate(connection));
+
+        assertThrows(SQLException.class, () -> execute(
+                "insert into managed_resources (id, name, capacity, total_capacity) values (1, 'cpu', -1, -1)"));
+        assertDoesNotThrow(() -> execute(
+                "insert into managed_resources (id, name, capacity, total_capacity) values (1, 'cpu', 4, 4)"));
+        assertThrows(SQLException.class, () -> execute("""
+                insert into alloc_requests (id, resource_id, previous_resource_capacity, capacity, issued_at, status, reason_code)
+                values (1, 1, 4, 2, current_timestamp, 0, 1)
+                """));
+    }
+
+    @Test
+    @DisplayName("when schema was created from entity mappings - should baseline it and apply later versions")
+    void testBaseline() {
+        var config = new Configuration().configure()
+                .setProperty("hibernate.connection.url", url)
+                .setProperty("hibernate.hbm2ddl.auto", "create");
+        assertDoesNotThrow(() -> config.buildSessionFactory().close());
+
+        MigrationReport report = assertDoesNotThrow(() -> new SchemaMigrator().migrate(connection));
+        assertTrue(report.baselined());
+        assertEquals(List.of("V2__allocation_tables.sql", "V3__history_indexes.sql"), report.applied());
+    }
+
+    @Test
+    @DisplayName("when schema was created from the first entity mappings - should bring it up to the current mappings")
+    void testLegacyBaseline() throws SQLException {
+        // as created by hbm2ddl before resource ids came from a sequence
+        execute("create sequence alloc_request_id_seq start with 1 increment by 10");
+        execute("""
+                create table alloc_requests (id bigint not null, capacity integer not null, issued_at timestamp not null,
+                previous_resource_capacity integer not null, reason varchar(255), status integer not null,
+                resource_id bigint not null, primary key (id))
+                """);
+        execute("""
+                create table managed_resources (id bigint generated by default as identity, capacity integer not null,
+                description varchar(255), name varchar(255) not null, total_capacity integer not null, primary key (id))
+                """);
+        execute("alter table managed_resources add constraint UK_managed_resources_name unique (name)");
+        execute("alter table alloc_requests add constraint FK_alloc_requests_resource foreign key (resource_id) references managed_resources");
+        for (int i = 0; i < 70; i++) {
+            execute("insert into managed_resources (name, capacity, total_capacity) values ('resource-" + i + "', 4, 10)");
+        }
+        execute("""
+                insert into alloc_requests (id, resource_id, previous_resource_capacity, capacity, issued_at, status)
+                values (nextval('alloc_request_id_seq'), 70, 10, 6, current_timestamp, 0)
+                """);
+
+        MigrationReport report = assertDoesNotThrow(() -> new SchemaMigrator().migrate(connection));
+        assertTrue(report.baselined());
+        assertEquals(List.of("V2__allocation_tables.sql", "V3__history_indexes.sql"), report.applied());
+        assertEquals("1", query("select count(*) from alloc_requests where reason_code is null and group_id is null"));
+
+        var config = new Configuration().configure()
+                .setProperty("hibernate.connection.url", url)
+                .setProperty("hibernate.hbm2ddl.auto", "validate");
+        try (var sessionFactory = config.buildSessionFactory();
+             var session = sessionFactory.openSession()) {
+            var resource = new ManagedResource();
+            resource.setName("resource-70");
+            resource.setCapacity(10);
+            resource.setTotalCapacity(10);
+            session.beginTransaction();
+            session.persist(resource);
+            session.getTransaction().commit();
+            assertEquals(71, resource.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("when applied version was changed - should throw")
+    void testChangedVersion() throws SQLException {
+        assertDoesNotThrow(() -> new SchemaMigrator().migrate(connection));
+        execute("update schema_history set checksum = checksum + 1 where version = 2");
+
+        assertThrows(RManagerDataLayerException.class, () -> new SchemaMigrator().migrate(connection));
+    }
+
+    @Test
+    @DisplayName("when repeatable script was changed - should run it again")
+    void testRepeatable() throws SQLException {
+        var migrator = new SchemaMigrator("db/migration-test", getClass().getClassLoader());
+
+        MigrationReport first = assertDoesNotThrow(() -> migrator.migrate(connection));
+        assertEquals(List.of("V1__create_notes.sql", "R__note_view.sql"), first.applied());
+        assertEquals("first", query("select body from note_bodies"));
+
+        assertEquals(List.of(), assertDoesNotThrow(() -> migrator.migrate(connection)).applied());
+
+        execute("update schema_history set checksum = checksum + 1 where script = 'R__note_view.sql'");
+        assertEquals(List.of("R__note_view.sql"), assertDoesNotThrow(() -> migrator.migrate(connection)).applied());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private String explain(String sql) throws SQLException {
+        return query("explain " + sql);
+    }
+
+    private String query(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(sql)) {
+            assertTrue(rows.next());
+            return rows.getString(1);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.alevel.rmanager.data.service.pipeline;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationResultRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import com.alevel.rmanager.data.service.InMemoryManagedResourceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitAllocationEngineTest {
+
+    private InMemoryManagedResourceService delegate;
+
+    private GroupCommitAllocationEngine subject;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new InMemoryManagedResourceService();
+        subject = new GroupCommitAllocationEngine(delegate, 64, Duration.ofMillis(20), 1024);
+        subject.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        subject.close();
+    }
+
+    @Test
+    @DisplayName("when allocations are submitted together - should apply them in arrival order in shared batches")
+    void testArrivalOrder() {
+        long id = delegate.save(new SaveManagedResourceRequest("testArrivalOrder", null, 10)).id();
+
+        CompletableFuture<AllocationResultRecord> first = subject.submit(id, 6);
+        CompletableFuture<AllocationResultRecord> second = subject.submit(id, 6);
+        CompletableFuture<AllocationResultRecord> third = subject.submit(id, -2);
+        CompletableFuture<AllocationResultRecord> fourth = subject.submit(id, 6);
+
+        assertEquals(AllocationResult.Status.ACCEPTED, first.join().status());
+        assertEquals(AllocationResult.Status.REJECTED, second.join().status());
+        assertEquals(AllocationResult.Status.ACCEPTED, third.join().status());
+        assertEquals(AllocationResult.Status.ACCEPTED, fourth.join().status());
+        assertEquals(0, delegate.getById(id).orElseThrow().capacity());
+
+        GroupCommitStats stats = subject.stats();
+        assertEquals(4, stats.requests());
+        assertTrue(stats.batches() < 4);
+    }
+
+    @Test
+    @DisplayName("when batch references missing resource - should fail only its allocations")
+    void testMissingResource() {
+        long id = delegate.save(new SaveManagedResourceRequest("testMissingResource", null, 10)).id();
+
+        CompletableFuture<AllocationResultRecord> missing = subject.submit(-1, 1);
+        CompletableFuture<AllocationResultRecord> present = subject.submit(id, 1);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> missing.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof ManagedResourceNotFoundException);
+        assertEquals(AllocationResult.Status.ACCEPTED, assertDoesNotThrow(() -> present.get(5, TimeUnit.SECONDS)).status());
+        assertEquals(1, subject.stats().failedRequests());
+    }
+
+    @Test
+    @DisplayName("when many threads allocate concurrently - should never grant more than the capacity")
+    void testConcurrentAllocations() throws InterruptedException {
+        long id = delegate.save(new SaveManagedResourceRequest("testConcurrentAllocations", null, 100)).id();
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<AllocationResultRecord>> results = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                results.add(clients.submit(() -> subject.submit(id, 1).join()));
+            }
+
+            long accepted = results.stream()
+                    .map(result -> assertDoesNotThrow(() -> result.get(10, TimeUnit.SECONDS)))
+                    .filter(result -> result.status() == AllocationResult.Status.ACCEPTED)
+                    .count();
+
+            assertEquals(100, accepted);
+            assertEquals(0, delegate.getById(id).orElseThrow().capacity());
+            assertEquals(400, subject.stats().requests());
+        } finally {
+            clients.shutdown();
+            assertTrue(clients.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
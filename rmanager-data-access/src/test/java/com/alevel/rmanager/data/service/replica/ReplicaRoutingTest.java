@@ -0,0 +1,160 @@
+package com.alevel.rmanager.data.service.replica;
+
+import com.alevel.rmanager.data.exception.ManagedResourceNotFoundException;
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.dto.SaveManagedResourceRequest;
+import com.alevel.rmanager.data.service.jpa.JPAManagedResourceService;
+import com.alevel.rmanager.data.service.jpa.JPAResourceAllocationRequestService;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two H2 databases stand in for the primary and the replica. Nothing replicates between them,
+ * so a test "replicates" a resource by saving it to both, and tells them apart by description.
+ */
+class ReplicaRoutingTest {
+
+    private static final Duration REPLICATION_LAG = Duration.ofMinutes(1);
+
+    private ValidatorFactory validatorFactory;
+
+    private SessionFactory primaryFactory;
+
+    private SessionFactory replicaFactory;
+
+    private Session primarySession;
+
+    private Session replicaSession;
+
+    private JPAManagedResourceService primaryResources;
+
+    private JPAManagedResourceService replicaResources;
+
+    private ReplicaRouter router;
+
+    private ReplicaRoutingManagedResourceService resources;
+
+    private ReplicaRoutingResourceAllocationRequestService requests;
+
+    @BeforeEach
+    void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        primaryFactory = sessionFactory("primary");
+        replicaFactory = sessionFactory("replica");
+        primarySession = primaryFactory.openSession();
+        replicaSession = replicaFactory.openSession();
+
+        primaryResources = new JPAManagedResourceService(() -> primarySession, validatorFactory);
+        replicaResources = new JPAManagedResourceService(() -> replicaSession, validatorFactory);
+        router = new ReplicaRouter(REPLICATION_LAG, Duration.ofMinutes(1));
+        resources = new ReplicaRoutingManagedResourceService(primaryResources, replicaResources, router);
+        requests = new ReplicaRoutingResourceAllocationRequestService(
+                new JPAResourceAllocationRequestService(() -> primarySession),
+                new JPAResourceAllocationRequestService(() -> replicaSession),
+                router);
+    }
+
+    @AfterEach
+    void tearDown() {
+        primarySession.close();
+        replicaSession.close();
+        primaryFactory.close();
+        replicaFactory.close();
+        validatorFactory.close();
+    }
+
+    private static SessionFactory sessionFactory(String database) {
+        return new Configuration().configure()
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1")
+                .buildSessionFactory();
+    }
+
+    @Test
+    @DisplayName("when resource is read - should read it from the replica, and from the primary when asked to")
+    void testReadFromReplica() throws Exception {
+        long id = replicate("testReadFromReplica");
+
+        assertEquals("replica", resources.getById(id).map(ManagedResourceRecord::description).orElseThrow());
+        assertEquals(List.of("replica"), resources.getByIds(List.of(id, -1L)).stream().map(ManagedResourceRecord::description).toList());
+        assertEquals("primary", router.readFromPrimary(() -> resources.getById(id)).map(ManagedResourceRecord::description).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("when resource was just written - should read it from the primary")
+    void testReadYourWrites() throws Exception {
+        long id = replicate("testReadYourWrites");
+        long other = replicate("testReadYourWritesOther");
+
+        resources.allocate(id, 3);
+
+        assertEquals(7, resources.getById(id).orElseThrow().capacity());
+        assertEquals(List.of("primary", "replica"), resources.getByIds(List.of(id, other)).stream()
+                .map(ManagedResourceRecord::description).toList());
+        assertEquals(1, requests.getByResourceId(id).size());
+        assertEquals(List.of(), requests.getByResourceId(other));
+
+        var expired = new ReplicaRouter(Duration.ZERO, Duration.ofMinutes(1));
+        var routed = new ReplicaRoutingManagedResourceService(primaryResources, replicaResources, expired);
+        routed.allocate(id, 1);
+        assertEquals(10, routed.getById(id).orElseThrow().capacity());
+    }
+
+    @Test
+    @DisplayName("when replica does not have the data yet - should read it from the primary")
+    void testReplicaMiss() throws Exception {
+        long id = primaryResources.save(new SaveManagedResourceRequest("testReplicaMiss", "primary", 10)).id();
+        primaryResources.allocate(id, 2);
+
+        assertTrue(resources.getById(id).isPresent());
+        List<AllocationRequestRecord> history = requests.getByResourceId(id);
+        assertEquals(1, history.size());
+        assertTrue(requests.getById(history.get(0).id()).isPresent());
+        assertEquals(history, requests.getByIds(List.of(history.get(0).id())));
+        assertThrows(ManagedResourceNotFoundException.class, () -> requests.getByResourceId(-1));
+    }
+
+    @Test
+    @DisplayName("when replica fails - should read from the primary until the retry interval passes")
+    void testReplicaFailure() throws Exception {
+        long id = replicate("testReplicaFailure");
+        replicaSession.beginTransaction();
+        replicaSession.createNativeQuery("drop table alloc_requests").executeUpdate();
+        replicaSession.getTransaction().commit();
+
+        assertEquals(List.of(), requests.getByResourceId(id));
+        assertFalse(router.isReplicaAvailable());
+        assertEquals("primary", resources.getById(id).map(ManagedResourceRecord::description).orElseThrow());
+
+        var retrying = new ReplicaRouter(REPLICATION_LAG, Duration.ZERO);
+        var routed = new ReplicaRoutingManagedResourceService(primaryResources, replicaResources, retrying);
+        var routedRequests = new ReplicaRoutingResourceAllocationRequestService(
+                new JPAResourceAllocationRequestService(() -> primarySession),
+                new JPAResourceAllocationRequestService(() -> replicaSession),
+                retrying);
+        assertEquals(0, routedRequests.getLastId());
+        assertEquals("replica", routed.getById(id).map(ManagedResourceRecord::description).orElseThrow());
+        assertTrue(retrying.isReplicaAvailable());
+    }
+
+    private long replicate(String name) throws Exception {
+        long id = primaryResources.save(new SaveManagedResourceRequest(name, "primary", 10)).id();
+        long replicated = replicaResources.save(new SaveManagedResourceRequest(name, "replica", 10)).id();
+        assertEquals(id, replicated);
+        primarySession.clear();
+        replicaSession.clear();
+        return id;
+    }
+}
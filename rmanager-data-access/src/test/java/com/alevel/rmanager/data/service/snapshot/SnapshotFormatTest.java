@@ -0,0 +1,123 @@
+package com.alevel.rmanager.data.service.snapshot;
+
+import com.alevel.rmanager.data.model.dto.AllocationRequestRecord;
+import com.alevel.rmanager.data.model.dto.ManagedResourceRecord;
+import com.alevel.rmanager.data.model.entity.AllocationResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFormatTest {
+
+    private static final List<Object> ROWS = List.of(
+            new ManagedResourceRecord(1L, "plain", null, 10, 10),
+            new AllocationRequestRecord(3L, 1L, 4, 10, Instant.parse("2021-10-01T10:15:30.123456789Z"), AllocationResult.Status.ACCEPTED, null),
+            new AllocationRequestRecord(4L, 1L, -20, 6, Instant.parse("2021-10-01T10:15:31Z"), AllocationResult.Status.REJECTED,
+                    "Total capacity exceeded. Total = 10, got = 26"),
+            new AllocationRequestRecord(5L, 1L, 2, 10, Instant.parse("2021-10-01T10:15:32Z"), AllocationResult.Status.ACCEPTED, null, 5L),
+            new ManagedResourceRecord(2L, "quoted, \"name\"\nwith lines", "", 0, Integer.MAX_VALUE),
+            new AllocationRequestRecord(6L, 2L, 0, 0, Instant.parse("2021-10-01T10:15:32Z"), AllocationResult.Status.REJECTED, "linked", 5L),
+            new ManagedResourceRecord(Long.MAX_VALUE, "ünïcödé ресурс", "описание", -1, 1)
+    );
+
+    private static final List<Object> UNGROUPED_ROWS = List.of(
+            new ManagedResourceRecord(1L, "plain", null, 10, 10),
+            new AllocationRequestRecord(3L, 1L, 4, 10, Instant.parse("2021-10-01T10:15:30Z"), AllocationResult.Status.ACCEPTED, null)
+    );
+
+    @Test
+    @DisplayName("when rows are written - should read back the same rows")
+    void testRoundTrip() throws IOException {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            assertEquals(ROWS, read(format, write(format, ROWS)), format.name());
+            assertEquals(List.of(), read(format, write(format, List.of())), format.name());
+        }
+    }
+
+    @Test
+    @DisplayName("when snapshot was written before group ids - should read requests as ungrouped")
+    void testUngrouped() throws IOException {
+        byte[] csv = """
+                resource,1,plain,,10,10
+                allocation_request,3,1,4,10,2021-10-01T10:15:30Z,ACCEPTED,
+                """.getBytes(StandardCharsets.UTF_8);
+        assertEquals(UNGROUPED_ROWS, read(SnapshotFormat.CSV, csv));
+
+        var bytes = new ByteArrayOutputStream();
+        var output = new ChannelOutput(Channels.newChannel(bytes));
+        output.putInt(BinarySnapshotWriter.MAGIC_V1);
+        output.put(BinarySnapshotWriter.RESOURCE);
+        output.putVarLong(1);
+        output.putVarLong(5);
+        output.put("plain".getBytes(StandardCharsets.UTF_8));
+        output.putVarLong(-1);
+        output.putVarLong(10);
+        output.putVarLong(10);
+        output.put(BinarySnapshotWriter.ALLOCATION_REQUEST);
+        for (long value : new long[]{3, 1, 4, 10, Instant.parse("2021-10-01T10:15:30Z").getEpochSecond(), 0}) {
+            output.putVarLong(value);
+        }
+        output.put((byte) AllocationResult.Status.ACCEPTED.ordinal());
+        output.putVarLong(-1);
+        output.put(BinarySnapshotWriter.END);
+        output.flush();
+        assertEquals(UNGROUPED_ROWS, read(SnapshotFormat.BINARY, bytes.toByteArray()));
+    }
+
+    @Test
+    @DisplayName("when snapshot is truncated - should fail instead of returning partial rows")
+    void testTruncated() throws IOException {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            byte[] snapshot = write(format, ROWS);
+            byte[] truncated = Arrays.copyOf(snapshot, snapshot.length - 3);
+
+            assertThrows(IOException.class, () -> read(format, truncated), format.name());
+        }
+    }
+
+    private static byte[] write(SnapshotFormat format, List<Object> rows) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        SnapshotWriter writer = format.newWriter(Channels.newChannel(bytes));
+        for (Object row : rows) {
+            if (row instanceof ManagedResourceRecord resource) {
+                writer.writeResource(resource);
+            } else {
+                writer.writeAllocationRequest((AllocationRequestRecord) row);
+            }
+        }
+        writer.finish();
+        assertEquals(bytes.size(), writer.bytesWritten());
+        return bytes.toByteArray();
+    }
+
+    private static List<Object> read(SnapshotFormat format, byte[] snapshot) throws IOException {
+        SnapshotReader reader = format.newReader(Channels.newChannel(new ByteArrayInputStream(snapshot)));
+        var rows = new ArrayList<Object>();
+        SnapshotHandler handler = new SnapshotHandler() {
+            @Override
+            public void resource(ManagedResourceRecord resource) {
+                rows.add(resource);
+            }
+
+            @Override
+            public void allocationRequest(AllocationRequestRecord allocationRequest) {
+                rows.add(allocationRequest);
+            }
+        };
+        while (reader.readNext(handler)) {
+        }
+        assertEquals(snapshot.length, reader.bytesRead());
+        return rows;
+    }
+}
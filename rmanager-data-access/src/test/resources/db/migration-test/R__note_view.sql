@@ -0,0 +1 @@
+create or replace view note_bodies as select body from notes;
@@ -0,0 +1,8 @@
+create table notes (
+    id bigint not null,
+    body varchar(255),
+    constraint notes_pkey primary key (id)
+);
+
+-- Not a statement terminator; this comment line is skipped.
+insert into notes (id, body) values (1, 'first');